@@ -0,0 +1,48 @@
+package com.trigonic.utils.spring.beans;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Measures parsing <tt>xutils:string</tt> and <tt>xutils:null</tt> elements at scale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ElementParsingBenchmark {
+    @Param({ "1000", "5000" })
+    public int elementCount;
+
+    private SyntheticConfigGenerator generator;
+
+    @Setup
+    public void generate() throws IOException {
+        generator = new SyntheticConfigGenerator(0, 0, elementCount);
+    }
+
+    @TearDown
+    public void delete() {
+        generator.delete();
+    }
+
+    @Benchmark
+    public DefaultListableBeanFactory parseElements() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        new XmlBeanDefinitionReader(beanFactory).loadBeanDefinitions(new FileSystemResource(generator
+                .getFile("elements.xml")));
+        return beanFactory;
+    }
+}
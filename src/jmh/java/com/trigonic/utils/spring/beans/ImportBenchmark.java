@@ -0,0 +1,67 @@
+package com.trigonic.utils.spring.beans;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+/**
+ * Measures loading bean definitions through <tt>xutils:import</tt> by relative location, absolute URL and
+ * <tt>classpath*:</tt> pattern, as well as through the optional and alternate fallback paths. The
+ * <tt>parallelPattern</tt> style imports the same pattern as <tt>pattern</tt>, parsing the matched resources in
+ * parallel; parallel parsing doesn't affect the other styles, which only import one resource at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ImportBenchmark {
+    @Param({ "relative", "absolute", "pattern", "parallelPattern", "optional", "alternate" })
+    public String style;
+
+    @Param({ "50" })
+    public int moduleCount;
+
+    @Param({ "20" })
+    public int beansPerModule;
+
+    private SyntheticConfigGenerator generator;
+    private PathMatchingResourcePatternResolver resourceLoader;
+    private String configName;
+
+    @Setup
+    public void generate() throws IOException {
+        generator = new SyntheticConfigGenerator(moduleCount, beansPerModule, 0);
+        resourceLoader = new PathMatchingResourcePatternResolver(generator.getClassLoader());
+        boolean parallel = style.equals("parallelPattern");
+        configName = parallel ? "pattern" : style;
+        ImportHelper.setParallel(parallel);
+    }
+
+    @TearDown
+    public void delete() {
+        ImportHelper.setParallel(false);
+        generator.delete();
+    }
+
+    @Benchmark
+    public DefaultListableBeanFactory loadBeanDefinitions() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        XmlBeanDefinitionReader reader = new XmlBeanDefinitionReader(beanFactory);
+        reader.setResourceLoader(resourceLoader);
+        reader.setBeanClassLoader(resourceLoader.getClassLoader());
+        reader.loadBeanDefinitions(new FileSystemResource(generator.getFile(configName + ".xml")));
+        return beanFactory;
+    }
+}
@@ -0,0 +1,126 @@
+package com.trigonic.utils.spring.beans;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Generates a deterministic tree of XML configs in a temporary directory so benchmarks don't depend on external
+ * resources. The directory doubles as a class path root for <tt>classpath*:</tt> imports through
+ * {@link #getClassLoader()}.
+ *
+ * <ul>
+ * <li><tt>modules/module-N.xml</tt> each define a number of <tt>xutils:string</tt> beans
+ * <li><tt>relative.xml</tt>, <tt>absolute.xml</tt> and <tt>pattern.xml</tt> import every module by relative location,
+ * by <tt>file:</tt> URL and by <tt>classpath*:</tt> pattern respectively
+ * <li><tt>optional.xml</tt> and <tt>alternate.xml</tt> import every module after probing a missing location first
+ * <li><tt>elements.xml</tt> defines the requested number of <tt>xutils:string</tt> and <tt>xutils:null</tt> beans
+ * </ul>
+ */
+public class SyntheticConfigGenerator {
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<beans xmlns=\"http://www.springframework.org/schema/beans\"\n"
+            + "    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n"
+            + "    xmlns:xutils=\"http://trigonic.com/schema/spring/xutils\"\n"
+            + "    xsi:schemaLocation=\"\n"
+            + "       http://www.springframework.org/schema/beans"
+            + " http://www.springframework.org/schema/beans/spring-beans-3.0.xsd\n"
+            + "       http://trigonic.com/schema/spring/xutils http://trigonic.com/schema/spring/xutils.xsd\">\n";
+    private static final String FOOTER = "</beans>\n";
+
+    private final File rootDir;
+
+    public SyntheticConfigGenerator(int moduleCount, int beansPerModule, int elementCount) throws IOException {
+        rootDir = File.createTempFile("xutils-bench", "");
+        if (!rootDir.delete() || !rootDir.mkdirs()) {
+            throw new IOException("unable to create " + rootDir);
+        }
+        File modulesDir = new File(rootDir, "modules");
+        modulesDir.mkdirs();
+
+        StringBuilder relative = new StringBuilder();
+        StringBuilder absolute = new StringBuilder();
+        StringBuilder optional = new StringBuilder();
+        StringBuilder alternate = new StringBuilder();
+        for (int module = 0; module < moduleCount; ++module) {
+            StringBuilder beans = new StringBuilder();
+            for (int bean = 0; bean < beansPerModule; ++bean) {
+                beans.append("    <xutils:string id=\"module").append(module).append("-bean").append(bean)
+                        .append("\">value").append(bean).append("</xutils:string>\n");
+            }
+            File moduleFile = new File(modulesDir, "module-" + module + ".xml");
+            write(moduleFile, beans);
+
+            String moduleLocation = "modules/" + moduleFile.getName();
+            appendImport(relative, moduleLocation, null, false);
+            appendImport(absolute, moduleFile.toURI().toString(), null, false);
+            appendImport(optional, "missing-" + module + ".xml", null, true);
+            appendImport(optional, moduleLocation, null, false);
+            appendImport(alternate, "missing-" + module + ".xml", moduleLocation, false);
+        }
+        write(new File(rootDir, "relative.xml"), relative);
+        write(new File(rootDir, "absolute.xml"), absolute);
+        write(new File(rootDir, "optional.xml"), optional);
+        write(new File(rootDir, "alternate.xml"), alternate);
+
+        StringBuilder pattern = new StringBuilder();
+        appendImport(pattern, "classpath*:modules/module-*.xml", null, false);
+        write(new File(rootDir, "pattern.xml"), pattern);
+
+        StringBuilder elements = new StringBuilder();
+        for (int element = 0; element < elementCount; ++element) {
+            elements.append("    <xutils:string id=\"string").append(element).append("\">value").append(element)
+                    .append("</xutils:string>\n");
+            elements.append("    <xutils:null id=\"null").append(element).append("\" class=\"java.lang.String\" />\n");
+        }
+        write(new File(rootDir, "elements.xml"), elements);
+    }
+
+    private static void appendImport(StringBuilder builder, String resource, String alternate, boolean optional) {
+        builder.append("    <xutils:import resource=\"").append(resource).append('"');
+        if (alternate != null) {
+            builder.append(" alternate=\"").append(alternate).append('"');
+        }
+        if (optional) {
+            builder.append(" optional=\"true\"");
+        }
+        builder.append(" />\n");
+    }
+
+    private static void write(File file, CharSequence beans) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(HEADER);
+            writer.append(beans);
+            writer.write(FOOTER);
+        } finally {
+            writer.close();
+        }
+    }
+
+    public File getRootDir() {
+        return rootDir;
+    }
+
+    public File getFile(String name) {
+        return new File(rootDir, name);
+    }
+
+    /**
+     * Returns a class loader with the generated directory as a class path root.
+     */
+    public ClassLoader getClassLoader() throws MalformedURLException {
+        return new URLClassLoader(new URL[] { rootDir.toURI().toURL() }, getClass().getClassLoader());
+    }
+
+    public void delete() {
+        FileSystemUtils.deleteRecursively(rootDir);
+    }
+}
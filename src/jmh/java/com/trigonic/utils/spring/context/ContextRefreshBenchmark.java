@@ -0,0 +1,51 @@
+package com.trigonic.utils.spring.context;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.trigonic.utils.spring.beans.SyntheticConfigGenerator;
+
+/**
+ * Measures a full {@link XmlResourceApplicationContext} refresh, including instantiating the singletons, of a
+ * generated module tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ContextRefreshBenchmark {
+    @Param({ "50" })
+    public int moduleCount;
+
+    @Param({ "20" })
+    public int beansPerModule;
+
+    private SyntheticConfigGenerator generator;
+
+    @Setup
+    public void generate() throws IOException {
+        generator = new SyntheticConfigGenerator(moduleCount, beansPerModule, 0);
+    }
+
+    @TearDown
+    public void delete() {
+        generator.delete();
+    }
+
+    @Benchmark
+    public XmlResourceApplicationContext refresh() {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(generator
+                .getFile("relative.xml"));
+        appContext.close();
+        return appContext;
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * A compact binary snapshot of the bean definitions loaded from a set of XML resources, along with what's needed to
+ * decide whether it's still current: the config resources it was built from, every resource that was read or probed
+ * while resolving imports (including optional and alternate imports that didn't exist), the active profiles, and the
+ * properties and classes looked up while loading, which decide conditional imports.
+ *
+ * <p>
+ * Resources added to a location pattern (e.g. <tt>classpath*:</tt>) after the snapshot was built aren't detected, so
+ * snapshots should be rebuilt whenever the set of deployed modules changes.
+ */
+public class BeanDefinitionSnapshot {
+    private static final Log logger = LogFactory.getLog(BeanDefinitionSnapshot.class);
+
+    private static final int MAGIC = 0x58554253; // "XUBS"
+    private static final int VERSION = 3;
+
+    private final List<String> configResources;
+    private final List<String> activeProfiles;
+    private final Map<String, Dependency> dependencies;
+    private final Map<String, String> properties;
+    private final Map<String, Boolean> classes;
+    private final Map<String, BeanDefinition> beanDefinitions;
+    private final Map<String, String> aliases;
+
+    private BeanDefinitionSnapshot(List<String> configResources, List<String> activeProfiles,
+            Map<String, Dependency> dependencies, Map<String, String> properties, Map<String, Boolean> classes,
+            Map<String, BeanDefinition> beanDefinitions, Map<String, String> aliases) {
+        this.configResources = configResources;
+        this.activeProfiles = activeProfiles;
+        this.dependencies = dependencies;
+        this.properties = properties;
+        this.classes = classes;
+        this.beanDefinitions = beanDefinitions;
+        this.aliases = aliases;
+    }
+
+    /**
+     * Captures the current bean definitions and aliases of the registry.
+     *
+     * @param configResources the resources the definitions were loaded from
+     * @param activeProfiles the profiles active while loading
+     * @param dependencies every other resource read or probed while loading, with whether it existed
+     * @param properties every property looked up while loading, with its value or null if it wasn't set
+     * @param classes every class looked up while loading, with whether it was present
+     */
+    public static BeanDefinitionSnapshot capture(BeanDefinitionRegistry registry, Resource[] configResources,
+            String[] activeProfiles, Map<Resource, Boolean> dependencies, Map<String, String> properties,
+            Map<String, Boolean> classes) throws IOException {
+        Map<String, Dependency> dependencyMap = new LinkedHashMap<String, Dependency>();
+        for (Resource configResource : configResources) {
+            addDependency(dependencyMap, configResource, true);
+        }
+        for (Map.Entry<Resource, Boolean> entry : dependencies.entrySet()) {
+            addDependency(dependencyMap, entry.getKey(), entry.getValue());
+        }
+
+        Map<String, BeanDefinition> beanDefinitions = new LinkedHashMap<String, BeanDefinition>();
+        Map<String, String> aliases = new LinkedHashMap<String, String>();
+        for (String beanName : registry.getBeanDefinitionNames()) {
+            beanDefinitions.put(beanName, registry.getBeanDefinition(beanName));
+            for (String alias : registry.getAliases(beanName)) {
+                aliases.put(alias, beanName);
+            }
+        }
+
+        return new BeanDefinitionSnapshot(toLocations(configResources), sorted(activeProfiles), dependencyMap,
+                new LinkedHashMap<String, String>(properties), new LinkedHashMap<String, Boolean>(classes),
+                beanDefinitions, aliases);
+    }
+
+    private static void addDependency(Map<String, Dependency> dependencyMap, Resource resource, boolean exists)
+            throws IOException {
+        String location = toLocation(resource);
+        if (!dependencyMap.containsKey(location)) {
+            dependencyMap.put(location, new Dependency(exists, exists ? resource.lastModified() : 0));
+        }
+    }
+
+    public List<String> getConfigResources() {
+        return configResources;
+    }
+
+    public List<String> getActiveProfiles() {
+        return activeProfiles;
+    }
+
+    public int getBeanDefinitionCount() {
+        return beanDefinitions.size();
+    }
+
+    /**
+     * Determines whether this snapshot no longer reflects what loading the specified config resources would produce,
+     * either because they're different resources, the active profiles or any property looked up changed, a class
+     * looked up appeared or disappeared, or any resource it depended on has been modified, added or removed. Classes
+     * are looked up through the class loader of the resource loader.
+     */
+    public boolean isStale(ResourceLoader resourceLoader, Resource[] configResources, Environment environment) {
+        try {
+            if (!this.configResources.equals(toLocations(configResources))) {
+                logger.debug("Snapshot is stale: config resources differ");
+                return true;
+            }
+        } catch (IOException e) {
+            logger.debug("Snapshot is stale: config resources cannot be located", e);
+            return true;
+        }
+
+        if (!this.activeProfiles.equals(sorted(environment.getActiveProfiles()))) {
+            logger.debug("Snapshot is stale: active profiles differ");
+            return true;
+        }
+
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            if (!ObjectUtils.nullSafeEquals(entry.getValue(), environment.getProperty(entry.getKey()))) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Snapshot is stale: property [" + entry.getKey() + "] has changed");
+                }
+                return true;
+            }
+        }
+
+        for (Map.Entry<String, Boolean> entry : classes.entrySet()) {
+            if (ClassUtils.isPresent(entry.getKey(), resourceLoader.getClassLoader()) != entry.getValue()) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Snapshot is stale: class [" + entry.getKey() + "] has "
+                            + (entry.getValue() ? "disappeared" : "appeared"));
+                }
+                return true;
+            }
+        }
+
+        for (Map.Entry<String, Dependency> entry : dependencies.entrySet()) {
+            Resource resource = resourceLoader.getResource(entry.getKey());
+            if (entry.getValue().isStale(resource)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Snapshot is stale: [" + entry.getKey() + "] has changed");
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers the snapshot's bean definitions and aliases.
+     *
+     * @return the number of bean definitions registered
+     */
+    public int registerBeanDefinitions(BeanDefinitionRegistry registry) {
+        for (Map.Entry<String, BeanDefinition> entry : beanDefinitions.entrySet()) {
+            registry.registerBeanDefinition(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : aliases.entrySet()) {
+            registry.registerAlias(entry.getValue(), entry.getKey());
+        }
+        return beanDefinitions.size();
+    }
+
+    /**
+     * Writes this snapshot.
+     *
+     * @throws IllegalArgumentException if a bean definition uses metadata that can't be represented in a snapshot
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeStrings(out, configResources);
+        writeStrings(out, activeProfiles);
+
+        out.writeInt(dependencies.size());
+        for (Map.Entry<String, Dependency> entry : dependencies.entrySet()) {
+            BeanDefinitionSnapshotCodec.writeUtf8(out, entry.getKey());
+            out.writeBoolean(entry.getValue().exists);
+            out.writeLong(entry.getValue().lastModified);
+        }
+
+        out.writeInt(properties.size());
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            BeanDefinitionSnapshotCodec.writeUtf8(out, entry.getKey());
+            BeanDefinitionSnapshotCodec.writeString(out, entry.getValue());
+        }
+
+        out.writeInt(classes.size());
+        for (Map.Entry<String, Boolean> entry : classes.entrySet()) {
+            BeanDefinitionSnapshotCodec.writeUtf8(out, entry.getKey());
+            out.writeBoolean(entry.getValue());
+        }
+
+        out.writeInt(beanDefinitions.size());
+        for (Map.Entry<String, BeanDefinition> entry : beanDefinitions.entrySet()) {
+            BeanDefinitionSnapshotCodec.writeUtf8(out, entry.getKey());
+            BeanDefinitionSnapshotCodec.writeBeanDefinition(out, entry.getKey(), entry.getValue());
+        }
+
+        out.writeInt(aliases.size());
+        for (Map.Entry<String, String> entry : aliases.entrySet()) {
+            BeanDefinitionSnapshotCodec.writeUtf8(out, entry.getKey());
+            BeanDefinitionSnapshotCodec.writeUtf8(out, entry.getValue());
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a snapshot previously written with {@link #writeTo(OutputStream)}.
+     */
+    public static BeanDefinitionSnapshot readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a bean definition snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported bean definition snapshot version " + version);
+        }
+        List<String> configResources = readStrings(in);
+        List<String> activeProfiles = readStrings(in);
+
+        int dependencyCount = in.readInt();
+        Map<String, Dependency> dependencies = new LinkedHashMap<String, Dependency>();
+        for (int i = 0; i < dependencyCount; ++i) {
+            String location = BeanDefinitionSnapshotCodec.readUtf8(in);
+            boolean exists = in.readBoolean();
+            dependencies.put(location, new Dependency(exists, in.readLong()));
+        }
+
+        int propertyCount = in.readInt();
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        for (int i = 0; i < propertyCount; ++i) {
+            String name = BeanDefinitionSnapshotCodec.readUtf8(in);
+            properties.put(name, BeanDefinitionSnapshotCodec.readString(in));
+        }
+
+        int classCount = in.readInt();
+        Map<String, Boolean> classes = new LinkedHashMap<String, Boolean>();
+        for (int i = 0; i < classCount; ++i) {
+            String className = BeanDefinitionSnapshotCodec.readUtf8(in);
+            classes.put(className, in.readBoolean());
+        }
+
+        int beanDefinitionCount = in.readInt();
+        Map<String, BeanDefinition> beanDefinitions = new LinkedHashMap<String, BeanDefinition>();
+        for (int i = 0; i < beanDefinitionCount; ++i) {
+            String beanName = BeanDefinitionSnapshotCodec.readUtf8(in);
+            beanDefinitions.put(beanName, BeanDefinitionSnapshotCodec.readBeanDefinition(in));
+        }
+
+        int aliasCount = in.readInt();
+        Map<String, String> aliases = new LinkedHashMap<String, String>();
+        for (int i = 0; i < aliasCount; ++i) {
+            String alias = BeanDefinitionSnapshotCodec.readUtf8(in);
+            aliases.put(alias, BeanDefinitionSnapshotCodec.readUtf8(in));
+        }
+
+        return new BeanDefinitionSnapshot(configResources, activeProfiles, dependencies, properties, classes,
+                beanDefinitions, aliases);
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            BeanDefinitionSnapshotCodec.writeUtf8(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<String>(size);
+        for (int i = 0; i < size; ++i) {
+            values.add(BeanDefinitionSnapshotCodec.readUtf8(in));
+        }
+        return values;
+    }
+
+    private static List<String> toLocations(Resource[] resources) throws IOException {
+        List<String> locations = new ArrayList<String>(resources.length);
+        for (Resource resource : resources) {
+            locations.add(toLocation(resource));
+        }
+        return locations;
+    }
+
+    private static String toLocation(Resource resource) throws IOException {
+        // class path resources can't produce a URL when they don't exist
+        if (resource instanceof ClassPathResource) {
+            return ResourceLoader.CLASSPATH_URL_PREFIX + ((ClassPathResource) resource).getPath();
+        }
+        return resource.getURL().toExternalForm();
+    }
+
+    private static List<String> sorted(String[] values) {
+        List<String> result = new ArrayList<String>(Arrays.asList(values));
+        Collections.sort(result);
+        return result;
+    }
+
+    private static class Dependency {
+        private final boolean exists;
+        private final long lastModified;
+
+        Dependency(boolean exists, long lastModified) {
+            this.exists = exists;
+            this.lastModified = lastModified;
+        }
+
+        boolean isStale(Resource resource) {
+            if (resource.exists() != exists) {
+                return true;
+            }
+            try {
+                return exists && resource.lastModified() != lastModified;
+            } catch (IOException e) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.BeanMetadataAttribute;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueHolder;
+import org.springframework.beans.factory.config.RuntimeBeanNameReference;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.config.TypedStringValue;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.ManagedArray;
+import org.springframework.beans.factory.support.ManagedList;
+import org.springframework.beans.factory.support.ManagedMap;
+import org.springframework.beans.factory.support.ManagedProperties;
+import org.springframework.beans.factory.support.ManagedSet;
+
+/**
+ * Binary encoding of the bean definitions and values produced by XML parsing. Only the metadata the XML readers
+ * produce is supported; anything else (method overrides, qualifiers, arbitrary value objects) is rejected with an
+ * {@link IllegalArgumentException} rather than silently dropped.
+ */
+class BeanDefinitionSnapshotCodec {
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int TYPED_STRING = 2;
+    private static final int BEAN_REFERENCE = 3;
+    private static final int BEAN_NAME_REFERENCE = 4;
+    private static final int BEAN_DEFINITION_HOLDER = 5;
+    private static final int LIST = 6;
+    private static final int SET = 7;
+    private static final int MAP = 8;
+    private static final int PROPERTIES = 9;
+    private static final int ARRAY = 10;
+    private static final int BEAN_DEFINITION = 11;
+
+    static void writeBeanDefinition(DataOutput out, String beanName, BeanDefinition beanDefinition)
+            throws IOException {
+        if (!(beanDefinition instanceof AbstractBeanDefinition)) {
+            throw unsupported(beanName, beanDefinition.getClass().getName());
+        }
+        AbstractBeanDefinition definition = (AbstractBeanDefinition) beanDefinition;
+        if (!definition.getMethodOverrides().isEmpty()) {
+            throw unsupported(beanName, "method overrides");
+        }
+        if (!definition.getQualifiers().isEmpty()) {
+            throw unsupported(beanName, "qualifiers");
+        }
+
+        writeString(out, definition.getBeanClassName());
+        writeString(out, definition.getParentName());
+        writeString(out, definition.getScope());
+        writeString(out, definition.getFactoryBeanName());
+        writeString(out, definition.getFactoryMethodName());
+        writeString(out, definition.getInitMethodName());
+        writeString(out, definition.getDestroyMethodName());
+        writeString(out, definition.getDescription());
+        writeString(out, definition.getResourceDescription());
+        out.writeBoolean(definition.isAbstract());
+        out.writeBoolean(definition.isLazyInit());
+        out.writeBoolean(definition.isPrimary());
+        out.writeBoolean(definition.isAutowireCandidate());
+        out.writeBoolean(definition.isEnforceInitMethod());
+        out.writeBoolean(definition.isEnforceDestroyMethod());
+        out.writeBoolean(definition.isNonPublicAccessAllowed());
+        out.writeBoolean(definition.isLenientConstructorResolution());
+        out.writeBoolean(definition.isSynthetic());
+        out.writeInt(definition.getAutowireMode());
+        out.writeInt(definition.getDependencyCheck());
+        out.writeInt(definition.getRole());
+        writeStrings(out, definition.getDependsOn());
+
+        String[] attributeNames = definition.attributeNames();
+        out.writeInt(attributeNames.length);
+        for (String attributeName : attributeNames) {
+            BeanMetadataAttribute attribute = definition.getMetadataAttribute(attributeName);
+            if (attribute == null || !(attribute.getValue() == null || attribute.getValue() instanceof String)) {
+                throw unsupported(beanName, "attribute [" + attributeName + "]");
+            }
+            writeUtf8(out, attributeName);
+            writeString(out, (String) attribute.getValue());
+        }
+
+        ConstructorArgumentValues constructorArgs = definition.getConstructorArgumentValues();
+        Map<Integer, ValueHolder> indexedArgs = constructorArgs.getIndexedArgumentValues();
+        out.writeInt(indexedArgs.size());
+        for (Map.Entry<Integer, ValueHolder> entry : indexedArgs.entrySet()) {
+            out.writeInt(entry.getKey());
+            writeValueHolder(out, beanName, entry.getValue());
+        }
+        List<ValueHolder> genericArgs = constructorArgs.getGenericArgumentValues();
+        out.writeInt(genericArgs.size());
+        for (ValueHolder valueHolder : genericArgs) {
+            writeValueHolder(out, beanName, valueHolder);
+        }
+
+        PropertyValue[] propertyValues = definition.getPropertyValues().getPropertyValues();
+        out.writeInt(propertyValues.length);
+        for (PropertyValue propertyValue : propertyValues) {
+            writeUtf8(out, propertyValue.getName());
+            writeValue(out, beanName, propertyValue.getValue());
+        }
+    }
+
+    static BeanDefinition readBeanDefinition(DataInput in) throws IOException {
+        GenericBeanDefinition definition = new GenericBeanDefinition();
+        definition.setBeanClassName(readString(in));
+        definition.setParentName(readString(in));
+        definition.setScope(readString(in));
+        definition.setFactoryBeanName(readString(in));
+        definition.setFactoryMethodName(readString(in));
+        definition.setInitMethodName(readString(in));
+        definition.setDestroyMethodName(readString(in));
+        definition.setDescription(readString(in));
+        definition.setResourceDescription(readString(in));
+        definition.setAbstract(in.readBoolean());
+        definition.setLazyInit(in.readBoolean());
+        definition.setPrimary(in.readBoolean());
+        definition.setAutowireCandidate(in.readBoolean());
+        definition.setEnforceInitMethod(in.readBoolean());
+        definition.setEnforceDestroyMethod(in.readBoolean());
+        definition.setNonPublicAccessAllowed(in.readBoolean());
+        definition.setLenientConstructorResolution(in.readBoolean());
+        definition.setSynthetic(in.readBoolean());
+        definition.setAutowireMode(in.readInt());
+        definition.setDependencyCheck(in.readInt());
+        definition.setRole(in.readInt());
+        definition.setDependsOn(readStrings(in));
+
+        int attributeCount = in.readInt();
+        for (int i = 0; i < attributeCount; ++i) {
+            definition.addMetadataAttribute(new BeanMetadataAttribute(readUtf8(in), readString(in)));
+        }
+
+        ConstructorArgumentValues constructorArgs = definition.getConstructorArgumentValues();
+        int indexedCount = in.readInt();
+        for (int i = 0; i < indexedCount; ++i) {
+            int index = in.readInt();
+            constructorArgs.addIndexedArgumentValue(index, readValueHolder(in));
+        }
+        int genericCount = in.readInt();
+        for (int i = 0; i < genericCount; ++i) {
+            constructorArgs.addGenericArgumentValue(readValueHolder(in));
+        }
+
+        MutablePropertyValues propertyValues = definition.getPropertyValues();
+        int propertyCount = in.readInt();
+        for (int i = 0; i < propertyCount; ++i) {
+            String name = readUtf8(in);
+            propertyValues.addPropertyValue(name, readValue(in));
+        }
+        return definition;
+    }
+
+    private static void writeValueHolder(DataOutput out, String beanName, ValueHolder valueHolder)
+            throws IOException {
+        writeValue(out, beanName, valueHolder.getValue());
+        writeString(out, valueHolder.getType());
+        writeString(out, valueHolder.getName());
+    }
+
+    private static ValueHolder readValueHolder(DataInput in) throws IOException {
+        Object value = readValue(in);
+        return new ValueHolder(value, readString(in), readString(in));
+    }
+
+    private static void writeValue(DataOutput out, String beanName, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeUtf8(out, (String) value);
+        } else if (value instanceof TypedStringValue) {
+            TypedStringValue typedValue = (TypedStringValue) value;
+            out.writeByte(TYPED_STRING);
+            writeString(out, typedValue.getValue());
+            writeString(out, typedValue.getTargetTypeName());
+            writeString(out, typedValue.getSpecifiedTypeName());
+            out.writeBoolean(typedValue.isDynamic());
+        } else if (value instanceof RuntimeBeanReference) {
+            RuntimeBeanReference reference = (RuntimeBeanReference) value;
+            out.writeByte(BEAN_REFERENCE);
+            writeUtf8(out, reference.getBeanName());
+            out.writeBoolean(reference.isToParent());
+        } else if (value instanceof RuntimeBeanNameReference) {
+            out.writeByte(BEAN_NAME_REFERENCE);
+            writeUtf8(out, ((RuntimeBeanNameReference) value).getBeanName());
+        } else if (value instanceof BeanDefinitionHolder) {
+            BeanDefinitionHolder holder = (BeanDefinitionHolder) value;
+            out.writeByte(BEAN_DEFINITION_HOLDER);
+            writeUtf8(out, holder.getBeanName());
+            writeStrings(out, holder.getAliases());
+            writeBeanDefinition(out, holder.getBeanName(), holder.getBeanDefinition());
+        } else if (value instanceof BeanDefinition) {
+            out.writeByte(BEAN_DEFINITION);
+            writeBeanDefinition(out, beanName, (BeanDefinition) value);
+        } else if (value instanceof ManagedArray) {
+            ManagedArray array = (ManagedArray) value;
+            out.writeByte(ARRAY);
+            writeString(out, array.getElementTypeName());
+            out.writeBoolean(array.isMergeEnabled());
+            writeElements(out, beanName, array);
+        } else if (value instanceof ManagedList) {
+            ManagedList<?> list = (ManagedList<?>) value;
+            out.writeByte(LIST);
+            writeString(out, list.getElementTypeName());
+            out.writeBoolean(list.isMergeEnabled());
+            writeElements(out, beanName, list);
+        } else if (value instanceof ManagedSet) {
+            ManagedSet<?> set = (ManagedSet<?>) value;
+            out.writeByte(SET);
+            writeString(out, set.getElementTypeName());
+            out.writeBoolean(set.isMergeEnabled());
+            writeElements(out, beanName, set);
+        } else if (value instanceof ManagedMap) {
+            ManagedMap<?, ?> map = (ManagedMap<?, ?>) value;
+            out.writeByte(MAP);
+            writeString(out, map.getKeyTypeName());
+            writeString(out, map.getValueTypeName());
+            out.writeBoolean(map.isMergeEnabled());
+            writeEntries(out, beanName, map);
+        } else if (value instanceof ManagedProperties) {
+            ManagedProperties properties = (ManagedProperties) value;
+            out.writeByte(PROPERTIES);
+            out.writeBoolean(properties.isMergeEnabled());
+            writeEntries(out, beanName, properties);
+        } else {
+            throw unsupported(beanName, "value of type " + value.getClass().getName());
+        }
+    }
+
+    private static void writeElements(DataOutput out, String beanName, Iterable<?> elements) throws IOException {
+        int size = 0;
+        for (@SuppressWarnings("unused") Object element : elements) {
+            ++size;
+        }
+        out.writeInt(size);
+        for (Object element : elements) {
+            writeValue(out, beanName, element);
+        }
+    }
+
+    private static void writeEntries(DataOutput out, String beanName, Map<?, ?> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(out, beanName, entry.getKey());
+            writeValue(out, beanName, entry.getValue());
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException {
+        int type = in.readByte();
+        switch (type) {
+        case NULL:
+            return null;
+        case STRING:
+            return readUtf8(in);
+        case TYPED_STRING: {
+            TypedStringValue typedValue = new TypedStringValue(readString(in));
+            typedValue.setTargetTypeName(readString(in));
+            typedValue.setSpecifiedTypeName(readString(in));
+            if (in.readBoolean()) {
+                typedValue.setDynamic();
+            }
+            return typedValue;
+        }
+        case BEAN_REFERENCE:
+            return new RuntimeBeanReference(readUtf8(in), in.readBoolean());
+        case BEAN_NAME_REFERENCE:
+            return new RuntimeBeanNameReference(readUtf8(in));
+        case BEAN_DEFINITION_HOLDER: {
+            String beanName = readUtf8(in);
+            String[] aliases = readStrings(in);
+            return new BeanDefinitionHolder(readBeanDefinition(in), beanName, aliases);
+        }
+        case BEAN_DEFINITION:
+            return readBeanDefinition(in);
+        case ARRAY: {
+            String elementTypeName = readString(in);
+            boolean mergeEnabled = in.readBoolean();
+            int size = in.readInt();
+            ManagedArray array = new ManagedArray(elementTypeName, size);
+            array.setMergeEnabled(mergeEnabled);
+            for (int i = 0; i < size; ++i) {
+                array.add(readValue(in));
+            }
+            return array;
+        }
+        case LIST: {
+            ManagedList<Object> list = new ManagedList<Object>();
+            list.setElementTypeName(readString(in));
+            list.setMergeEnabled(in.readBoolean());
+            int size = in.readInt();
+            for (int i = 0; i < size; ++i) {
+                list.add(readValue(in));
+            }
+            return list;
+        }
+        case SET: {
+            ManagedSet<Object> set = new ManagedSet<Object>();
+            set.setElementTypeName(readString(in));
+            set.setMergeEnabled(in.readBoolean());
+            int size = in.readInt();
+            for (int i = 0; i < size; ++i) {
+                set.add(readValue(in));
+            }
+            return set;
+        }
+        case MAP: {
+            ManagedMap<Object, Object> map = new ManagedMap<Object, Object>();
+            map.setKeyTypeName(readString(in));
+            map.setValueTypeName(readString(in));
+            map.setMergeEnabled(in.readBoolean());
+            int size = in.readInt();
+            for (int i = 0; i < size; ++i) {
+                map.put(readValue(in), readValue(in));
+            }
+            return map;
+        }
+        case PROPERTIES: {
+            ManagedProperties properties = new ManagedProperties();
+            properties.setMergeEnabled(in.readBoolean());
+            int size = in.readInt();
+            for (int i = 0; i < size; ++i) {
+                properties.put(readValue(in), readValue(in));
+            }
+            return properties;
+        }
+        default:
+            throw new IOException("unknown value type " + type + " in bean definition snapshot");
+        }
+    }
+
+    /**
+     * Writes the string as its length in UTF-8 bytes followed by the bytes, since {@link DataOutput#writeUTF(String)}
+     * is limited to 64KB, which a long property value or description can exceed.
+     */
+    static void writeUtf8(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readUtf8(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeUtf8(out, value);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? readUtf8(in) : null;
+    }
+
+    static void writeStrings(DataOutput out, String[] values) throws IOException {
+        out.writeInt(values == null ? -1 : values.length);
+        if (values != null) {
+            for (String value : values) {
+                writeUtf8(out, value);
+            }
+        }
+    }
+
+    static String[] readStrings(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        String[] values = new String[length];
+        for (int i = 0; i < length; ++i) {
+            values[i] = readUtf8(in);
+        }
+        return values;
+    }
+
+    private static IllegalArgumentException unsupported(String beanName, String what) {
+        return new IllegalArgumentException("bean definition [" + beanName + "] uses " + what
+                + ", which is not supported in snapshots");
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Remembers both positive and negative {@link Resource#exists()} results for a period of time, so repeated refreshes
+ * don't probe the same missing optional imports (or the same present ones) again. Results can be discarded early with
+ * {@link #invalidate()} or {@link #invalidate(Resource)} when resources are known to have been added or removed.
+ */
+public class CachingResourceExistenceChecker implements ResourceExistenceChecker {
+    private final Map<Resource, Entry> entries = new ConcurrentHashMap<Resource, Entry>();
+    private final long ttlNanos;
+
+    /**
+     * Creates a checker whose results never expire on their own.
+     */
+    public CachingResourceExistenceChecker() {
+        this(0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a checker whose results expire after the specified time to live, where zero means never.
+     */
+    public CachingResourceExistenceChecker(long ttl, TimeUnit unit) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("ttl must not be negative");
+        }
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    public boolean exists(Resource resource) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(resource);
+        if (entry == null || (ttlNanos != 0 && now - entry.expiresAt >= 0)) {
+            entry = new Entry(resource.exists(), now + ttlNanos);
+            entries.put(resource, entry);
+        }
+        return entry.exists;
+    }
+
+    /**
+     * Discards all remembered results.
+     */
+    public void invalidate() {
+        entries.clear();
+    }
+
+    /**
+     * Discards the remembered result for the specified resource.
+     */
+    public void invalidate(Resource resource) {
+        entries.remove(resource);
+    }
+
+    private static class Entry {
+        private final boolean exists;
+        private final long expiresAt;
+
+        Entry(boolean exists, long expiresAt) {
+            this.exists = exists;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
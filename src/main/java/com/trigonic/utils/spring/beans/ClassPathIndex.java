@@ -0,0 +1,139 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+
+/**
+ * The merged <tt>META-INF/xutils.index</tt> files visible to a class loader. Each index lists the XML resources under
+ * the class path root (usually a jar) that contains it, one path per line relative to that root, with <tt>#</tt>
+ * starting a comment. The indexes are written at build time by the <tt>xutilsIndex</tt> task in
+ * <tt>gradle/xutils-index.gradle</tt>.
+ *
+ * <p>
+ * Indexes are read once per class loader and cached, since jars don't change while they're on the class path.
+ */
+public class ClassPathIndex {
+    private static final Log logger = LogFactory.getLog(ClassPathIndex.class);
+
+    public static final String INDEX_LOCATION = "META-INF/xutils.index";
+
+    private static final Map<ClassLoader, ClassPathIndex> indexes = new WeakHashMap<ClassLoader, ClassPathIndex>();
+
+    private final Map<String, List<String>> pathsByRoot;
+
+    private ClassPathIndex(Map<String, List<String>> pathsByRoot) {
+        this.pathsByRoot = pathsByRoot;
+    }
+
+    public static ClassPathIndex forClassLoader(ClassLoader classLoader) {
+        synchronized (indexes) {
+            ClassPathIndex index = indexes.get(classLoader);
+            if (index == null) {
+                index = load(classLoader);
+                indexes.put(classLoader, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Forgets the indexes read so far, for class loaders whose contents do change.
+     */
+    public static void clearCache() {
+        synchronized (indexes) {
+            indexes.clear();
+        }
+    }
+
+    private static ClassPathIndex load(ClassLoader classLoader) {
+        Map<String, List<String>> pathsByRoot = new LinkedHashMap<String, List<String>>();
+        try {
+            Enumeration<URL> indexUrls = classLoader.getResources(INDEX_LOCATION);
+            while (indexUrls.hasMoreElements()) {
+                URL indexUrl = indexUrls.nextElement();
+                String externalForm = indexUrl.toExternalForm();
+                String root = externalForm.substring(0, externalForm.length() - INDEX_LOCATION.length());
+                pathsByRoot.put(root, readPaths(indexUrl));
+            }
+        } catch (IOException e) {
+            throw new BeanDefinitionStoreException("Unable to read class path index [" + INDEX_LOCATION + "]", e);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Found class path indexes for " + pathsByRoot.keySet());
+        }
+        return new ClassPathIndex(pathsByRoot);
+    }
+
+    private static List<String> readPaths(URL indexUrl) throws IOException {
+        List<String> paths = new ArrayList<String>();
+        InputStream inputStream = indexUrl.openStream();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    paths.add(line);
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        return Collections.unmodifiableList(paths);
+    }
+
+    public boolean isEmpty() {
+        return pathsByRoot.isEmpty();
+    }
+
+    /**
+     * Returns the URL of the indexed class path root containing the specified URL, or null if it isn't indexed.
+     */
+    public String findRoot(String url) {
+        String result = null;
+        for (String root : pathsByRoot.keySet()) {
+            if (url.startsWith(root) && (result == null || root.length() > result.length())) {
+                result = root;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indexed paths under the specified root, relative to it.
+     */
+    public List<String> getPaths(String root) {
+        List<String> paths = pathsByRoot.get(root);
+        return paths == null ? Collections.<String> emptyList() : paths;
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A single indexed archive of config files, so that loading a configuration spread over many small files doesn't open
+ * and read each of them separately. The archive is memory-mapped once, its index is read into memory, and its entries
+ * are served as {@link ConfigBundleResource} views of the mapping without copying.
+ *
+ * <p>
+ * The archive starts with an index of every entry's path, offset and length, sorted by path, followed by the entries'
+ * contents. Paths are relative to the bundled directory and separated by <tt>/</tt>. From the command line, specify
+ * the bundle file followed by the directory to bundle:
+ *
+ * <pre>
+ * java com.trigonic.utils.spring.beans.ConfigBundle config.bundle src/main/config
+ * </pre>
+ *
+ * Entries are identified by URLs such as <tt>bundle:/opt/app/config.bundle!/modules/first.xml</tt>, combining the
+ * bundle's absolute path with the entry's path, which only the bundle itself can open.
+ */
+public class ConfigBundle {
+    private static final int MAGIC = 0x58554342; // "XUCB"
+    private static final int VERSION = 1;
+    private static final String ENTRY_SEPARATOR = "!/";
+
+    private final File file;
+    private final String location;
+    private final ByteBuffer contents;
+    private final Map<String, Entry> entries;
+    private final URLStreamHandler urlStreamHandler = new EntryURLStreamHandler();
+
+    private ConfigBundle(File file, ByteBuffer contents, Map<String, Entry> entries) {
+        this.file = file;
+        this.location = ConfigBundleResourceLoader.BUNDLE_URL_PREFIX + file.getAbsoluteFile().toURI().getRawPath()
+                + ENTRY_SEPARATOR;
+        this.contents = contents;
+        this.entries = entries;
+    }
+
+    /**
+     * Maps the specified bundle and reads its index.
+     */
+    public static ConfigBundle open(File file) throws IOException {
+        ByteBuffer contents;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            // the mapping stays valid once the file is closed
+            FileChannel channel = randomAccessFile.getChannel();
+            contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+
+        ByteBuffer index = contents.duplicate();
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(index));
+        if (in.readInt() != MAGIC) {
+            throw new IOException(file + " is not a config bundle");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported config bundle version " + version + " in " + file);
+        }
+        int count = in.readInt();
+        Map<String, Entry> entries = new LinkedHashMap<String, Entry>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; ++i) {
+            String path = in.readUTF();
+            entries.put(path, new Entry(in.readInt(), in.readInt()));
+        }
+        int dataOffset = index.position();
+        for (Entry entry : entries.values()) {
+            entry.offset += dataOffset;
+            if (entry.offset + entry.length > contents.limit()) {
+                throw new IOException("Config bundle " + file + " is truncated");
+            }
+        }
+        return new ConfigBundle(file, contents, entries);
+    }
+
+    /**
+     * Bundles every file under the specified directory.
+     *
+     * @return the number of files bundled
+     */
+    public static int write(File dir, File bundleFile) throws IOException {
+        Map<String, File> files = new TreeMap<String, File>();
+        collectFiles(dir, "", files);
+        OutputStream outputStream = new FileOutputStream(bundleFile);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(files.size());
+            long offset = 0;
+            for (Map.Entry<String, File> entry : files.entrySet()) {
+                long length = entry.getValue().length();
+                if (offset + length > Integer.MAX_VALUE) {
+                    throw new IOException("Files under " + dir + " are too large to bundle");
+                }
+                out.writeUTF(entry.getKey());
+                out.writeInt((int) offset);
+                out.writeInt((int) length);
+                offset += length;
+            }
+            byte[] buffer = new byte[8192];
+            for (File file : files.values()) {
+                InputStream inputStream = new FileInputStream(file);
+                try {
+                    for (int count = inputStream.read(buffer); count != -1; count = inputStream.read(buffer)) {
+                        out.write(buffer, 0, count);
+                    }
+                } finally {
+                    inputStream.close();
+                }
+            }
+            out.flush();
+        } finally {
+            outputStream.close();
+        }
+        return files.size();
+    }
+
+    private static void collectFiles(File dir, String prefix, Map<String, File> files) throws IOException {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            throw new IOException("Unable to list directory " + dir);
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectFiles(child, prefix + child.getName() + "/", files);
+            } else {
+                files.put(prefix + child.getName(), child);
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the paths of every entry, in sorted order.
+     */
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Returns the location the URLs of the bundle's entries start with.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    public boolean contains(String path) {
+        return entries.containsKey(path);
+    }
+
+    /**
+     * Returns the resource for the entry with the specified path, which exists only if the bundle contains it.
+     */
+    public ConfigBundleResource getResource(String path) {
+        return new ConfigBundleResource(this, path);
+    }
+
+    /**
+     * Returns a read-only view of the entry's contents, or null if the bundle doesn't contain it.
+     */
+    ByteBuffer getContents(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer view = contents.duplicate();
+        view.limit(entry.offset + entry.length);
+        view.position(entry.offset);
+        return view.slice();
+    }
+
+    int getLength(String path) {
+        Entry entry = entries.get(path);
+        return entry == null ? -1 : entry.length;
+    }
+
+    URL getURL(String path) throws IOException {
+        return new URL(null, location + path, urlStreamHandler);
+    }
+
+    @Override
+    public String toString() {
+        return "config bundle [" + file + "]";
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: " + ConfigBundle.class.getName() + " <bundle file> <config directory>");
+            System.exit(1);
+        }
+
+        File bundleFile = new File(args[0]);
+        File parentDir = bundleFile.getAbsoluteFile().getParentFile();
+        if (!parentDir.isDirectory() && !parentDir.mkdirs()) {
+            throw new IOException("unable to create directory " + parentDir);
+        }
+        int count = write(new File(args[1]), bundleFile);
+        System.out.println("Wrote " + count + " files to " + bundleFile);
+    }
+
+    /**
+     * Opens the URLs of the bundle's entries.
+     */
+    private class EntryURLStreamHandler extends URLStreamHandler {
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            String externalForm = url.toExternalForm();
+            if (!externalForm.startsWith(location)) {
+                throw new FileNotFoundException(url + " is not an entry of " + ConfigBundle.this);
+            }
+            final String path = externalForm.substring(location.length());
+            return new URLConnection(url) {
+                @Override
+                public void connect() {
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    ByteBuffer entryContents = getContents(path);
+                    if (entryContents == null) {
+                        throw new FileNotFoundException(url + " does not exist");
+                    }
+                    return new ByteBufferInputStream(entryContents);
+                }
+            };
+        }
+    }
+
+    private static class Entry {
+        private int offset;
+        private final int length;
+
+        Entry(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StringUtils;
+
+/**
+ * An entry of a {@link ConfigBundle}, read straight from the bundle's memory mapping. Relative resources are resolved
+ * within the same bundle. Entries are identified by their {@link ConfigBundle URL}, so the same entry of a bundle
+ * opened again is equal, and is recognized by deduplicated imports, the document cache and snapshots.
+ */
+public class ConfigBundleResource extends AbstractResource {
+    private final ConfigBundle bundle;
+    private final String path;
+
+    ConfigBundleResource(ConfigBundle bundle, String path) {
+        this.bundle = bundle;
+        this.path = StringUtils.cleanPath(path);
+    }
+
+    public ConfigBundle getBundle() {
+        return bundle;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean exists() {
+        return bundle.contains(path);
+    }
+
+    public InputStream getInputStream() throws IOException {
+        ByteBuffer contents = bundle.getContents(path);
+        if (contents == null) {
+            throw new FileNotFoundException(getDescription() + " cannot be opened because it does not exist");
+        }
+        return new ByteBufferInputStream(contents);
+    }
+
+    @Override
+    public URL getURL() throws IOException {
+        return bundle.getURL(path);
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        int length = bundle.getLength(path);
+        if (length < 0) {
+            throw new FileNotFoundException(getDescription() + " does not exist");
+        }
+        return length;
+    }
+
+    @Override
+    public long lastModified() {
+        return bundle.getFile().lastModified();
+    }
+
+    @Override
+    public Resource createRelative(String relativePath) {
+        return new ConfigBundleResource(bundle, StringUtils.applyRelativePath(path, relativePath));
+    }
+
+    @Override
+    public String getFilename() {
+        return StringUtils.getFilename(path);
+    }
+
+    public String getDescription() {
+        return "config bundle entry [" + path + "] in [" + bundle.getFile() + "]";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ConfigBundleResource)) {
+            return false;
+        }
+        ConfigBundleResource other = (ConfigBundleResource) obj;
+        return bundle.getLocation().equals(other.bundle.getLocation()) && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Resolves locations against a memory-mapped {@link ConfigBundle}, serving lookups and patterns from the bundle's
+ * index. Locations with the <tt>bundle:</tt> prefix or no prefix at all are bundle paths, as are the URLs of the
+ * bundle's entries; <tt>classpath:</tt>,
+ * <tt>classpath*:</tt> and URLs such as <tt>file:</tt> are passed to the delegate. Can be given to
+ * {@link com.trigonic.utils.spring.context.XmlResourceApplicationContext} as its resource loader, so that config
+ * resources, relative imports and bundle patterns never touch the file system.
+ */
+public class ConfigBundleResourceLoader implements ResourcePatternResolver {
+    public static final String BUNDLE_URL_PREFIX = "bundle:";
+
+    private final ConfigBundle bundle;
+    private final ResourcePatternResolver delegate;
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    public ConfigBundleResourceLoader(File bundleFile) throws IOException {
+        this(ConfigBundle.open(bundleFile), new PathMatchingResourcePatternResolver());
+    }
+
+    public ConfigBundleResourceLoader(ConfigBundle bundle, ResourcePatternResolver delegate) {
+        this.bundle = bundle;
+        this.delegate = delegate;
+    }
+
+    public ConfigBundle getBundle() {
+        return bundle;
+    }
+
+    public Resource getResource(String location) {
+        String path = getBundlePath(location);
+        return path == null ? delegate.getResource(location) : bundle.getResource(path);
+    }
+
+    public Resource[] getResources(String locationPattern) throws IOException {
+        String pathPattern = getBundlePath(locationPattern);
+        if (pathPattern == null) {
+            return delegate.getResources(locationPattern);
+        }
+        if (!pathMatcher.isPattern(pathPattern)) {
+            return new Resource[] { bundle.getResource(pathPattern) };
+        }
+        List<Resource> resources = new ArrayList<Resource>();
+        for (String path : bundle.getPaths()) {
+            if (pathMatcher.match(pathPattern, path)) {
+                resources.add(bundle.getResource(path));
+            }
+        }
+        return resources.toArray(new Resource[resources.size()]);
+    }
+
+    public ClassLoader getClassLoader() {
+        return delegate.getClassLoader();
+    }
+
+    /**
+     * Returns the path within the bundle for the location, or null if it isn't a bundle location.
+     */
+    private String getBundlePath(String location) {
+        String path;
+        if (location.startsWith(bundle.getLocation())) {
+            path = location.substring(bundle.getLocation().length());
+        } else if (location.startsWith(BUNDLE_URL_PREFIX)) {
+            path = location.substring(BUNDLE_URL_PREFIX.length());
+        } else if (location.startsWith(ResourceLoader.CLASSPATH_URL_PREFIX)
+                || location.startsWith(CLASSPATH_ALL_URL_PREFIX) || ResourceUtils.isUrl(location)) {
+            return null;
+        } else {
+            path = location;
+        }
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+}
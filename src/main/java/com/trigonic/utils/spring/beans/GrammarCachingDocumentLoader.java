@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.xml.DefaultDocumentLoader;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.xml.XmlValidationModeDetector;
+
+/**
+ * A {@link DefaultDocumentLoader} that keeps the XML schemas it compiles for validation in a Xerces grammar pool, so
+ * each schema is resolved and compiled once rather than once per document. The pool is thread-safe and can be shared
+ * by any number of readers through {@link #getSharedInstance()}.
+ *
+ * <p>
+ * Grammars are cached by namespace and schema location rather than by namespace alone as in Xerces' own pool, so
+ * documents referring to different versions of a schema, such as <tt>spring-beans-3.0.xsd</tt> and
+ * <tt>spring-beans-3.1.xsd</tt>, are each validated against the version they refer to. When the JAXP provider is
+ * neither Apache Xerces nor the JDK's internal copy of it, or its grammar pool can't be accessed, documents are loaded
+ * exactly as by {@link DefaultDocumentLoader}.
+ */
+public class GrammarCachingDocumentLoader extends DefaultDocumentLoader {
+    private static final Log logger = LogFactory.getLog(GrammarCachingDocumentLoader.class);
+
+    private static final String GRAMMAR_POOL_PROPERTY = "http://apache.org/xml/properties/internal/grammar-pool";
+    private static final String JDK_XERCES_PACKAGE = "com.sun.org.apache.xerces.internal.";
+    private static final String XERCES_PACKAGE = "org.apache.xerces.";
+
+    private static final GrammarCachingDocumentLoader sharedInstance = new GrammarCachingDocumentLoader();
+
+    private final Object grammarPool;
+
+    public GrammarCachingDocumentLoader() {
+        this.grammarPool = createGrammarPool();
+    }
+
+    public static GrammarCachingDocumentLoader getSharedInstance() {
+        return sharedInstance;
+    }
+
+    /**
+     * Returns whether grammars are actually being cached.
+     */
+    public boolean isCaching() {
+        return grammarPool != null;
+    }
+
+    @Override
+    protected DocumentBuilderFactory createDocumentBuilderFactory(int validationMode, boolean namespaceAware)
+            throws ParserConfigurationException {
+        DocumentBuilderFactory factory = super.createDocumentBuilderFactory(validationMode, namespaceAware);
+        if (grammarPool != null && validationMode == XmlValidationModeDetector.VALIDATION_XSD) {
+            factory.setAttribute(GRAMMAR_POOL_PROPERTY, grammarPool);
+        }
+        return factory;
+    }
+
+    private Object createGrammarPool() {
+        try {
+            DocumentBuilderFactory factory = super.createDocumentBuilderFactory(
+                    XmlValidationModeDetector.VALIDATION_XSD, true);
+            String xercesPackage = getXercesPackage(factory.getClass().getName());
+            if (xercesPackage == null) {
+                logger.debug("Not caching XML schema grammars: " + factory.getClass().getName() + " isn't Xerces");
+                return null;
+            }
+
+            ClassLoader classLoader = factory.getClass().getClassLoader();
+            Class<?> poolInterface = ClassUtils.forName(xercesPackage + "xni.grammars.XMLGrammarPool", classLoader);
+            Class<?> grammarClass = ClassUtils.forName(xercesPackage + "xni.grammars.Grammar", classLoader);
+            Object grammarPool = Proxy.newProxyInstance(poolInterface.getClassLoader(),
+                    new Class<?>[] { poolInterface }, new GrammarPoolHandler(grammarClass));
+            factory.setAttribute(GRAMMAR_POOL_PROPERTY, grammarPool);
+            factory.newDocumentBuilder();
+            return grammarPool;
+        } catch (Throwable e) {
+            logger.debug("Not caching XML schema grammars: grammar pool not supported", e);
+            return null;
+        }
+    }
+
+    private static String getXercesPackage(String factoryClassName) {
+        if (factoryClassName.startsWith(JDK_XERCES_PACKAGE)) {
+            return JDK_XERCES_PACKAGE;
+        } else if (factoryClassName.startsWith(XERCES_PACKAGE)) {
+            return XERCES_PACKAGE;
+        }
+        return null;
+    }
+
+    /**
+     * Implements Xerces' <tt>XMLGrammarPool</tt>, which can't be referred to directly since its package depends on
+     * the provider. Grammars are looked up by the location hint of the document referring to them, or the location of
+     * the import referring to them, and cached by the location they were compiled from. Grammars without a location
+     * aren't cached.
+     */
+    private static class GrammarPoolHandler implements InvocationHandler {
+        private final Class<?> grammarClass;
+        private final ConcurrentMap<String, Object> grammars = new ConcurrentHashMap<String, Object>();
+
+        public GrammarPoolHandler(Class<?> grammarClass) {
+            this.grammarClass = grammarClass;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String methodName = method.getName();
+            if (methodName.equals("retrieveInitialGrammarSet")) {
+                return Array.newInstance(grammarClass, 0);
+            } else if (methodName.equals("retrieveGrammar")) {
+                String key = getKey(args[0], getLocationHint(args[0]));
+                return key == null ? null : grammars.get(key);
+            } else if (methodName.equals("cacheGrammars")) {
+                for (Object grammar : (Object[]) args[1]) {
+                    String key = getKey(invoke(grammar, "getGrammarDescription"), null);
+                    if (key != null) {
+                        grammars.putIfAbsent(key, grammar);
+                    }
+                }
+            } else if (methodName.equals("clear")) {
+                grammars.clear();
+            } else if (methodName.equals("equals")) {
+                return proxy == args[0];
+            } else if (methodName.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (methodName.equals("toString")) {
+                return "grammar pool of " + grammars.size() + " grammars";
+            }
+            return null;
+        }
+
+        private static String getLocationHint(Object description) {
+            Method method = ReflectionUtils.findMethod(description.getClass(), "getLocationHints");
+            if (method != null) {
+                String[] locationHints = (String[]) ReflectionUtils.invokeMethod(method, description);
+                if (!ObjectUtils.isEmpty(locationHints)) {
+                    return locationHints[0];
+                }
+            }
+            return null;
+        }
+
+        private static String getKey(Object description, String location) {
+            if (location == null) {
+                location = (String) invoke(description, "getLiteralSystemId");
+                if (location == null) {
+                    return null;
+                }
+            }
+            return invoke(description, "getGrammarType") + " " + invoke(description, "getNamespace") + " " + location;
+        }
+
+        private static Object invoke(Object target, String methodName) {
+            return ReflectionUtils.invokeMethod(ReflectionUtils.findMethod(target.getClass(), methodName), target);
+        }
+    }
+}
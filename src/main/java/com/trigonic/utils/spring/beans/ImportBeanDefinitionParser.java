@@ -18,19 +18,32 @@ package com.trigonic.utils.spring.beans;
 
 import java.util.Set;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.BeanDefinitionStoreException;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.xml.AbstractBeanDefinitionParser;
 import org.springframework.beans.factory.xml.ParserContext;
 import org.springframework.beans.factory.xml.XmlReaderContext;
+import org.springframework.core.env.Environment;
 import org.springframework.core.io.Resource;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 import org.w3c.dom.Element;
 
 /**
  * Provides an extended <tt>&lt;xutils:import&gt;</tt> element that allows optional importing and fallback to a default.
+ * Each import is reported to {@link ImportListener import listeners} as a single event, even when the alternate is
+ * used.
+ *
+ * <p>
+ * The import can also be made conditional on the active profiles, the presence of classes or the value of a property.
+ * Conditions are checked before anything is located, so a skipped import reads no resources and reports no event.
  */
 public class ImportBeanDefinitionParser extends AbstractBeanDefinitionParser {
+    private static final Log logger = LogFactory.getLog(ImportBeanDefinitionParser.class);
+
     /**
      * This attribute indicates the primary resource to import.
      */
@@ -48,6 +61,32 @@ public class ImportBeanDefinitionParser extends AbstractBeanDefinitionParser {
      */
     public static final String ALTERNATE_ATTRIBUTE = "alternate";
 
+    /**
+     * This attribute, when true using {@link Boolean#parseBoolean(String)}, parses the resources matched by a location
+     * pattern concurrently. Defaults to the registry's {@link ImportOptions#isParallel() import options} when not
+     * specified.
+     */
+    public static final String PARALLEL_ATTRIBUTE = "parallel";
+
+    /**
+     * This attribute specifies profiles, separated by commas, of which at least one must be active for anything to be
+     * imported. A profile prefixed with <tt>!</tt> matches when that profile isn't active.
+     */
+    public static final String IF_PROFILE_ATTRIBUTE = "if-profile";
+
+    /**
+     * This attribute specifies class names, separated by commas, that must all be present for anything to be
+     * imported.
+     */
+    public static final String IF_CLASS_PRESENT_ATTRIBUTE = "if-class-present";
+
+    /**
+     * This attribute specifies a property, resolved against the environment's system properties and environment
+     * variables, that must be set for anything to be imported. In the form <tt>name=value</tt>, it must be set to
+     * that value.
+     */
+    public static final String IF_PROPERTY_ATTRIBUTE = "if-property";
+
     @Override
     protected AbstractBeanDefinition parseInternal(Element element, ParserContext parserContext) {
         XmlReaderContext readerContext = parserContext.getReaderContext();
@@ -57,18 +96,41 @@ public class ImportBeanDefinitionParser extends AbstractBeanDefinitionParser {
             return null;
         }
 
+        String skipReason = getSkipReason(element, parserContext);
+        if (skipReason != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Skipping import of [" + primaryLocation + "]: " + skipReason);
+            }
+            return null;
+        }
+
         String alternateLocation = element.getAttribute(ALTERNATE_ATTRIBUTE);
         boolean optional = Boolean.parseBoolean(element.getAttribute(OPTIONAL_ATTRIBUTE));
+        boolean parallel = element.hasAttribute(PARALLEL_ATTRIBUTE) ? Boolean.parseBoolean(element
+                .getAttribute(PARALLEL_ATTRIBUTE)) : ImportHelper.getImportOptions(readerContext.getRegistry())
+                .isParallel();
 
         String currentLocation = primaryLocation;
+        ImportMeasurement measurement = ImportHelper.startMeasurement(readerContext.getRegistry());
         try {
+            if (StringUtils.hasLength(alternateLocation)
+                    && ImportHelper.getImportOptions(readerContext.getRegistry()).isSpeculativeProbing()) {
+                ImportHelper.probeSpeculatively(readerContext.getReader(), readerContext.getResource(),
+                        primaryLocation, alternateLocation, measurement);
+            }
             Set<Resource> actualResources = ImportHelper.importResource(readerContext.getReader(),
-                    readerContext.getResource(), currentLocation);
+                    readerContext.getResource(), currentLocation, parallel, measurement);
 
+            boolean alternateUsed = false;
             if (actualResources.isEmpty() && StringUtils.hasLength(alternateLocation)) {
                 currentLocation = alternateLocation;
                 actualResources = ImportHelper.importResource(readerContext.getReader(), readerContext.getResource(),
-                        currentLocation);
+                        currentLocation, parallel, measurement);
+                alternateUsed = !actualResources.isEmpty();
+            }
+            if (measurement.isMeasured()) {
+                ImportHelper.fireImportCompleted(measurement.toEvent(readerContext.getRegistry(),
+                        readerContext.getResource(), primaryLocation, actualResources, alternateUsed));
             }
 
             if (actualResources.isEmpty() && !optional) {
@@ -88,4 +150,57 @@ public class ImportBeanDefinitionParser extends AbstractBeanDefinitionParser {
         return null;
     }
 
+    /**
+     * Checks the conditions of the element.
+     *
+     * @return why the import should be skipped, or null if it shouldn't
+     */
+    private static String getSkipReason(Element element, ParserContext parserContext) {
+        Environment environment = parserContext.getDelegate().getEnvironment();
+
+        if (element.hasAttribute(IF_PROFILE_ATTRIBUTE)) {
+            String[] profiles = StringUtils.commaDelimitedListToStringArray(StringUtils.trimAllWhitespace(element
+                    .getAttribute(IF_PROFILE_ATTRIBUTE)));
+            boolean accepted = false;
+            for (String profile : profiles) {
+                if (profile.startsWith("!") ? !environment.acceptsProfiles(profile.substring(1)) : environment
+                        .acceptsProfiles(profile)) {
+                    accepted = true;
+                    break;
+                }
+            }
+            if (!accepted) {
+                return "none of the profiles " + ObjectUtils.nullSafeToString(profiles) + " are active";
+            }
+        }
+
+        if (element.hasAttribute(IF_CLASS_PRESENT_ATTRIBUTE)) {
+            XmlReaderContext readerContext = parserContext.getReaderContext();
+            ClassLoader classLoader = readerContext.getBeanClassLoader();
+            if (classLoader == null && readerContext.getResourceLoader() != null) {
+                classLoader = readerContext.getResourceLoader().getClassLoader();
+            }
+            for (String className : StringUtils.commaDelimitedListToStringArray(StringUtils
+                    .trimAllWhitespace(element.getAttribute(IF_CLASS_PRESENT_ATTRIBUTE)))) {
+                if (!ClassUtils.isPresent(className, classLoader)) {
+                    return "class [" + className + "] is not present";
+                }
+            }
+        }
+
+        if (element.hasAttribute(IF_PROPERTY_ATTRIBUTE)) {
+            String condition = element.getAttribute(IF_PROPERTY_ATTRIBUTE);
+            int separator = condition.indexOf('=');
+            String name = (separator < 0 ? condition : condition.substring(0, separator)).trim();
+            String value = environment.getProperty(name);
+            if (value == null) {
+                return "property [" + name + "] is not set";
+            }
+            if (separator >= 0 && !value.equals(condition.substring(separator + 1))) {
+                return "property [" + name + "] is not [" + condition.substring(separator + 1) + "]";
+            }
+        }
+
+        return null;
+    }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.io.Resource;
+import org.w3c.dom.Document;
+
+/**
+ * A bounded, least-recently-used cache of parsed XML documents shared across readers (and therefore across
+ * application contexts). Entries are keyed by the resource's URL and last-modified time, so a changed resource is
+ * parsed again rather than served stale, and by the reader's validation mode, namespace awareness and entity resolver,
+ * so readers configured differently don't share documents. Callers always receive their own deep copy of the cached
+ * document since DOM implementations aren't safe for concurrent use.
+ *
+ * <p>
+ * The {@link #getSharedInstance() shared instance} used by {@link ImportHelper} is disabled until given a positive
+ * {@link #setMaxSize(int) maximum size}.
+ */
+public class ImportDocumentCache {
+    private static final ImportDocumentCache sharedInstance = new ImportDocumentCache(0);
+
+    private final Map<CacheKey, Document> documents;
+    private volatile int maxSize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public ImportDocumentCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.documents = new LinkedHashMap<CacheKey, Document>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Document> eldest) {
+                boolean evict = size() > ImportDocumentCache.this.maxSize;
+                if (evict) {
+                    evictionCount.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache consulted by {@link ImportHelper} and
+     * {@link com.trigonic.utils.spring.context.XmlResourceApplicationContext}.
+     */
+    public static ImportDocumentCache getSharedInstance() {
+        return sharedInstance;
+    }
+
+    /**
+     * Sets the maximum number of documents retained, where zero disables caching. Shrinking the cache evicts the
+     * least-recently-used documents immediately.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative");
+        }
+        this.maxSize = maxSize;
+        synchronized (documents) {
+            while (documents.size() > maxSize) {
+                documents.remove(documents.keySet().iterator().next());
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public int getSize() {
+        synchronized (documents) {
+            return documents.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public void clear() {
+        synchronized (documents) {
+            documents.clear();
+        }
+    }
+
+    /**
+     * Returns a copy of the cached document for the resource, loading and caching it if it's not present or has
+     * changed since it was cached. Resources that can't report a URL and last-modified time are always loaded.
+     */
+    public Document getDocument(Resource resource, ImportDocumentLoader documentLoader) {
+        CacheKey key = isEnabled() ? CacheKey.forResource(resource, documentLoader) : null;
+        if (key == null) {
+            return documentLoader.loadDocument(resource);
+        }
+
+        Document cached;
+        synchronized (documents) {
+            cached = documents.get(key);
+        }
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            return copy(cached);
+        }
+
+        missCount.incrementAndGet();
+        Document document = documentLoader.loadDocument(resource);
+        Document copy = copy(document);
+        synchronized (documents) {
+            documents.put(key, copy);
+        }
+        return document;
+    }
+
+    private static Document copy(Document document) {
+        // even reads may expand deferred nodes, so copies from the same document must not overlap
+        synchronized (document) {
+            return (Document) document.cloneNode(true);
+        }
+    }
+
+    private static class CacheKey {
+        private final String url;
+        private final long lastModified;
+        private final int validationMode;
+        private final boolean namespaceAware;
+        private final Object entityResolverKey;
+
+        private CacheKey(String url, long lastModified, int validationMode, boolean namespaceAware,
+                Object entityResolverKey) {
+            this.url = url;
+            this.lastModified = lastModified;
+            this.validationMode = validationMode;
+            this.namespaceAware = namespaceAware;
+            this.entityResolverKey = entityResolverKey;
+        }
+
+        static CacheKey forResource(Resource resource, ImportDocumentLoader documentLoader) {
+            try {
+                return new CacheKey(resource.getURL().toExternalForm(), resource.lastModified(),
+                        documentLoader.getReaderValidationMode(), documentLoader.isNamespaceAware(),
+                        documentLoader.getEntityResolverKey());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return lastModified == other.lastModified && url.equals(other.url)
+                    && validationMode == other.validationMode && namespaceAware == other.namespaceAware
+                    && entityResolverKey.equals(other.entityResolverKey);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 31 * url.hashCode() + (int) (lastModified ^ (lastModified >>> 32));
+            hash = 31 * hash + validationMode;
+            hash = 31 * hash + (namespaceAware ? 1 : 0);
+            return 31 * hash + entityResolverKey.hashCode();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.xml.DefaultDocumentLoader;
+import org.springframework.beans.factory.xml.DelegatingEntityResolver;
+import org.springframework.beans.factory.xml.DocumentLoader;
+import org.springframework.beans.factory.xml.ResourceEntityResolver;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionStoreException;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.xml.SimpleSaxErrorHandler;
+import org.springframework.util.xml.XmlValidationModeDetector;
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Loads the DOM {@link Document} for a resource the same way an {@link XmlBeanDefinitionReader} would, but without
+ * registering its bean definitions. This allows documents to be read and parsed independently of (and concurrently
+ * with) registration, which is then done through {@link XmlBeanDefinitionReader#registerBeanDefinitions(Document,
+ * Resource)}. This is adapted from <tt>XmlBeanDefinitionReader.doLoadBeanDefinitions</tt> since the reader's own
+ * {@link DocumentLoader} isn't externally reachable. Documents are parsed with the reader's validation mode, namespace
+ * awareness and entity resolver, including one {@link XmlBeanDefinitionReader#setEntityResolver(EntityResolver) set}
+ * on the reader.
+ */
+public class ImportDocumentLoader {
+    private static final Log logger = LogFactory.getLog(ImportDocumentLoader.class);
+
+    private final XmlBeanDefinitionReader reader;
+    private final DocumentLoader documentLoader;
+    private final ErrorHandler errorHandler = new SimpleSaxErrorHandler(logger);
+    private final XmlValidationModeDetector validationModeDetector = new XmlValidationModeDetector();
+    private final EntityResolver entityResolver;
+
+    public ImportDocumentLoader(XmlBeanDefinitionReader reader) {
+        this.reader = reader;
+        this.documentLoader = ImportHelper.getImportOptions(reader.getRegistry()).isGrammarCached()
+                ? GrammarCachingDocumentLoader.getSharedInstance() : new DefaultDocumentLoader();
+        this.entityResolver = createEntityResolver(reader);
+    }
+
+    private static EntityResolver createEntityResolver(XmlBeanDefinitionReader reader) {
+        // the reader's resolver, custom or default, is only exposed to subclasses
+        Method method = ReflectionUtils.findMethod(reader.getClass(), "getEntityResolver");
+        ReflectionUtils.makeAccessible(method);
+        return (EntityResolver) ReflectionUtils.invokeMethod(method, reader);
+    }
+
+    int getReaderValidationMode() {
+        return reader.getValidationMode();
+    }
+
+    boolean isNamespaceAware() {
+        return reader.isNamespaceAware();
+    }
+
+    /**
+     * Returns what distinguishes documents parsed with this loader's entity resolver. The reader's default resolvers
+     * resolve Spring's schemas and DTDs the same wherever they were created, so they're distinguished by type; any
+     * other resolver by identity.
+     */
+    Object getEntityResolverKey() {
+        Class<?> resolverClass = entityResolver.getClass();
+        if (resolverClass == ResourceEntityResolver.class || resolverClass == DelegatingEntityResolver.class) {
+            return resolverClass;
+        }
+        return entityResolver;
+    }
+
+    /**
+     * Reads and parses the specified resource. This is safe to call concurrently.
+     *
+     * @throws BeanDefinitionStoreException if the resource cannot be read or is not a valid XML document
+     */
+    public Document loadDocument(Resource resource) throws BeanDefinitionStoreException {
+        try {
+            int validationMode = getValidationMode(resource);
+            InputStream inputStream = resource.getInputStream();
+            try {
+                return documentLoader.loadDocument(new InputSource(inputStream), entityResolver, errorHandler,
+                        validationMode, reader.isNamespaceAware());
+            } finally {
+                inputStream.close();
+            }
+        } catch (BeanDefinitionStoreException ex) {
+            throw ex;
+        } catch (SAXParseException ex) {
+            throw new XmlBeanDefinitionStoreException(resource.getDescription(), "Line " + ex.getLineNumber()
+                    + " in XML document from " + resource + " is invalid", ex);
+        } catch (SAXException ex) {
+            throw new XmlBeanDefinitionStoreException(resource.getDescription(), "XML document from " + resource
+                    + " is invalid", ex);
+        } catch (ParserConfigurationException ex) {
+            throw new BeanDefinitionStoreException(resource.getDescription(),
+                    "Parser configuration exception parsing XML from " + resource, ex);
+        } catch (IOException ex) {
+            throw new BeanDefinitionStoreException(resource.getDescription(),
+                    "IOException parsing XML document from " + resource, ex);
+        } catch (Throwable ex) {
+            throw new BeanDefinitionStoreException(resource.getDescription(),
+                    "Unexpected exception parsing XML document from " + resource, ex);
+        }
+    }
+
+    /**
+     * Registers the bean definitions from a previously {@link #loadDocument(Resource) loaded} document. This must be
+     * called from the thread that owns the reader's registry.
+     *
+     * @return the number of bean definitions registered
+     */
+    public int registerBeanDefinitions(Document document, Resource resource) throws BeanDefinitionStoreException {
+        return reader.registerBeanDefinitions(document, resource);
+    }
+
+    private int getValidationMode(Resource resource) throws IOException {
+        int validationMode = reader.getValidationMode();
+        if (validationMode != XmlBeanDefinitionReader.VALIDATION_AUTO) {
+            return validationMode;
+        }
+
+        InputStream inputStream = resource.getInputStream();
+        try {
+            validationMode = validationModeDetector.detectValidationMode(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        // same as the reader, assume XSD if we didn't get a clear indication
+        return validationMode == XmlValidationModeDetector.VALIDATION_AUTO ? XmlBeanDefinitionReader.VALIDATION_XSD
+                : validationMode;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.core.io.Resource;
+
+/**
+ * Describes a completed import: where it was declared, what it resolved to and what it cost. Times, bean counts and
+ * allocations include any imports nested within the imported resources; {@link #getDepth()} distinguishes those so
+ * they aren't counted twice when aggregating.
+ */
+public class ImportEvent {
+    private final BeanDefinitionRegistry registry;
+    private final Resource sourceResource;
+    private final String location;
+    private final List<Resource> resources;
+    private final boolean alternateUsed;
+    private final int depth;
+    private final long probeNanos;
+    private final long parseNanos;
+    private final int beanCount;
+    private final long allocatedBytes;
+    private final int duplicateCount;
+
+    public ImportEvent(BeanDefinitionRegistry registry, Resource sourceResource, String location,
+            Resource[] resources, boolean alternateUsed, int depth, long probeNanos, long parseNanos, int beanCount,
+            long allocatedBytes, int duplicateCount) {
+        this.registry = registry;
+        this.sourceResource = sourceResource;
+        this.location = location;
+        this.resources = Collections.unmodifiableList(Arrays.asList(resources));
+        this.alternateUsed = alternateUsed;
+        this.depth = depth;
+        this.probeNanos = probeNanos;
+        this.parseNanos = parseNanos;
+        this.beanCount = beanCount;
+        this.allocatedBytes = allocatedBytes;
+        this.duplicateCount = duplicateCount;
+    }
+
+    /**
+     * Returns the registry the bean definitions were imported into.
+     */
+    public BeanDefinitionRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Returns the resource containing the import.
+     */
+    public Resource getSourceResource() {
+        return sourceResource;
+    }
+
+    /**
+     * Returns the primary location as specified by the import.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * Returns the resources actually imported, which is empty for a missing optional import.
+     */
+    public List<Resource> getResources() {
+        return resources;
+    }
+
+    /**
+     * Returns whether the primary location didn't exist and the alternate location was imported instead.
+     */
+    public boolean isAlternateUsed() {
+        return alternateUsed;
+    }
+
+    /**
+     * Returns how deeply this import is nested within other imports, starting at 0 for imports declared directly in a
+     * context's config resources.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the time spent deciding whether candidate resources exist. For a parallel import this is summed across
+     * the threads that probed them.
+     */
+    public long getProbeNanos() {
+        return probeNanos;
+    }
+
+    /**
+     * Returns the time spent reading, parsing and registering the imported resources.
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public int getBeanCount() {
+        return beanCount;
+    }
+
+    /**
+     * Returns the bytes allocated by the importing thread, or -1 if the JVM can't measure it or
+     * {@link ImportOptions#setAllocationMeasured(boolean) allocation isn't measured}. Documents parsed on other threads
+     * by a parallel import aren't included.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns how many of the imported resources were skipped because they had already been imported into the
+     * registry. These are still included in {@link #getResources()}.
+     *
+     * @see ImportHelper#setDeduplicated(boolean)
+     */
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    @Override
+    public String toString() {
+        return "import [" + location + "]" + (alternateUsed ? " (alternate)" : "") + ": " + resources.size()
+                + " resources" + (duplicateCount > 0 ? " (" + duplicateCount + " duplicate)" : "") + ", " + beanCount
+                + " beans, probe " + probeNanos / 1000 + "us, parse " + parseNanos / 1000 + "us";
+    }
+}
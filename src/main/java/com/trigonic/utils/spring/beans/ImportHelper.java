@@ -20,20 +20,39 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
 import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.util.SystemPropertyUtils;
+import org.w3c.dom.Document;
 
 /**
  * Helper to import bean definitions from another resource. This is tolerant of missing resources and allows the caller
@@ -41,23 +60,523 @@ import org.springframework.util.SystemPropertyUtils;
  * <tt>DefaultBeanDefinitionDocumentReader.importBeanDefinitionResource</tt> (since that's not externally reachable) and
  * <tt>AbstractBeanDefinitionReader.loadBeanDefinitions</tt> (since we need to detect when the resource isn't
  * available).
+ *
+ * <p>
+ * Resources matched by a location pattern (e.g. <tt>classpath*:</tt>) can optionally be read and parsed concurrently
+ * on a bounded pool. Their bean definitions are still registered one document at a time in the order the pattern
+ * resolved them, so overriding behaves the same as a sequential import.
+ *
+ * <p>
+ * When the {@link ImportDocumentCache#getSharedInstance() shared document cache} is enabled, documents are taken from
+ * it rather than parsed again for every reader that imports them, except by a {@link StreamingBeanDefinitionReader}.
+ *
+ * <p>
+ * Every candidate resource is probed through the configured {@link ResourceExistenceChecker}, which can be a
+ * {@link CachingResourceExistenceChecker} to avoid probing known-missing optional imports on every refresh.
+ *
+ * <p>
+ * The static settings are the {@link #getDefaultOptions() default options}; imports into a registry with its own
+ * {@link #setImportOptions(BeanDefinitionRegistry, ImportOptions) options} use those instead.
+ *
+ * <p>
+ * <tt>classpath*:</tt> patterns can be resolved against the {@link ClassPathIndex class path index} when one is
+ * present, so only class path roots without an index (or without a match in it) are scanned.
+ *
+ * <p>
+ * Registered {@link ImportListener import listeners} are told how long each import spent probing and parsing.
+ *
+ * <p>
+ * With {@link ImportOptions#setDeduplicated(boolean) deduplication} enabled, a resource already imported into a
+ * registry is skipped when it's imported again, and importing a resource from within itself fails with the chain of
+ * imports involved.
+ *
+ * <p>
+ * With {@link ImportOptions#setSpeculativeProbing(boolean) speculative probing} enabled, the primary and alternate
+ * locations of an import are probed at the same time, so slow remote resources only cost a single round trip before
+ * the one to use is parsed.
  */
 public class ImportHelper {
     private static final Log logger = LogFactory.getLog(ImportHelper.class);
 
+    private static volatile int parallelism = Runtime.getRuntime().availableProcessors();
+    private static ExecutorService parallelExecutor;
+
+    private static final ImportOptions defaultOptions = new ImportOptions();
+    private static ExecutorService probeExecutor;
+    private static final PathMatcher pathMatcher = new AntPathMatcher();
+
+    private static final List<ImportListener> importListeners = new CopyOnWriteArrayList<ImportListener>();
+
+    private static final ThreadLocal<Set<Resource>> resourcesCurrentlyBeingLoaded = new ThreadLocal<Set<Resource>>();
+    private static final ThreadLocal<Integer> importDepth = new ThreadLocal<Integer>();
+    private static final ThreadLocal<Set<String>> importChain = new ThreadLocal<Set<String>>();
+    private static final Map<BeanDefinitionRegistry, ImportedResources> importedResources =
+            new WeakHashMap<BeanDefinitionRegistry, ImportedResources>();
+    private static final Map<BeanDefinitionRegistry, ImportOptions> registryOptions =
+            new WeakHashMap<BeanDefinitionRegistry, ImportOptions>();
+
+    /**
+     * Sets whether imports that match multiple resources are parsed in parallel by default.
+     *
+     * @see ImportOptions#setParallel(boolean)
+     */
+    public static void setParallel(boolean parallel) {
+        defaultOptions.setParallel(parallel);
+    }
+
+    public static boolean isParallel() {
+        return defaultOptions.isParallel();
+    }
+
+    /**
+     * Sets the maximum number of documents parsed concurrently by parallel imports. Defaults to the number of
+     * available processors. Changing it replaces the threads that parse documents; imports already in progress finish
+     * on the previous threads.
+     */
+    public static synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        if (parallelism != ImportHelper.parallelism && parallelExecutor != null) {
+            parallelExecutor.shutdown();
+            parallelExecutor = null;
+        }
+        ImportHelper.parallelism = parallelism;
+    }
+
+    public static int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Stops the threads used by parallel imports and speculative probing once they finish their current work, such as
+     * when the application that loaded this class is undeployed. They're started again if needed.
+     */
+    public static synchronized void shutdown() {
+        if (parallelExecutor != null) {
+            parallelExecutor.shutdown();
+            parallelExecutor = null;
+        }
+        if (probeExecutor != null) {
+            probeExecutor.shutdown();
+            probeExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the options used for imports into registries that don't have their own.
+     */
+    public static ImportOptions getDefaultOptions() {
+        return defaultOptions;
+    }
+
+    /**
+     * Sets the options used for imports into the registry in place of the {@link #getDefaultOptions() default ones},
+     * or null to use the default ones again.
+     */
+    public static void setImportOptions(BeanDefinitionRegistry registry, ImportOptions options) {
+        synchronized (registryOptions) {
+            if (options == null) {
+                registryOptions.remove(registry);
+            } else {
+                registryOptions.put(registry, options);
+            }
+        }
+    }
+
+    /**
+     * Returns the options used for imports into the registry, which are the default ones unless some were set for the
+     * registry.
+     */
+    public static ImportOptions getImportOptions(BeanDefinitionRegistry registry) {
+        synchronized (registryOptions) {
+            ImportOptions options = registryOptions.get(registry);
+            return options == null ? defaultOptions : options;
+        }
+    }
+
+    /**
+     * Sets the default checker used to decide whether candidate resources exist, or null (the default) to ask each
+     * resource directly.
+     *
+     * @see ImportOptions#setExistenceChecker(ResourceExistenceChecker)
+     */
+    public static void setExistenceChecker(ResourceExistenceChecker existenceChecker) {
+        defaultOptions.setExistenceChecker(existenceChecker);
+    }
+
+    public static ResourceExistenceChecker getExistenceChecker() {
+        return defaultOptions.getExistenceChecker();
+    }
+
+    /**
+     * Sets whether <tt>classpath*:</tt> patterns are resolved using the class path index by default.
+     *
+     * @see ImportOptions#setClassPathIndexUsed(boolean)
+     */
+    public static void setClassPathIndexUsed(boolean classPathIndexUsed) {
+        defaultOptions.setClassPathIndexUsed(classPathIndexUsed);
+    }
+
+    public static boolean isClassPathIndexUsed() {
+        return defaultOptions.isClassPathIndexUsed();
+    }
+
+    /**
+     * Sets whether documents keep their compiled XML schemas in the shared grammar pool by default.
+     *
+     * @see ImportOptions#setGrammarCached(boolean)
+     */
+    public static void setGrammarCached(boolean grammarCached) {
+        defaultOptions.setGrammarCached(grammarCached);
+    }
+
+    public static boolean isGrammarCached() {
+        return defaultOptions.isGrammarCached();
+    }
+
+    /**
+     * Sets whether resources already imported into a registry are skipped by default.
+     *
+     * @see ImportOptions#setDeduplicated(boolean)
+     */
+    public static void setDeduplicated(boolean deduplicated) {
+        defaultOptions.setDeduplicated(deduplicated);
+    }
+
+    public static boolean isDeduplicated() {
+        return defaultOptions.isDeduplicated();
+    }
+
+    /**
+     * Returns how many imports into the registry were skipped because the resource had already been imported.
+     */
+    public static int getDuplicateImportCount(BeanDefinitionRegistry registry) {
+        synchronized (importedResources) {
+            ImportedResources imported = importedResources.get(registry);
+            return imported == null ? 0 : imported.duplicateCount;
+        }
+    }
+
+    /**
+     * Forgets which resources were imported into the registry, keeping only the duplicate count, so a later import of
+     * one of them is parsed again even when imports are deduplicated.
+     */
+    public static void forgetImportedResources(BeanDefinitionRegistry registry) {
+        synchronized (importedResources) {
+            ImportedResources imported = importedResources.get(registry);
+            if (imported != null) {
+                imported.locations = new HashSet<String>();
+            }
+        }
+    }
+
+    /**
+     * Sets whether imports with an alternate probe both locations concurrently by default.
+     *
+     * @see ImportOptions#setSpeculativeProbing(boolean)
+     */
+    public static void setSpeculativeProbing(boolean speculativeProbing) {
+        defaultOptions.setSpeculativeProbing(speculativeProbing);
+    }
+
+    public static boolean isSpeculativeProbing() {
+        return defaultOptions.isSpeculativeProbing();
+    }
+
+    /**
+     * Sets how long speculative probing waits by default.
+     *
+     * @see ImportOptions#setProbeTimeoutMillis(long)
+     */
+    public static void setProbeTimeoutMillis(long probeTimeoutMillis) {
+        defaultOptions.setProbeTimeoutMillis(probeTimeoutMillis);
+    }
+
+    public static long getProbeTimeoutMillis() {
+        return defaultOptions.getProbeTimeoutMillis();
+    }
+
+    /**
+     * Sets whether the bytes allocated by each import are measured by default.
+     *
+     * @see ImportOptions#setAllocationMeasured(boolean)
+     */
+    public static void setAllocationMeasured(boolean allocationMeasured) {
+        defaultOptions.setAllocationMeasured(allocationMeasured);
+    }
+
+    public static boolean isAllocationMeasured() {
+        return defaultOptions.isAllocationMeasured();
+    }
+
+    public static void addImportListener(ImportListener listener) {
+        importListeners.add(listener);
+    }
+
+    public static void removeImportListener(ImportListener listener) {
+        importListeners.remove(listener);
+    }
+
     public static Set<Resource> importResource(XmlBeanDefinitionReader reader, Resource sourceResource, String location) {
+        return importResource(reader, sourceResource, location, getImportOptions(reader.getRegistry()).isParallel());
+    }
+
+    public static Set<Resource> importResource(XmlBeanDefinitionReader reader, Resource sourceResource,
+            String location, boolean parallel) {
+        ImportMeasurement measurement = startMeasurement(reader.getRegistry());
+        Set<Resource> actualResources = importResource(reader, sourceResource, location, parallel, measurement);
+        if (measurement.isMeasured()) {
+            fireImportCompleted(measurement.toEvent(reader.getRegistry(), sourceResource, location, actualResources,
+                    false));
+        }
+        return actualResources;
+    }
+
+    /**
+     * Imports the location, adding its cost to the measurement rather than notifying listeners so that the caller can
+     * report the primary and alternate locations as a single import.
+     */
+    static Set<Resource> importResource(XmlBeanDefinitionReader reader, Resource sourceResource, String location,
+            boolean parallel, ImportMeasurement measurement) {
         location = SystemPropertyUtils.resolvePlaceholders(location); // resolve system properties: e.g. "${user.dir}"
         Set<Resource> actualResources = new LinkedHashSet<Resource>(4);
 
-        if (isAbsoluteLocation(location)) {
-            importAbsoluteResource(reader, location, actualResources);
-        } else {
-            importRelativeResource(reader, sourceResource, location, actualResources);
+        Integer depth = importDepth.get();
+        importDepth.set(depth == null ? 1 : depth + 1);
+        try {
+            if (isAbsoluteLocation(location)) {
+                importAbsoluteResource(reader, location, actualResources, parallel, measurement);
+            } else {
+                importRelativeResource(reader, sourceResource, location, actualResources, measurement);
+            }
+        } finally {
+            if (depth == null) {
+                importDepth.remove();
+            } else {
+                importDepth.set(depth);
+            }
         }
 
         return actualResources;
     }
 
+    /**
+     * Probes the primary and alternate locations concurrently, recording the outcome in the measurement so that
+     * importing either of them afterwards doesn't probe it again. Waits for the alternate only if the primary is
+     * missing.
+     */
+    static void probeSpeculatively(XmlBeanDefinitionReader reader, Resource sourceResource, String primaryLocation,
+            String alternateLocation, final ImportMeasurement measurement) {
+        Resource primary = getSingleResource(reader, sourceResource, primaryLocation);
+        Resource alternate = getSingleResource(reader, sourceResource, alternateLocation);
+        if (primary == null || alternate == null) {
+            return;
+        }
+
+        ExecutorService executor = getProbeExecutor();
+        ImportOptions options = getImportOptions(reader.getRegistry());
+        ResourceExistenceChecker existenceChecker = options.getExistenceChecker();
+        Future<Boolean> primaryProbe = submit(executor, createProbe(existenceChecker, primary, measurement));
+        Future<Boolean> alternateProbe = submit(executor, createProbe(existenceChecker, alternate, measurement));
+        long timeoutMillis = options.getProbeTimeoutMillis();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            if (!awaitProbe(primaryProbe, primary, timeoutMillis, deadline, measurement)) {
+                awaitProbe(alternateProbe, alternate, timeoutMillis, deadline, measurement);
+            }
+        } finally {
+            primaryProbe.cancel(true);
+            alternateProbe.cancel(true);
+        }
+    }
+
+    private static Callable<Boolean> createProbe(final ResourceExistenceChecker existenceChecker,
+            final Resource resource, final ImportMeasurement measurement) {
+        return new Callable<Boolean>() {
+            public Boolean call() {
+                return measurement.exists(existenceChecker, resource);
+            }
+        };
+    }
+
+    private static boolean awaitProbe(Future<Boolean> probe, Resource resource, long timeoutMillis, long deadline,
+            ImportMeasurement measurement) {
+        try {
+            return probe.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Timed out after " + timeoutMillis + "ms probing " + resource
+                    + ", treating it as missing");
+            measurement.assumeMissing(resource);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BeanDefinitionStoreException("Interrupted while probing " + resource, e);
+        } catch (ExecutionException e) {
+            // probing it again while importing reports the failure
+            return false;
+        }
+    }
+
+    /**
+     * Resolves the location the same way importing it would, or returns null if it's a pattern.
+     */
+    private static Resource getSingleResource(XmlBeanDefinitionReader reader, Resource sourceResource,
+            String location) {
+        location = SystemPropertyUtils.resolvePlaceholders(location);
+        try {
+            if (!isAbsoluteLocation(location)) {
+                return sourceResource.createRelative(location);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        ResourceLoader resourceLoader = reader.getResourceLoader();
+        if (resourceLoader == null || location.startsWith(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX)
+                || pathMatcher.isPattern(location)) {
+            return null;
+        }
+        return resourceLoader.getResource(location);
+    }
+
+    static ImportMeasurement startMeasurement(BeanDefinitionRegistry registry) {
+        Integer depth = importDepth.get();
+        return new ImportMeasurement(depth == null ? 0 : depth, !importListeners.isEmpty(), getImportOptions(registry)
+                .isAllocationMeasured());
+    }
+
+    static void fireImportCompleted(ImportEvent event) {
+        for (ImportListener listener : importListeners) {
+            listener.importCompleted(event);
+        }
+    }
+
+    /**
+     * Loads the bean definitions from the specified resource, using the
+     * {@link ImportDocumentCache#getSharedInstance() shared document cache} if it's enabled.
+     *
+     * @return the number of bean definitions registered
+     */
+    public static int loadBeanDefinitions(XmlBeanDefinitionReader reader, Resource resource) {
+        return loadBeanDefinitions(reader, resource, null, null);
+    }
+
+    /**
+     * Loads the bean definitions unless the resource was already imported into the registry.
+     *
+     * @param measurement the measurement to count a skipped duplicate in, or null
+     * @param document the document already parsed from the resource, or null to load it
+     */
+    private static int loadBeanDefinitions(XmlBeanDefinitionReader reader, Resource resource,
+            ImportMeasurement measurement, Document document) {
+        boolean deduplicated = getImportOptions(reader.getRegistry()).isDeduplicated();
+        String location = deduplicated ? getCanonicalLocation(resource) : null;
+        if (location == null) {
+            return doLoadBeanDefinitions(reader, resource, document);
+        }
+
+        Set<String> chain = importChain.get();
+        if (chain == null) {
+            chain = new LinkedHashSet<String>(4);
+            importChain.set(chain);
+        }
+        if (chain.contains(location)) {
+            throw new BeanDefinitionStoreException("Detected cyclic import of " + resource + " through "
+                    + StringUtils.collectionToDelimitedString(chain, " -> ") + " - check your import definitions!");
+        }
+        if (!markImported(reader.getRegistry(), location)) {
+            if (measurement != null) {
+                measurement.addDuplicate();
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Skipped " + resource + ", which has already been imported");
+            }
+            return 0;
+        }
+
+        chain.add(location);
+        try {
+            return doLoadBeanDefinitions(reader, resource, document);
+        } finally {
+            chain.remove(location);
+            if (chain.isEmpty()) {
+                importChain.remove();
+            }
+        }
+    }
+
+    private static int doLoadBeanDefinitions(XmlBeanDefinitionReader reader, Resource resource, Document parsed) {
+        // the reader's own cyclic import detection is bypassed when registering a document directly, and doesn't see
+        // the documents registered that way further up the import chain
+        Set<Resource> currentResources = resourcesCurrentlyBeingLoaded.get();
+        if (currentResources == null) {
+            currentResources = new HashSet<Resource>(4);
+            resourcesCurrentlyBeingLoaded.set(currentResources);
+        }
+        if (!currentResources.add(resource)) {
+            throw new BeanDefinitionStoreException("Detected cyclic loading of " + resource
+                    + " - check your import definitions!");
+        }
+        try {
+            if (parsed != null) {
+                return reader.registerBeanDefinitions(parsed, resource);
+            }
+            ImportDocumentCache documentCache = ImportDocumentCache.getSharedInstance();
+            if (!documentCache.isEnabled() || reader instanceof StreamingBeanDefinitionReader) {
+                return reader.loadBeanDefinitions(resource);
+            }
+            ImportDocumentLoader documentLoader = new ImportDocumentLoader(reader);
+            Document document = documentCache.getDocument(resource, documentLoader);
+            return documentLoader.registerBeanDefinitions(document, resource);
+        } finally {
+            currentResources.remove(resource);
+            if (currentResources.isEmpty()) {
+                resourcesCurrentlyBeingLoaded.remove();
+            }
+        }
+    }
+
+    /**
+     * Records that the resource was imported into the registry, counting a duplicate if it already was.
+     *
+     * @return false if the resource was already imported
+     */
+    private static boolean markImported(BeanDefinitionRegistry registry, String location) {
+        synchronized (importedResources) {
+            ImportedResources imported = importedResources.get(registry);
+            if (imported == null) {
+                imported = new ImportedResources();
+                importedResources.put(registry, imported);
+            }
+            if (imported.locations.add(location)) {
+                return true;
+            }
+            ++imported.duplicateCount;
+            return false;
+        }
+    }
+
+    private static boolean isImported(BeanDefinitionRegistry registry, Resource resource) {
+        boolean deduplicated = getImportOptions(registry).isDeduplicated();
+        String location = deduplicated ? getCanonicalLocation(resource) : null;
+        if (location == null) {
+            return false;
+        }
+        synchronized (importedResources) {
+            ImportedResources imported = importedResources.get(registry);
+            return imported != null && imported.locations.contains(location);
+        }
+    }
+
+    private static String getCanonicalLocation(Resource resource) {
+        try {
+            return StringUtils.cleanPath(resource.getURL().toExternalForm());
+        } catch (IOException e) {
+            // without a URL, there's no reliable way to tell it was imported before
+            return null;
+        }
+    }
+
     private static boolean isAbsoluteLocation(String location) {
         boolean absoluteLocation = false;
         try {
@@ -69,12 +588,14 @@ public class ImportHelper {
     }
 
     private static void importRelativeResource(XmlBeanDefinitionReader reader, Resource sourceResource,
-            String location, Set<Resource> actualResources) {
+            String location, Set<Resource> actualResources, ImportMeasurement measurement) {
         int importCount = 0;
         try {
             Resource relativeResource = sourceResource.createRelative(location);
-            if (relativeResource.exists()) {
-                importCount = reader.loadBeanDefinitions(relativeResource);
+            if (measurement.exists(getImportOptions(reader.getRegistry()).getExistenceChecker(), relativeResource)) {
+                long start = System.nanoTime();
+                importCount = loadBeanDefinitions(reader, relativeResource, measurement, null);
+                measurement.addParse(start, importCount);
                 actualResources.add(relativeResource);
             }
         } catch (IOException e) {
@@ -86,7 +607,7 @@ public class ImportHelper {
     }
 
     private static void importAbsoluteResource(XmlBeanDefinitionReader reader, String location,
-            Set<Resource> actualResources) {
+            Set<Resource> actualResources, boolean parallel, ImportMeasurement measurement) {
         ResourceLoader resourceLoader = reader.getResourceLoader();
         if (resourceLoader == null) {
             throw new BeanDefinitionStoreException("Cannot import bean definitions from location [" + location
@@ -94,21 +615,46 @@ public class ImportHelper {
         }
 
         if (resourceLoader instanceof ResourcePatternResolver) {
-            importAbsoluteResourcePattern(reader, location, actualResources, (ResourcePatternResolver) resourceLoader);
+            importAbsoluteResourcePattern(reader, location, actualResources, getResourcePatternResolver(
+                    (ResourcePatternResolver) resourceLoader, location, getImportOptions(reader.getRegistry())),
+                    parallel, measurement);
         } else {
-            importSingleAbsoluteResource(reader, location, actualResources, resourceLoader);
+            importSingleAbsoluteResource(reader, location, actualResources, resourceLoader, measurement);
         }
     }
 
+    private static ResourcePatternResolver getResourcePatternResolver(ResourcePatternResolver resourceLoader,
+            String location, ImportOptions options) {
+        if (options.isClassPathIndexUsed() && location.startsWith(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX)) {
+            IndexedResourcePatternResolver indexedResolver = new IndexedResourcePatternResolver(resourceLoader);
+            if (indexedResolver.isIndexed()) {
+                return indexedResolver;
+            }
+        }
+        return resourceLoader;
+    }
+
     private static void importAbsoluteResourcePattern(XmlBeanDefinitionReader reader, String location,
-            Set<Resource> actualResources, ResourcePatternResolver resourceLoader) {
+            Set<Resource> actualResources, ResourcePatternResolver resourceLoader, boolean parallel,
+            ImportMeasurement measurement) {
         try {
             List<Resource> resources = new ArrayList<Resource>(Arrays.asList(resourceLoader.getResources(location)));
             int loadCount = 0;
-            for (Resource resource : resources) {
-                if (resource.exists()) {
-                    loadCount += reader.loadBeanDefinitions(resource);
-                    actualResources.add(resource);
+            ResourceExistenceChecker existenceChecker = getImportOptions(reader.getRegistry()).getExistenceChecker();
+            if (parallel && resources.size() > 1 && !(reader instanceof StreamingBeanDefinitionReader)) {
+                long start = System.nanoTime();
+                loadCount = importResourcesInParallel(reader, resources, actualResources, existenceChecker,
+                        measurement);
+                measurement.addParse(start, loadCount);
+            } else {
+                for (Resource resource : resources) {
+                    if (measurement.exists(existenceChecker, resource)) {
+                        long start = System.nanoTime();
+                        int resourceCount = loadBeanDefinitions(reader, resource, measurement, null);
+                        measurement.addParse(start, resourceCount);
+                        loadCount += resourceCount;
+                        actualResources.add(resource);
+                    }
                 }
             }
             if (logger.isDebugEnabled()) {
@@ -121,10 +667,12 @@ public class ImportHelper {
     }
 
     private static void importSingleAbsoluteResource(XmlBeanDefinitionReader reader, String location,
-            Set<Resource> actualResources, ResourceLoader resourceLoader) {
+            Set<Resource> actualResources, ResourceLoader resourceLoader, ImportMeasurement measurement) {
         Resource resource = resourceLoader.getResource(location);
-        if (resource.exists()) {
-            int loadCount = reader.loadBeanDefinitions(resource);
+        if (measurement.exists(getImportOptions(reader.getRegistry()).getExistenceChecker(), resource)) {
+            long start = System.nanoTime();
+            int loadCount = loadBeanDefinitions(reader, resource, measurement, null);
+            measurement.addParse(start, loadCount);
             if (actualResources != null) {
                 actualResources.add(resource);
             }
@@ -133,4 +681,105 @@ public class ImportHelper {
             }
         }
     }
+
+    private static int importResourcesInParallel(XmlBeanDefinitionReader reader, List<Resource> resources,
+            Set<Resource> actualResources, final ResourceExistenceChecker existenceChecker,
+            final ImportMeasurement measurement) {
+        final ImportDocumentLoader documentLoader = new ImportDocumentLoader(reader);
+        final ImportDocumentCache documentCache = ImportDocumentCache.getSharedInstance();
+        ExecutorService executor = getParallelExecutor();
+        List<Future<Document>> documents = new ArrayList<Future<Document>>(resources.size());
+        for (final Resource resource : resources) {
+            if (isImported(reader.getRegistry(), resource)) {
+                // no need to parse what will be skipped
+                documents.add(null);
+                continue;
+            }
+            documents.add(submit(executor, new Callable<Document>() {
+                public Document call() {
+                    if (!measurement.exists(existenceChecker, resource)) {
+                        return null;
+                    }
+                    return documentCache.getDocument(resource, documentLoader);
+                }
+            }));
+        }
+
+        int loadCount = 0;
+        try {
+            for (int i = 0; i < resources.size(); ++i) {
+                if (documents.get(i) == null) {
+                    loadBeanDefinitions(reader, resources.get(i), measurement, null);
+                    actualResources.add(resources.get(i));
+                    continue;
+                }
+                Document document = getDocument(documents.get(i), resources.get(i));
+                if (document != null) {
+                    loadCount += loadBeanDefinitions(reader, resources.get(i), measurement, document);
+                    actualResources.add(resources.get(i));
+                }
+            }
+        } finally {
+            for (Future<Document> document : documents) {
+                if (document != null) {
+                    document.cancel(true);
+                }
+            }
+        }
+        return loadCount;
+    }
+
+    private static Document getDocument(Future<Document> document, Resource resource) {
+        try {
+            return document.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BeanDefinitionStoreException(resource.getDescription(),
+                    "Interrupted while parsing XML document from " + resource, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof BeanDefinitionStoreException) {
+                throw (BeanDefinitionStoreException) ex.getCause();
+            }
+            throw new BeanDefinitionStoreException(resource.getDescription(),
+                    "Unexpected exception parsing XML document from " + resource, ex.getCause());
+        }
+    }
+
+    private static <T> Future<T> submit(ExecutorService executor, Callable<T> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            // the executor was shut down or replaced since it was obtained, so do the work here instead
+            FutureTask<T> future = new FutureTask<T>(task);
+            future.run();
+            return future;
+        }
+    }
+
+    // synchronized with setParallelism and shutdown, which replace the executors
+    private static synchronized ExecutorService getProbeExecutor() {
+        if (probeExecutor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("xutils-probe-");
+            threadFactory.setDaemon(true);
+            probeExecutor = Executors.newCachedThreadPool(threadFactory);
+        }
+        return probeExecutor;
+    }
+
+    private static synchronized ExecutorService getParallelExecutor() {
+        if (parallelExecutor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("xutils-import-");
+            threadFactory.setDaemon(true);
+            parallelExecutor = Executors.newFixedThreadPool(parallelism, threadFactory);
+        }
+        return parallelExecutor;
+    }
+
+    /**
+     * The resources imported into a registry.
+     */
+    private static class ImportedResources {
+        private Set<String> locations = new HashSet<String>();
+        private int duplicateCount;
+    }
 }
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+/**
+ * Notified by {@link ImportHelper} as each import completes, whether through <tt>&lt;xutils:import&gt;</tt> or a
+ * direct call. Listeners are {@link ImportHelper#addImportListener(ImportListener) registered} globally and are called
+ * on the thread that processed the import, so they should filter on {@link ImportEvent#getRegistry()} when only
+ * interested in one context.
+ */
+public interface ImportListener {
+    void importCompleted(ImportEvent event);
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.core.io.Resource;
+
+/**
+ * Accumulates the cost of a single import while {@link ImportHelper} processes it, possibly across several calls when
+ * an alternate location is tried. An unmeasured import only remembers which resources were probed, since nobody is
+ * listening for its cost.
+ */
+class ImportMeasurement {
+    private static final ThreadMXBean threadBean = getAllocationThreadBean();
+
+    private final int depth;
+    private final boolean measured;
+    private final long startAllocatedBytes;
+    private final AtomicLong probeNanos = new AtomicLong();
+    private final ConcurrentMap<Resource, Boolean> probed = new ConcurrentHashMap<Resource, Boolean>();
+    private long parseNanos;
+    private int beanCount;
+    private int duplicateCount;
+
+    ImportMeasurement(int depth, boolean measured, boolean measureAllocation) {
+        this.depth = depth;
+        this.measured = measured;
+        this.startAllocatedBytes = measured && measureAllocation ? getAllocatedBytes() : -1;
+    }
+
+    /**
+     * Returns whether the cost of the import is being measured, so that an event should be built from it.
+     */
+    boolean isMeasured() {
+        return measured;
+    }
+
+    /**
+     * Probes the resource through the checker, adding the time taken. A resource already probed for this import isn't
+     * probed again. Safe to call from several threads.
+     */
+    boolean exists(ResourceExistenceChecker checker, Resource resource) {
+        Boolean known = probed.get(resource);
+        if (known != null) {
+            return known;
+        }
+        long start = measured ? System.nanoTime() : 0;
+        try {
+            boolean exists = checker == null ? resource.exists() : checker.exists(resource);
+            known = probed.putIfAbsent(resource, exists);
+            return known == null ? exists : known;
+        } finally {
+            if (measured) {
+                probeNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Treats the resource as missing for the rest of this import, such as when probing it took too long.
+     */
+    void assumeMissing(Resource resource) {
+        probed.putIfAbsent(resource, false);
+    }
+
+    void addParse(long startNanos, int beanCount) {
+        this.parseNanos += System.nanoTime() - startNanos;
+        this.beanCount += beanCount;
+    }
+
+    void addDuplicate() {
+        ++duplicateCount;
+    }
+
+    ImportEvent toEvent(BeanDefinitionRegistry registry, Resource sourceResource, String location,
+            Set<Resource> resources, boolean alternateUsed) {
+        long allocatedBytes = startAllocatedBytes < 0 ? -1 : getAllocatedBytes() - startAllocatedBytes;
+        return new ImportEvent(registry, sourceResource, location, resources.toArray(new Resource[resources.size()]),
+                alternateUsed, depth, probeNanos.get(), parseNanos, beanCount, allocatedBytes, duplicateCount);
+    }
+
+    private static long getAllocatedBytes() {
+        if (threadBean == null) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static ThreadMXBean getAllocationThreadBean() {
+        try {
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            if (threadBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+                if (sunThreadBean.isThreadAllocatedMemorySupported()
+                        && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+                    return threadBean;
+                }
+            }
+        } catch (LinkageError e) {
+            // not a HotSpot-derived JVM
+        }
+        return null;
+    }
+}
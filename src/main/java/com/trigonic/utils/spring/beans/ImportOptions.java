@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+/**
+ * Controls how {@link ImportHelper} imports resources into a registry. Options
+ * {@link ImportHelper#setImportOptions(org.springframework.beans.factory.support.BeanDefinitionRegistry, ImportOptions)
+ * set for a registry}, such as those of an {@link com.trigonic.utils.spring.context.XmlResourceApplicationContext},
+ * apply to every import into it, including imports already in progress; other registries use the
+ * {@link ImportHelper#getDefaultOptions() default options}.
+ */
+public class ImportOptions {
+    private volatile boolean parallel;
+    private volatile ResourceExistenceChecker existenceChecker;
+    private volatile boolean allocationMeasured;
+    private volatile boolean classPathIndexUsed;
+    private volatile boolean grammarCached;
+    private volatile boolean deduplicated;
+    private volatile boolean speculativeProbing;
+    private volatile long probeTimeoutMillis = 10000;
+
+    public ImportOptions() {
+    }
+
+    /**
+     * Creates options with the same values as the specified ones.
+     */
+    public ImportOptions(ImportOptions options) {
+        this.parallel = options.parallel;
+        this.existenceChecker = options.existenceChecker;
+        this.allocationMeasured = options.allocationMeasured;
+        this.classPathIndexUsed = options.classPathIndexUsed;
+        this.grammarCached = options.grammarCached;
+        this.deduplicated = options.deduplicated;
+        this.speculativeProbing = options.speculativeProbing;
+        this.probeTimeoutMillis = options.probeTimeoutMillis;
+    }
+
+    /**
+     * Sets whether imports that match multiple resources are parsed in parallel when the import itself doesn't
+     * specify. They're parsed on the threads shared by all registries, bounded by
+     * {@link ImportHelper#setParallelism(int)}. Defaults to false.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Sets the checker used to decide whether candidate resources exist, or null (the default) to ask each resource
+     * directly.
+     */
+    public void setExistenceChecker(ResourceExistenceChecker existenceChecker) {
+        this.existenceChecker = existenceChecker;
+    }
+
+    public ResourceExistenceChecker getExistenceChecker() {
+        return existenceChecker;
+    }
+
+    /**
+     * Sets whether the bytes allocated by each import are measured for {@link ImportListener import listeners}, which
+     * costs a thread MXBean call at the start and end of every import. Imports aren't measured at all while no
+     * listener is registered. Defaults to false, in which case {@link ImportEvent#getAllocatedBytes()} is -1.
+     */
+    public void setAllocationMeasured(boolean allocationMeasured) {
+        this.allocationMeasured = allocationMeasured;
+    }
+
+    public boolean isAllocationMeasured() {
+        return allocationMeasured;
+    }
+
+    /**
+     * Sets whether <tt>classpath*:</tt> patterns are resolved using the {@link ClassPathIndex class path index} when
+     * one is present. Defaults to false, since an index that's out of date with its jar silently leaves out whatever
+     * it's missing.
+     */
+    public void setClassPathIndexUsed(boolean classPathIndexUsed) {
+        this.classPathIndexUsed = classPathIndexUsed;
+    }
+
+    public boolean isClassPathIndexUsed() {
+        return classPathIndexUsed;
+    }
+
+    /**
+     * Sets whether documents loaded by {@link ImportDocumentLoader} keep their compiled XML schemas in the
+     * {@link GrammarCachingDocumentLoader#getSharedInstance() shared grammar pool}. Readers created by
+     * {@link com.trigonic.utils.spring.context.XmlResourceApplicationContext} use the pool as well. Defaults to false.
+     */
+    public void setGrammarCached(boolean grammarCached) {
+        this.grammarCached = grammarCached;
+    }
+
+    public boolean isGrammarCached() {
+        return grammarCached;
+    }
+
+    /**
+     * Sets whether a resource already imported into the registry, identified by its URL, is skipped rather than
+     * parsed and registered again. This changes overriding when a later resource redefines a bean of a repeated one,
+     * since the repeat no longer restores the original definition. Defaults to false.
+     */
+    public void setDeduplicated(boolean deduplicated) {
+        this.deduplicated = deduplicated;
+    }
+
+    public boolean isDeduplicated() {
+        return deduplicated;
+    }
+
+    /**
+     * Sets whether imports with an alternate probe both locations concurrently rather than only probing the alternate
+     * once the primary turns out to be missing. Only the location that's used is parsed. Locations that are patterns
+     * are still probed as usual. Defaults to false.
+     */
+    public void setSpeculativeProbing(boolean speculativeProbing) {
+        this.speculativeProbing = speculativeProbing;
+    }
+
+    public boolean isSpeculativeProbing() {
+        return speculativeProbing;
+    }
+
+    /**
+     * Sets how long speculative probing waits for the primary and alternate locations together before treating the
+     * ones still being probed as missing. Defaults to 10 seconds.
+     */
+    public void setProbeTimeoutMillis(long probeTimeoutMillis) {
+        if (probeTimeoutMillis < 1) {
+            throw new IllegalArgumentException("probe timeout must be positive");
+        }
+        this.probeTimeoutMillis = probeTimeoutMillis;
+    }
+
+    public long getProbeTimeoutMillis() {
+        return probeTimeoutMillis;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Resolves <tt>classpath*:</tt> patterns against the {@link ClassPathIndex class path index} where one is present,
+ * only scanning the class path roots that aren't indexed. A root whose index has no match for the pattern is scanned
+ * as well, so XML left out of a stale index is still found as long as nothing else in that root matches. Other
+ * patterns are resolved as usual.
+ */
+public class IndexedResourcePatternResolver extends PathMatchingResourcePatternResolver {
+    private static final Log logger = LogFactory.getLog(IndexedResourcePatternResolver.class);
+
+    private final ClassPathIndex index;
+
+    public IndexedResourcePatternResolver(ResourceLoader resourceLoader) {
+        super(resourceLoader);
+        this.index = ClassPathIndex.forClassLoader(getClassLoader());
+    }
+
+    /**
+     * Returns whether any class path root visible to this resolver is indexed.
+     */
+    public boolean isIndexed() {
+        return !index.isEmpty();
+    }
+
+    @Override
+    protected Resource[] findPathMatchingResources(String locationPattern) throws IOException {
+        if (!locationPattern.startsWith(CLASSPATH_ALL_URL_PREFIX) || index.isEmpty()) {
+            return super.findPathMatchingResources(locationPattern);
+        }
+
+        String rootDirPath = determineRootDir(locationPattern);
+        String subPattern = locationPattern.substring(rootDirPath.length());
+        String pathPattern = locationPattern.substring(CLASSPATH_ALL_URL_PREFIX.length());
+        Set<Resource> result = new LinkedHashSet<Resource>(16);
+        for (Resource rootDirResource : getResources(rootDirPath)) {
+            rootDirResource = resolveRootDirResource(rootDirResource);
+            String root = index.findRoot(rootDirResource.getURL().toExternalForm());
+            Set<Resource> indexedResources = root == null ? null : findIndexedResources(root, pathPattern);
+            if (indexedResources != null && !indexedResources.isEmpty()) {
+                result.addAll(indexedResources);
+            } else if (rootDirResource.getURL().getProtocol().startsWith(ResourceUtils.URL_PROTOCOL_VFS)) {
+                // only the default resolution can search VFS
+                return super.findPathMatchingResources(locationPattern);
+            } else if (isJarResource(rootDirResource)) {
+                result.addAll(doFindPathMatchingJarResources(rootDirResource, subPattern));
+            } else {
+                result.addAll(doFindPathMatchingFileResources(rootDirResource, subPattern));
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Resolved location pattern [" + locationPattern + "] to resources " + result
+                    + " using the class path index");
+        }
+        return result.toArray(new Resource[result.size()]);
+    }
+
+    private Set<Resource> findIndexedResources(String root, String pathPattern) throws IOException {
+        Set<Resource> result = new LinkedHashSet<Resource>();
+        for (String path : index.getPaths(root)) {
+            if (getPathMatcher().match(pathPattern, path)) {
+                result.add(new UrlResource(root + path));
+            }
+        }
+        if (result.isEmpty() && logger.isDebugEnabled()) {
+            logger.debug("Class path index for [" + root + "] has no match for [" + pathPattern
+                    + "], scanning instead");
+        }
+        return result;
+    }
+}
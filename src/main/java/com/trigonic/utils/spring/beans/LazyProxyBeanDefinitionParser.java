@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionReaderUtils;
+import org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser;
+import org.springframework.beans.factory.xml.BeanDefinitionParserDelegate;
+import org.springframework.beans.factory.xml.ParserContext;
+import org.springframework.util.StringUtils;
+import org.springframework.util.xml.DomUtils;
+import org.w3c.dom.Element;
+
+/**
+ * Defines a {@link LazyProxyFactoryBean} for the bean named by the <tt>target</tt> attribute or defined by a nested
+ * <tt>bean</tt> element. A nested bean is registered as a lazy-init bean that isn't a candidate for autowiring, under
+ * its own id or a generated name, so that the proxy stands in for it.
+ */
+public class LazyProxyBeanDefinitionParser extends AbstractSingleBeanDefinitionParser {
+    private static final String TARGET_ATTRIBUTE = "target";
+    private static final String PROXY_INTERFACES_ATTRIBUTE = "proxy-interfaces";
+    private static final String PROXY_TARGET_CLASS_ATTRIBUTE = "proxy-target-class";
+
+    @Override
+    protected Class<LazyProxyFactoryBean> getBeanClass(Element element) {
+        return LazyProxyFactoryBean.class;
+    }
+
+    @Override
+    protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
+        String target = element.getAttribute(TARGET_ATTRIBUTE);
+        Element beanElement = DomUtils.getChildElementByTagName(element, BeanDefinitionParserDelegate.BEAN_ELEMENT);
+        if (StringUtils.hasText(target) == (beanElement != null)) {
+            parserContext.getReaderContext().error("Exactly one of the 'target' attribute and a nested 'bean' element"
+                    + " must be specified", element);
+            return;
+        }
+        if (beanElement != null) {
+            target = registerTarget(beanElement, parserContext);
+        }
+        builder.addPropertyValue("targetBeanName", target);
+
+        String proxyInterfaces = element.getAttribute(PROXY_INTERFACES_ATTRIBUTE);
+        if (StringUtils.hasText(proxyInterfaces)) {
+            builder.addPropertyValue("proxyInterfaces", proxyInterfaces);
+        }
+        String proxyTargetClass = element.getAttribute(PROXY_TARGET_CLASS_ATTRIBUTE);
+        if (StringUtils.hasText(proxyTargetClass)) {
+            builder.addPropertyValue("proxyTargetClass", proxyTargetClass);
+        }
+    }
+
+    private String registerTarget(Element beanElement, ParserContext parserContext) {
+        BeanDefinitionHolder holder = parserContext.getDelegate().parseBeanDefinitionElement(beanElement);
+        if (holder == null) {
+            return null;
+        }
+        holder = parserContext.getDelegate().decorateBeanDefinitionIfRequired(beanElement, holder);
+        AbstractBeanDefinition beanDefinition = (AbstractBeanDefinition) holder.getBeanDefinition();
+        beanDefinition.setLazyInit(true);
+        beanDefinition.setAutowireCandidate(false);
+        // a nested bean without an id or name is given a generated one
+        BeanDefinitionReaderUtils.registerBeanDefinition(holder, parserContext.getRegistry());
+        return holder.getBeanName();
+    }
+}
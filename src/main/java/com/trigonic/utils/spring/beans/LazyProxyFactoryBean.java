@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.aop.TargetSource;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Exposes a proxy for a bean that's only created on the first method call through the proxy, so that beans injected
+ * into eager singletons don't have to be created while the context starts up. The target bean should be lazy-init,
+ * otherwise the context creates it anyway. It must be a singleton, since the proxy keeps the bean it first gets.
+ *
+ * <p>
+ * The proxy implements the specified interfaces, or every interface of the target bean's type when none are
+ * specified. It's class-based when the target type has no interfaces or <tt>proxyTargetClass</tt> is set, which
+ * requires CGLIB and invokes the target class's constructor once for the proxy itself.
+ */
+public class LazyProxyFactoryBean implements FactoryBean<Object>, BeanFactoryAware, BeanClassLoaderAware,
+        InitializingBean {
+    private static final Log logger = LogFactory.getLog(LazyProxyFactoryBean.class);
+
+    private String targetBeanName;
+    private Class<?>[] proxyInterfaces;
+    private boolean proxyTargetClass;
+    private BeanFactory beanFactory;
+    private ClassLoader beanClassLoader = ClassUtils.getDefaultClassLoader();
+    private LazyTargetSource targetSource;
+    private Object proxy;
+
+    public void setTargetBeanName(String targetBeanName) {
+        this.targetBeanName = targetBeanName;
+    }
+
+    public void setProxyInterfaces(Class<?>[] proxyInterfaces) {
+        this.proxyInterfaces = proxyInterfaces;
+    }
+
+    public void setProxyTargetClass(boolean proxyTargetClass) {
+        this.proxyTargetClass = proxyTargetClass;
+    }
+
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    public void setBeanClassLoader(ClassLoader beanClassLoader) {
+        this.beanClassLoader = beanClassLoader;
+    }
+
+    public void afterPropertiesSet() {
+        Assert.notNull(targetBeanName, "targetBeanName is required");
+        Assert.isTrue(beanFactory.isSingleton(targetBeanName), "Lazy proxy target '" + targetBeanName
+                + "' must be a singleton");
+        Class<?> targetClass = beanFactory.getType(targetBeanName);
+        targetSource = new LazyTargetSource(beanFactory, targetBeanName, targetClass);
+
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTargetSource(targetSource);
+        if (proxyInterfaces != null && proxyInterfaces.length > 0) {
+            proxyFactory.setInterfaces(proxyInterfaces);
+        } else if (!proxyTargetClass) {
+            Assert.notNull(targetClass, "Unable to determine the type of bean '" + targetBeanName
+                    + "', proxyInterfaces must be specified");
+            proxyFactory.setInterfaces(ClassUtils.getAllInterfacesForClass(targetClass, beanClassLoader));
+        }
+        proxyFactory.setProxyTargetClass(proxyTargetClass || proxyFactory.getProxiedInterfaces().length == 0);
+        proxy = proxyFactory.getProxy(beanClassLoader);
+    }
+
+    /**
+     * Returns whether the target bean has been requested through the proxy yet.
+     */
+    public boolean isTargetCreated() {
+        return targetSource != null && targetSource.target != null;
+    }
+
+    public Object getObject() {
+        return proxy;
+    }
+
+    public Class<?> getObjectType() {
+        if (proxy != null) {
+            return proxy.getClass();
+        }
+        if (proxyInterfaces != null && proxyInterfaces.length == 1) {
+            return proxyInterfaces[0];
+        }
+        return null;
+    }
+
+    public boolean isSingleton() {
+        return true;
+    }
+
+    /**
+     * Gets the target bean on first use, using double-checked locking so that later calls don't synchronize.
+     */
+    private static class LazyTargetSource implements TargetSource {
+        private final BeanFactory beanFactory;
+        private final String targetBeanName;
+        private final Class<?> targetClass;
+        private volatile Object target;
+
+        LazyTargetSource(BeanFactory beanFactory, String targetBeanName, Class<?> targetClass) {
+            this.beanFactory = beanFactory;
+            this.targetBeanName = targetBeanName;
+            this.targetClass = targetClass;
+        }
+
+        public Class<?> getTargetClass() {
+            return targetClass;
+        }
+
+        public boolean isStatic() {
+            return false;
+        }
+
+        public Object getTarget() {
+            Object result = target;
+            if (result == null) {
+                synchronized (this) {
+                    result = target;
+                    if (result == null) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Creating lazy proxy target '" + targetBeanName + "' on first use");
+                        }
+                        result = beanFactory.getBean(targetBeanName);
+                        target = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        public void releaseTarget(Object target) {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.xml.DefaultBeanDefinitionDocumentReader;
+import org.springframework.beans.factory.xml.XmlReaderContext;
+import org.w3c.dom.Document;
+
+/**
+ * Records the resource each top-level bean definition was loaded from. Spring only does this for <tt>&lt;bean&gt;</tt>
+ * elements, leaving definitions registered by namespace handlers (such as <tt>&lt;xutils:string&gt;</tt>) without a
+ * {@link BeanDefinition#getResourceDescription() resource description}. Definitions from imported documents are
+ * attributed to those documents, since they're registered first.
+ *
+ * <p>
+ * Use with {@link org.springframework.beans.factory.xml.XmlBeanDefinitionReader#setDocumentReaderClass(Class)}.
+ */
+public class ResourceRecordingDocumentReader extends DefaultBeanDefinitionDocumentReader {
+    @Override
+    public void registerBeanDefinitions(Document doc, XmlReaderContext readerContext) {
+        BeanDefinitionRegistry registry = readerContext.getRegistry();
+        Set<String> existingNames = new HashSet<String>(Arrays.asList(registry.getBeanDefinitionNames()));
+        super.registerBeanDefinitions(doc, readerContext);
+
+        for (String beanName : registry.getBeanDefinitionNames()) {
+            if (!existingNames.contains(beanName)) {
+                BeanDefinition beanDefinition = registry.getBeanDefinition(beanName);
+                if (beanDefinition.getResourceDescription() == null
+                        && beanDefinition instanceof AbstractBeanDefinition) {
+                    ((AbstractBeanDefinition) beanDefinition).setResource(readerContext.getResource());
+                }
+            }
+        }
+    }
+}
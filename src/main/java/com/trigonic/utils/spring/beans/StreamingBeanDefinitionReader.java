@@ -0,0 +1,260 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.xml.BeanDefinitionParserDelegate;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StringUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * An {@link XmlBeanDefinitionReader} that reads documents as a StAX stream instead of parsing each of them into a
+ * complete DOM first, so that very large documents don't need to be held in memory at once. The top-level elements of
+ * the root <tt>&lt;beans&gt;</tt> element are built into small DOM fragments and registered in batches as they're
+ * read, so the usual parsers handle <tt>&lt;bean&gt;</tt>, <tt>&lt;alias&gt;</tt>, <tt>&lt;import&gt;</tt> and custom
+ * namespace elements such as <tt>&lt;xutils:import&gt;</tt>, <tt>&lt;xutils:string&gt;</tt> and
+ * <tt>&lt;xutils:null&gt;</tt> exactly as they would from a full document. Imports are streamed in turn.
+ *
+ * <p>
+ * Documents aren't validated, and DTDs are neither loaded nor applied. The attribute defaults that validation would
+ * have filled in are supplied for elements of the beans namespace only. Since the document is registered in batches,
+ * bean definitions read before a malformed part of a document remain registered. Documents read this way bypass the
+ * {@link ImportDocumentCache} and aren't parsed by parallel imports.
+ */
+public class StreamingBeanDefinitionReader extends XmlBeanDefinitionReader {
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    /** The attribute defaults of spring-beans.xsd, by element, that bean definition parsing relies on. */
+    private static final Map<String, Map<String, String>> SCHEMA_DEFAULTS = new HashMap<String, Map<String, String>>();
+
+    static {
+        String defaultValue = BeanDefinitionParserDelegate.DEFAULT_VALUE;
+        addSchemaDefaults("beans", defaultValue, BeanDefinitionParserDelegate.DEFAULT_LAZY_INIT_ATTRIBUTE,
+                BeanDefinitionParserDelegate.DEFAULT_MERGE_ATTRIBUTE,
+                BeanDefinitionParserDelegate.DEFAULT_AUTOWIRE_ATTRIBUTE);
+        addSchemaDefaults(BeanDefinitionParserDelegate.BEAN_ELEMENT, defaultValue,
+                BeanDefinitionParserDelegate.LAZY_INIT_ATTRIBUTE, BeanDefinitionParserDelegate.AUTOWIRE_ATTRIBUTE,
+                BeanDefinitionParserDelegate.AUTOWIRE_CANDIDATE_ATTRIBUTE);
+        for (String collection : Arrays.asList("array", "list", "set", "map", "props")) {
+            addSchemaDefaults(collection, defaultValue, BeanDefinitionParserDelegate.MERGE_ATTRIBUTE);
+        }
+        addSchemaDefaults(BeanDefinitionParserDelegate.QUALIFIER_ELEMENT, Qualifier.class.getName(),
+                BeanDefinitionParserDelegate.TYPE_ATTRIBUTE);
+    }
+
+    private static final XMLResolver NO_EXTERNAL_ENTITIES = new XMLResolver() {
+        public Object resolveEntity(String publicId, String systemId, String baseUri, String namespace) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+    };
+
+    private final XMLInputFactory inputFactory;
+    private final DocumentBuilderFactory documentBuilderFactory;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    public StreamingBeanDefinitionReader(BeanDefinitionRegistry registry) {
+        super(registry);
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setXMLResolver(NO_EXTERNAL_ENTITIES);
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+    }
+
+    /**
+     * Sets the number of top-level elements registered together, which bounds how many are held in memory at once.
+     * Defaults to 100.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    protected int doLoadBeanDefinitions(InputSource inputSource, Resource resource)
+            throws BeanDefinitionStoreException {
+        XMLStreamReader streamReader = null;
+        try {
+            if (inputSource.getEncoding() != null) {
+                streamReader = inputFactory.createXMLStreamReader(inputSource.getByteStream(),
+                        inputSource.getEncoding());
+            } else {
+                streamReader = inputFactory.createXMLStreamReader(inputSource.getByteStream());
+            }
+            return registerBeanDefinitions(streamReader, resource);
+        } catch (XMLStreamException e) {
+            String line = e.getLocation() == null ? "" : "Line " + e.getLocation().getLineNumber() + " in ";
+            throw new BeanDefinitionStoreException(resource.getDescription(), line + "XML document from " + resource
+                    + " is invalid", e);
+        } catch (ParserConfigurationException e) {
+            throw new BeanDefinitionStoreException(resource.getDescription(),
+                    "Parser configuration exception parsing XML from " + resource, e);
+        } finally {
+            if (streamReader != null) {
+                try {
+                    streamReader.close();
+                } catch (XMLStreamException e) {
+                    logger.debug("Unable to close XML stream from " + resource, e);
+                }
+            }
+        }
+    }
+
+    private int registerBeanDefinitions(XMLStreamReader streamReader, Resource resource) throws XMLStreamException,
+            ParserConfigurationException {
+        streamReader.nextTag();
+        if (!BeanDefinitionParserDelegate.BEANS_NAMESPACE_URI.equals(streamReader.getNamespaceURI())
+                || !"beans".equals(streamReader.getLocalName())) {
+            throw new BeanDefinitionStoreException(resource.getDescription(), "XML document from " + resource
+                    + " has root element " + streamReader.getName() + " rather than <beans>");
+        }
+
+        // the root element is copied empty into each batch, keeping its defaults and namespace declarations
+        Element rootTemplate = createElement(documentBuilderFactory.newDocumentBuilder().newDocument(), streamReader);
+        int count = 0;
+        Document document = null;
+        int batched = 0;
+        while (streamReader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (document == null) {
+                document = documentBuilderFactory.newDocumentBuilder().newDocument();
+                document.appendChild(document.importNode(rootTemplate, false));
+            }
+            document.getDocumentElement().appendChild(readElement(document, streamReader));
+            if (++batched == batchSize) {
+                count += registerBeanDefinitions(document, resource);
+                document = null;
+                batched = 0;
+            }
+        }
+        if (document != null) {
+            count += registerBeanDefinitions(document, resource);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the element the stream is positioned at, along with its content, leaving the stream at its end tag.
+     */
+    private static Element readElement(Document document, XMLStreamReader streamReader) throws XMLStreamException {
+        Element element = createElement(document, streamReader);
+        Node current = element;
+        while (true) {
+            switch (streamReader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                current = current.appendChild(createElement(document, streamReader));
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                if (current == element) {
+                    return element;
+                }
+                current = current.getParentNode();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                current.appendChild(document.createTextNode(streamReader.getText()));
+                break;
+            case XMLStreamConstants.CDATA:
+                current.appendChild(document.createCDATASection(streamReader.getText()));
+                break;
+            case XMLStreamConstants.COMMENT:
+                current.appendChild(document.createComment(streamReader.getText()));
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private static Element createElement(Document document, XMLStreamReader streamReader) {
+        Element element = document.createElementNS(emptyToNull(streamReader.getNamespaceURI()), getQualifiedName(
+                streamReader.getPrefix(), streamReader.getLocalName()));
+        for (int i = 0; i < streamReader.getNamespaceCount(); ++i) {
+            String prefix = streamReader.getNamespacePrefix(i);
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, StringUtils.hasLength(prefix)
+                    ? XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix : XMLConstants.XMLNS_ATTRIBUTE,
+                    streamReader.getNamespaceURI(i));
+        }
+        for (int i = 0; i < streamReader.getAttributeCount(); ++i) {
+            element.setAttributeNS(emptyToNull(streamReader.getAttributeNamespace(i)), getQualifiedName(
+                    streamReader.getAttributePrefix(i), streamReader.getAttributeLocalName(i)),
+                    streamReader.getAttributeValue(i));
+        }
+        addSchemaDefaults(element);
+        return element;
+    }
+
+    /**
+     * Sets the attributes that validation would have defaulted.
+     */
+    private static void addSchemaDefaults(Element element) {
+        if (BeanDefinitionParserDelegate.BEANS_NAMESPACE_URI.equals(element.getNamespaceURI())) {
+            Map<String, String> defaults = SCHEMA_DEFAULTS.get(element.getLocalName());
+            if (defaults != null) {
+                for (Map.Entry<String, String> entry : defaults.entrySet()) {
+                    if (!element.hasAttribute(entry.getKey())) {
+                        element.setAttributeNS(null, entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addSchemaDefaults(String elementName, String value, String... attributeNames) {
+        Map<String, String> defaults = new HashMap<String, String>();
+        for (String attributeName : attributeNames) {
+            defaults.put(attributeName, value);
+        }
+        SCHEMA_DEFAULTS.put(elementName, defaults);
+    }
+
+    private static String getQualifiedName(String prefix, String localName) {
+        return StringUtils.hasLength(prefix) ? prefix + ":" + localName : localName;
+    }
+
+    private static String emptyToNull(String namespaceUri) {
+        return StringUtils.hasLength(namespaceUri) ? namespaceUri : null;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.io.Resource;
+
+/**
+ * Holds the named values of an <tt>&lt;xutils:strings&gt;</tt> element, sorted in a pair of arrays, and registers
+ * each of them as a singleton String bean named after it, so thousands of constants cost a single bean definition.
+ * Values loaded from a resource are taken literally, while inline values are resolved by placeholder configurers like
+ * any other bean property.
+ *
+ * <p>
+ * Values are registered as this post-processor runs, before any ordinary bean is created but not before every
+ * post-processor: those that are {@link org.springframework.core.PriorityOrdered PriorityOrdered}, or otherwise run
+ * earlier, can't see them. Since they're singletons rather than bean definitions,
+ * {@link ConfigurableListableBeanFactory#getBeanDefinitionNames()} never includes them, although
+ * {@link ConfigurableListableBeanFactory#getBeanNamesForType(Class) lookups by type} and by name do.
+ */
+public class StringStore implements BeanFactoryPostProcessor {
+    private static final Log logger = LogFactory.getLog(StringStore.class);
+
+    private Properties values;
+    private Resource location;
+    private String prefix = "";
+    private String[] names = new String[0];
+    private String[] contents = new String[0];
+
+    /**
+     * Sets the inline values, which take precedence over those from the location.
+     */
+    public void setValues(Properties values) {
+        this.values = values;
+    }
+
+    /**
+     * Sets the properties resource to load values from.
+     */
+    public void setLocation(Resource location) {
+        this.location = location;
+    }
+
+    /**
+     * Sets the prefix added to each name to form its bean name. Defaults to none.
+     */
+    public void setPrefix(String prefix) {
+        this.prefix = prefix == null ? "" : prefix;
+    }
+
+    /**
+     * Returns the value with the specified name, not including the prefix, or null if there isn't one.
+     */
+    public String get(String name) {
+        int index = Arrays.binarySearch(names, name);
+        return index < 0 ? null : contents[index];
+    }
+
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        load();
+        for (int i = 0; i < names.length; ++i) {
+            String beanName = prefix + names[i];
+            if (beanFactory.containsBeanDefinition(beanName)) {
+                throw new BeanDefinitionStoreException(location == null ? null : location.getDescription(),
+                        beanName, "String value conflicts with an existing bean definition");
+            }
+            beanFactory.registerSingleton(beanName, contents[i]);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Registered " + names.length + " string values" + (location == null ? "" : " from "
+                    + location.getDescription()));
+        }
+    }
+
+    private void load() {
+        TreeMap<String, String> sorted = new TreeMap<String, String>();
+        if (location != null) {
+            Properties properties = new Properties();
+            try {
+                InputStream inputStream = location.getInputStream();
+                try {
+                    properties.load(inputStream);
+                } finally {
+                    inputStream.close();
+                }
+            } catch (IOException e) {
+                throw new BeanDefinitionStoreException("Unable to load string values from "
+                        + location.getDescription(), e);
+            }
+            putAll(sorted, properties);
+        }
+        if (values != null) {
+            putAll(sorted, values);
+        }
+        names = sorted.keySet().toArray(new String[sorted.size()]);
+        contents = sorted.values().toArray(new String[sorted.size()]);
+    }
+
+    private static void putAll(TreeMap<String, String> sorted, Properties properties) {
+        for (String name : properties.stringPropertyNames()) {
+            sorted.put(name, properties.getProperty(name));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.trigonic.utils.spring.beans;
+
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.ManagedProperties;
+import org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser;
+import org.springframework.beans.factory.xml.ParserContext;
+import org.springframework.util.StringUtils;
+import org.springframework.util.xml.DomUtils;
+import org.w3c.dom.Element;
+
+/**
+ * Defines a single {@link StringStore} holding many named String values, given inline as <tt>entry</tt> elements or
+ * loaded from a properties resource, each of which is exposed as a bean.
+ */
+public class StringsBeanDefinitionParser extends AbstractSingleBeanDefinitionParser {
+    private static final String LOCATION_ATTRIBUTE = "location";
+    private static final String PREFIX_ATTRIBUTE = "prefix";
+    private static final String ENTRY_ELEMENT = "entry";
+    private static final String KEY_ATTRIBUTE = "key";
+
+    @Override
+    protected Class<StringStore> getBeanClass(Element element) {
+        return StringStore.class;
+    }
+
+    @Override
+    protected boolean shouldGenerateIdAsFallback() {
+        return true;
+    }
+
+    @Override
+    protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
+        String location = element.getAttribute(LOCATION_ATTRIBUTE);
+        if (StringUtils.hasText(location)) {
+            builder.addPropertyValue("location", location);
+        }
+        String prefix = element.getAttribute(PREFIX_ATTRIBUTE);
+        if (StringUtils.hasText(prefix)) {
+            builder.addPropertyValue("prefix", prefix);
+        }
+
+        ManagedProperties values = new ManagedProperties();
+        values.setSource(parserContext.extractSource(element));
+        for (Element entry : DomUtils.getChildElementsByTagName(element, ENTRY_ELEMENT)) {
+            values.put(entry.getAttribute(KEY_ATTRIBUTE), entry.getTextContent());
+        }
+        if (!values.isEmpty()) {
+            builder.addPropertyValue("values", values);
+        }
+    }
+}
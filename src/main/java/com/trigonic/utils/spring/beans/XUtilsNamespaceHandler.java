@@ -22,6 +22,8 @@ public class XUtilsNamespaceHandler extends NamespaceHandlerSupport {
     public void init() {
         registerBeanDefinitionParser("import", new ImportBeanDefinitionParser());
         registerBeanDefinitionParser("string", new StringBeanDefinitionParser());
+        registerBeanDefinitionParser("strings", new StringsBeanDefinitionParser());
         registerBeanDefinitionParser("null", new NullBeanDefinitionParser());
+        registerBeanDefinitionParser("lazy-proxy", new LazyProxyBeanDefinitionParser());
     }
 }
@@ -0,0 +1,224 @@
+package com.trigonic.utils.spring.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.PropertyResourceConfigurer;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.OrderComparator;
+import org.springframework.core.io.Resource;
+
+import com.trigonic.utils.spring.beans.ImportEvent;
+import com.trigonic.utils.spring.beans.ImportHelper;
+import com.trigonic.utils.spring.beans.ImportListener;
+
+/**
+ * Applies changes to individual config resources of an {@link XmlResourceApplicationContext} without refreshing it.
+ * Each changed resource is parsed into a scratch bean factory and its bean definitions compared with the ones it
+ * previously contributed; only those that differ are replaced or removed, which destroys the affected singletons (and
+ * the singletons depending on them) so they're recreated from the new definitions. The aliases of those beans are
+ * replaced as well, so an alias that's no longer declared stops resolving. A bean whose registered definition came
+ * from another resource, which overrides the changed resource's definition, is left alone.
+ *
+ * <p>
+ * This relies on every bean definition recording the resource it came from, and only supports post-processing by
+ * {@link PropertyResourceConfigurer property resource configurers}, which are applied again to the new definitions.
+ * Changes to a resource's imports or to post-processors can't be applied incrementally.
+ */
+class BeanDefinitionReloader {
+    private static final Log logger = LogFactory.getLog(BeanDefinitionReloader.class);
+
+    private final XmlResourceApplicationContext appContext;
+    private final DefaultListableBeanFactory beanFactory;
+    private final Map<Resource, Set<Resource>> importedResources;
+
+    private final Map<String, BeanDefinition> changedDefinitions = new LinkedHashMap<String, BeanDefinition>();
+    private final Map<String, Set<String>> changedAliases = new HashMap<String, Set<String>>();
+    private final Set<String> removedNames = new LinkedHashSet<String>();
+
+    BeanDefinitionReloader(XmlResourceApplicationContext appContext, DefaultListableBeanFactory beanFactory,
+            Map<Resource, Set<Resource>> importedResources) {
+        this.appContext = appContext;
+        this.beanFactory = beanFactory;
+        this.importedResources = importedResources;
+    }
+
+    /**
+     * Reloads the changed resources.
+     *
+     * @return false if the changes couldn't be applied incrementally, in which case nothing has been changed
+     */
+    boolean reload(Collection<Resource> changedResources) {
+        List<BeanFactoryPostProcessor> configurers = getConfigurers();
+        if (configurers == null) {
+            return false;
+        }
+        for (Resource resource : changedResources) {
+            if (!compare(resource, configurers)) {
+                return false;
+            }
+        }
+        for (String beanName : removedNames) {
+            if (isPostProcessor(beanFactory, beanName)) {
+                return false;
+            }
+        }
+        for (String beanName : changedDefinitions.keySet()) {
+            if (beanFactory.containsBeanDefinition(beanName) && isPostProcessor(beanFactory, beanName)) {
+                return false;
+            }
+        }
+
+        apply();
+        logger.info("Reloaded " + changedResources + ": " + changedDefinitions.size() + " bean definitions changed, "
+                + removedNames.size() + " removed");
+        return true;
+    }
+
+    private List<BeanFactoryPostProcessor> getConfigurers() {
+        List<BeanFactoryPostProcessor> configurers = new ArrayList<BeanFactoryPostProcessor>();
+        configurers.addAll(appContext.getBeanFactoryPostProcessors());
+        configurers.addAll(beanFactory.getBeansOfType(BeanFactoryPostProcessor.class, true, false).values());
+        for (BeanFactoryPostProcessor configurer : configurers) {
+            if (!(configurer instanceof PropertyResourceConfigurer)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Unable to reload incrementally: post-processed by " + configurer);
+                }
+                return null;
+            }
+        }
+        OrderComparator.sort(configurers);
+        return configurers;
+    }
+
+    private boolean compare(Resource resource, List<BeanFactoryPostProcessor> configurers) {
+        final DefaultListableBeanFactory scratchFactory = new DefaultListableBeanFactory();
+        scratchFactory.setBeanClassLoader(beanFactory.getBeanClassLoader());
+        final Map<Resource, Set<Resource>> scratchImports = new HashMap<Resource, Set<Resource>>();
+        ImportListener importListener = new ImportListener() {
+            public void importCompleted(ImportEvent event) {
+                if (event.getRegistry() == scratchFactory) {
+                    XmlResourceApplicationContext.recordImport(scratchImports, event);
+                }
+            }
+        };
+        ImportHelper.addImportListener(importListener);
+        try {
+            ImportHelper.loadBeanDefinitions(appContext.createBeanDefinitionReader(scratchFactory), resource);
+        } finally {
+            ImportHelper.removeImportListener(importListener);
+        }
+
+        if (!getImports(importedResources, resource).equals(getImports(scratchImports, resource))) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Unable to reload incrementally: imports of [" + resource + "] changed");
+            }
+            return false;
+        }
+
+        for (BeanFactoryPostProcessor configurer : configurers) {
+            configurer.postProcessBeanFactory(scratchFactory);
+        }
+
+        String resourceDescription = resource.getDescription();
+        Set<String> beanNames = new HashSet<String>();
+        for (String beanName : scratchFactory.getBeanDefinitionNames()) {
+            BeanDefinition beanDefinition = scratchFactory.getBeanDefinition(beanName);
+            if (resourceDescription.equals(beanDefinition.getResourceDescription())) {
+                beanNames.add(beanName);
+                if (beanFactory.containsBeanDefinition(beanName)
+                        && !resourceDescription.equals(beanFactory.getBeanDefinition(beanName)
+                                .getResourceDescription())) {
+                    // overridden by a definition from another resource
+                    continue;
+                }
+                Set<String> aliases = new HashSet<String>(Arrays.asList(scratchFactory.getAliases(beanName)));
+                if (!beanFactory.containsBeanDefinition(beanName)
+                        || !beanDefinition.equals(beanFactory.getBeanDefinition(beanName))) {
+                    if (isPostProcessor(scratchFactory, beanName)) {
+                        return false;
+                    }
+                    changedDefinitions.put(beanName, beanDefinition);
+                    changedAliases.put(beanName, aliases);
+                } else if (!aliases.equals(new HashSet<String>(Arrays.asList(beanFactory.getAliases(beanName))))) {
+                    changedAliases.put(beanName, aliases);
+                }
+            }
+        }
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+            if (resourceDescription.equals(beanDefinition.getResourceDescription()) && !beanNames.contains(beanName)) {
+                removedNames.add(beanName);
+            }
+        }
+        return true;
+    }
+
+    private void replaceAliases(String beanName, Set<String> aliases) {
+        for (String alias : beanFactory.getAliases(beanName)) {
+            if (!aliases.contains(alias)) {
+                beanFactory.removeAlias(alias);
+            }
+        }
+        for (String alias : aliases) {
+            if (!beanName.equals(beanFactory.canonicalName(alias))) {
+                beanFactory.registerAlias(beanName, alias);
+            }
+        }
+    }
+
+    private static Set<Resource> getImports(Map<Resource, Set<Resource>> imports, Resource resource) {
+        Set<Resource> result = imports.get(resource);
+        return result == null ? Collections.<Resource> emptySet() : result;
+    }
+
+    private static boolean isPostProcessor(DefaultListableBeanFactory factory, String beanName) {
+        Class<?> beanType;
+        try {
+            beanType = factory.getType(beanName);
+        } catch (BeansException e) {
+            // depends on definitions from other resources
+            return false;
+        }
+        return beanType != null
+                && (BeanFactoryPostProcessor.class.isAssignableFrom(beanType) || BeanPostProcessor.class
+                        .isAssignableFrom(beanType));
+    }
+
+    private void apply() {
+        for (String beanName : removedNames) {
+            replaceAliases(beanName, Collections.<String> emptySet());
+            beanFactory.removeBeanDefinition(beanName);
+        }
+        for (Map.Entry<String, BeanDefinition> entry : changedDefinitions.entrySet()) {
+            String beanName = entry.getKey();
+            if (beanFactory.containsBeanDefinition(beanName)) {
+                beanFactory.removeBeanDefinition(beanName);
+            }
+            beanFactory.registerBeanDefinition(beanName, entry.getValue());
+        }
+        for (Map.Entry<String, Set<String>> entry : changedAliases.entrySet()) {
+            replaceAliases(entry.getKey(), entry.getValue());
+        }
+
+        if (beanFactory.isConfigurationFrozen()) {
+            beanFactory.freezeConfiguration();
+        }
+        beanFactory.preInstantiateSingletons();
+    }
+}
@@ -0,0 +1,137 @@
+package com.trigonic.utils.spring.context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.parsing.EmptyReaderEventListener;
+import org.springframework.beans.factory.parsing.ImportDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+
+import com.trigonic.utils.spring.beans.BeanDefinitionSnapshot;
+import com.trigonic.utils.spring.beans.ImportHelper;
+import com.trigonic.utils.spring.beans.ImportOptions;
+import com.trigonic.utils.spring.beans.ResourceExistenceChecker;
+
+/**
+ * Compiles the bean definitions loaded by an {@link XmlResourceApplicationContext} into a
+ * {@link BeanDefinitionSnapshot}, recording every resource imported or probed along the way so the decisions made
+ * for optional and alternate imports can be checked later, and every property and class looked up for the decisions
+ * made for conditional imports. No beans are instantiated.
+ *
+ * <p>
+ * From the command line, specify the snapshot file followed by the config locations:
+ *
+ * <pre>
+ * java com.trigonic.utils.spring.context.BeanDefinitionSnapshotCompiler app.snapshot classpath:app-context.xml
+ * </pre>
+ *
+ * Active profiles are taken from the <tt>spring.profiles.active</tt> system property, as they would be at runtime.
+ */
+public class BeanDefinitionSnapshotCompiler {
+    public static BeanDefinitionSnapshot compile(Object... configResources) throws IOException {
+        return compile((ResourceLoader) null, configResources);
+    }
+
+    /**
+     * Compiles a snapshot of the config resources, resolving them and their imports through the specified loader, as
+     * a context loading the snapshot with the same loader would.
+     */
+    public static BeanDefinitionSnapshot compile(ResourceLoader resourceLoader, Object... configResources)
+            throws IOException {
+        final Map<Resource, Boolean> dependencies = new LinkedHashMap<Resource, Boolean>();
+        final Map<String, String> properties = new LinkedHashMap<String, String>();
+        final Map<String, Boolean> classes = new LinkedHashMap<String, Boolean>();
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(null, resourceLoader,
+                configResources, null, false);
+        appContext.setReaderEventListener(new EmptyReaderEventListener() {
+            @Override
+            public void importProcessed(ImportDefinition importDefinition) {
+                Resource[] actualResources = importDefinition.getActualResources();
+                if (actualResources != null) {
+                    for (Resource resource : actualResources) {
+                        record(dependencies, resource, true);
+                    }
+                }
+            }
+        });
+
+        ImportOptions importOptions = new ImportOptions(ImportHelper.getDefaultOptions());
+        final ResourceExistenceChecker existenceChecker = importOptions.getExistenceChecker();
+        importOptions.setExistenceChecker(new ResourceExistenceChecker() {
+            public boolean exists(Resource resource) {
+                boolean exists = existenceChecker == null ? resource.exists() : existenceChecker.exists(resource);
+                record(dependencies, resource, exists);
+                return exists;
+            }
+        });
+        appContext.setImportOptions(importOptions);
+        appContext.setEnvironment(new StandardEnvironment() {
+            @Override
+            public String getProperty(String key) {
+                String value = super.getProperty(key);
+                record(properties, key, value);
+                return value;
+            }
+        });
+        appContext.setClassLoader(new ClassLoader(appContext.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                try {
+                    Class<?> loadedClass = super.loadClass(name, resolve);
+                    record(classes, name, true);
+                    return loadedClass;
+                } catch (ClassNotFoundException e) {
+                    record(classes, name, false);
+                    throw e;
+                }
+            }
+        });
+
+        BeanDefinitionRegistry registry = (BeanDefinitionRegistry) appContext.loadBeanDefinitionsOnly();
+        synchronized (dependencies) {
+            synchronized (properties) {
+                synchronized (classes) {
+                    return BeanDefinitionSnapshot.capture(registry, appContext.getConfigResources(), appContext
+                            .getEnvironment().getActiveProfiles(), dependencies, properties, classes);
+                }
+            }
+        }
+    }
+
+    private static <K, V> void record(Map<K, V> values, K key, V value) {
+        synchronized (values) {
+            values.put(key, value);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: " + BeanDefinitionSnapshotCompiler.class.getName()
+                    + " <snapshot file> <config location>...");
+            System.exit(1);
+        }
+
+        File snapshotFile = new File(args[0]);
+        BeanDefinitionSnapshot snapshot = compile((Object[]) Arrays.copyOfRange(args, 1, args.length));
+
+        File parentDir = snapshotFile.getAbsoluteFile().getParentFile();
+        if (!parentDir.isDirectory() && !parentDir.mkdirs()) {
+            throw new IOException("unable to create directory " + parentDir);
+        }
+        OutputStream outputStream = new FileOutputStream(snapshotFile);
+        try {
+            snapshot.writeTo(outputStream);
+        } finally {
+            outputStream.close();
+        }
+        System.out.println("Wrote " + snapshot.getBeanDefinitionCount() + " bean definitions to " + snapshotFile);
+    }
+}
@@ -0,0 +1,375 @@
+package com.trigonic.utils.spring.context;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.MessageSourceResolvable;
+import org.springframework.context.NoSuchMessageException;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+
+/**
+ * Wraps an {@link ApplicationContext} to remember the results of type-based lookups, so child contexts that resolve
+ * shared beans by type through their parent don't scan every bean definition of the parent each time.
+ *
+ * <p>
+ * Only singletons are remembered: {@link #getBean(Class)} is cached when the type matches a single singleton and
+ * {@link #getBeansOfType(Class, boolean, boolean)} when every match is a singleton. Bean names by type are cached as
+ * well, since they only change when the context is refreshed or, for an {@link XmlResourceApplicationContext},
+ * {@link XmlResourceApplicationContext#reload(java.util.Collection) reloaded}. Everything is forgotten when the wrapped
+ * context is refreshed, reloaded or closed, and nothing is cached while it isn't active. Rather than listening for
+ * events, every lookup checks whether the wrapped context still has the bean factory the cache was filled from and the
+ * same {@link XmlResourceApplicationContext#getReloadCount() reload count}, since a refresh replaces the event
+ * multicaster a listener would have been registered with. Everything else is passed straight through.
+ *
+ * <p>
+ * Since the wrapper isn't a {@link ConfigurableApplicationContext}, a child context using it as its parent resolves
+ * parent beans through the wrapper rather than directly through the parent's bean factory.
+ */
+public class CachingApplicationContext implements ApplicationContext {
+    private static final Log logger = LogFactory.getLog(CachingApplicationContext.class);
+
+    private final ConfigurableApplicationContext delegate;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private volatile Generation generation;
+
+    /**
+     * Creates a wrapper caching the lookups of the specified context.
+     */
+    public CachingApplicationContext(ConfigurableApplicationContext delegate) {
+        this.delegate = delegate;
+    }
+
+    public ApplicationContext getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the cache for the wrapped context's current bean factory, starting a new one if it was refreshed or
+     * reloaded, or null if it isn't active.
+     */
+    private ConcurrentMap<Lookup, Object> getCache() {
+        Generation generation = this.generation;
+        long reloadCount = delegate instanceof XmlResourceApplicationContext
+                ? ((XmlResourceApplicationContext) delegate).getReloadCount() : 0;
+        ConfigurableListableBeanFactory beanFactory = null;
+        if (delegate.isActive()) {
+            try {
+                beanFactory = delegate.getBeanFactory();
+            } catch (IllegalStateException e) {
+                // closed or refreshing
+            }
+        }
+        if (beanFactory == null) {
+            if (generation != null) {
+                invalidate(null);
+            }
+            return null;
+        }
+        if (generation == null || generation.beanFactory.get() != beanFactory
+                || generation.reloadCount != reloadCount) {
+            // lookups in progress keep putting into the map they started with, which is discarded
+            generation = invalidate(new Generation(beanFactory, reloadCount));
+        }
+        return generation.cache;
+    }
+
+    private Generation invalidate(Generation generation) {
+        boolean cleared = this.generation != null;
+        this.generation = generation;
+        if (cleared && logger.isDebugEnabled()) {
+            logger.debug("Cleared cached lookups for " + delegate.getDisplayName() + " " + getStatistics());
+        }
+        return generation;
+    }
+
+    /**
+     * Forgets everything cached.
+     */
+    public void close() {
+        generation = null;
+        if (logger.isInfoEnabled()) {
+            logger.info("Cached lookups for " + delegate.getDisplayName() + " " + getStatistics());
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the fraction of type-based lookups answered from the cache, or 0 if there haven't been any.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long lookups = hits + missCount.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private String getStatistics() {
+        return String.format("(%d hits, %d misses, %.1f%% hit rate)", getHitCount(), getMissCount(),
+                getHitRate() * 100);
+    }
+
+    private Object getCached(Map<Lookup, Object> cache, Lookup lookup) {
+        Object result = cache == null ? null : cache.get(lookup);
+        (result == null ? missCount : hitCount).incrementAndGet();
+        return result;
+    }
+
+    private boolean allSingletons(Iterable<String> beanNames) {
+        for (String beanName : beanNames) {
+            if (!delegate.isSingleton(beanName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getBean(Class<T> requiredType) throws BeansException {
+        ConcurrentMap<Lookup, Object> cache = getCache();
+        Lookup lookup = new Lookup('b', requiredType, true, true);
+        T bean = (T) getCached(cache, lookup);
+        if (bean == null) {
+            bean = delegate.getBean(requiredType);
+            if (cache != null && bean != null) {
+                String[] beanNames = delegate.getBeanNamesForType(requiredType);
+                if (beanNames.length == 1 && delegate.isSingleton(beanNames[0])) {
+                    cache.put(lookup, bean);
+                }
+            }
+        }
+        return bean;
+    }
+
+    public <T> Map<String, T> getBeansOfType(Class<T> type) throws BeansException {
+        return getBeansOfType(type, true, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> getBeansOfType(Class<T> type, boolean includeNonSingletons, boolean allowEagerInit)
+            throws BeansException {
+        ConcurrentMap<Lookup, Object> cache = getCache();
+        Lookup lookup = new Lookup('m', type, includeNonSingletons, allowEagerInit);
+        Map<String, T> beans = (Map<String, T>) getCached(cache, lookup);
+        if (beans == null) {
+            beans = delegate.getBeansOfType(type, includeNonSingletons, allowEagerInit);
+            if (cache != null && (!includeNonSingletons || allSingletons(beans.keySet()))) {
+                cache.put(lookup, new LinkedHashMap<String, T>(beans));
+            }
+            return beans;
+        }
+        return new LinkedHashMap<String, T>(beans);
+    }
+
+    public String[] getBeanNamesForType(Class<?> type) {
+        return getBeanNamesForType(type, true, true);
+    }
+
+    public String[] getBeanNamesForType(Class<?> type, boolean includeNonSingletons, boolean allowEagerInit) {
+        ConcurrentMap<Lookup, Object> cache = getCache();
+        Lookup lookup = new Lookup('n', type, includeNonSingletons, allowEagerInit);
+        String[] beanNames = (String[]) getCached(cache, lookup);
+        if (beanNames == null) {
+            beanNames = delegate.getBeanNamesForType(type, includeNonSingletons, allowEagerInit);
+            if (cache != null) {
+                cache.put(lookup, beanNames.clone());
+            }
+            return beanNames;
+        }
+        return beanNames.clone();
+    }
+
+    public String getId() {
+        return delegate.getId();
+    }
+
+    public String getDisplayName() {
+        return delegate.getDisplayName();
+    }
+
+    public long getStartupDate() {
+        return delegate.getStartupDate();
+    }
+
+    public ApplicationContext getParent() {
+        return delegate.getParent();
+    }
+
+    public AutowireCapableBeanFactory getAutowireCapableBeanFactory() throws IllegalStateException {
+        return delegate.getAutowireCapableBeanFactory();
+    }
+
+    public Environment getEnvironment() {
+        return delegate.getEnvironment();
+    }
+
+    public boolean containsBeanDefinition(String beanName) {
+        return delegate.containsBeanDefinition(beanName);
+    }
+
+    public int getBeanDefinitionCount() {
+        return delegate.getBeanDefinitionCount();
+    }
+
+    public String[] getBeanDefinitionNames() {
+        return delegate.getBeanDefinitionNames();
+    }
+
+    public Map<String, Object> getBeansWithAnnotation(Class<? extends Annotation> annotationType)
+            throws BeansException {
+        return delegate.getBeansWithAnnotation(annotationType);
+    }
+
+    public <A extends Annotation> A findAnnotationOnBean(String beanName, Class<A> annotationType) {
+        return delegate.findAnnotationOnBean(beanName, annotationType);
+    }
+
+    public Object getBean(String name) throws BeansException {
+        return delegate.getBean(name);
+    }
+
+    public <T> T getBean(String name, Class<T> requiredType) throws BeansException {
+        return delegate.getBean(name, requiredType);
+    }
+
+    public Object getBean(String name, Object... args) throws BeansException {
+        return delegate.getBean(name, args);
+    }
+
+    public boolean containsBean(String name) {
+        return delegate.containsBean(name);
+    }
+
+    public boolean isSingleton(String name) throws NoSuchBeanDefinitionException {
+        return delegate.isSingleton(name);
+    }
+
+    public boolean isPrototype(String name) throws NoSuchBeanDefinitionException {
+        return delegate.isPrototype(name);
+    }
+
+    public boolean isTypeMatch(String name, Class<?> targetType) throws NoSuchBeanDefinitionException {
+        return delegate.isTypeMatch(name, targetType);
+    }
+
+    public Class<?> getType(String name) throws NoSuchBeanDefinitionException {
+        return delegate.getType(name);
+    }
+
+    public String[] getAliases(String name) {
+        return delegate.getAliases(name);
+    }
+
+    public BeanFactory getParentBeanFactory() {
+        return delegate.getParentBeanFactory();
+    }
+
+    public boolean containsLocalBean(String name) {
+        return delegate.containsLocalBean(name);
+    }
+
+    public String getMessage(String code, Object[] args, String defaultMessage, Locale locale) {
+        return delegate.getMessage(code, args, defaultMessage, locale);
+    }
+
+    public String getMessage(String code, Object[] args, Locale locale) throws NoSuchMessageException {
+        return delegate.getMessage(code, args, locale);
+    }
+
+    public String getMessage(MessageSourceResolvable resolvable, Locale locale) throws NoSuchMessageException {
+        return delegate.getMessage(resolvable, locale);
+    }
+
+    public void publishEvent(ApplicationEvent event) {
+        delegate.publishEvent(event);
+    }
+
+    public Resource[] getResources(String locationPattern) throws IOException {
+        return delegate.getResources(locationPattern);
+    }
+
+    public Resource getResource(String location) {
+        return delegate.getResource(location);
+    }
+
+    public ClassLoader getClassLoader() {
+        return delegate.getClassLoader();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " for " + delegate;
+    }
+
+    /**
+     * The lookups cached for one bean factory of the wrapped context. The bean factory is only weakly referenced, so a
+     * wrapper that isn't used again doesn't keep a refreshed or closed context's singletons alive.
+     */
+    private static final class Generation {
+        final WeakReference<ConfigurableListableBeanFactory> beanFactory;
+        final long reloadCount;
+        final ConcurrentMap<Lookup, Object> cache = new ConcurrentHashMap<Lookup, Object>();
+
+        Generation(ConfigurableListableBeanFactory beanFactory, long reloadCount) {
+            this.beanFactory = new WeakReference<ConfigurableListableBeanFactory>(beanFactory);
+            this.reloadCount = reloadCount;
+        }
+    }
+
+    /**
+     * A type-based lookup and its arguments.
+     */
+    private static final class Lookup {
+        private final char kind;
+        private final Class<?> type;
+        private final boolean includeNonSingletons;
+        private final boolean allowEagerInit;
+
+        Lookup(char kind, Class<?> type, boolean includeNonSingletons, boolean allowEagerInit) {
+            this.kind = kind;
+            this.type = type;
+            this.includeNonSingletons = includeNonSingletons;
+            this.allowEagerInit = allowEagerInit;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Lookup)) {
+                return false;
+            }
+            Lookup other = (Lookup) obj;
+            return kind == other.kind && type == other.type && includeNonSingletons == other.includeNonSingletons
+                    && allowEagerInit == other.allowEagerInit;
+        }
+
+        @Override
+        public int hashCode() {
+            return (kind * 31 + (type == null ? 0 : type.hashCode())) * 4 + (includeNonSingletons ? 2 : 0)
+                    + (allowEagerInit ? 1 : 0);
+        }
+    }
+}
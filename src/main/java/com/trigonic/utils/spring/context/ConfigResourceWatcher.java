@@ -0,0 +1,149 @@
+package com.trigonic.utils.spring.context;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.Resource;
+
+/**
+ * Watches the file system resources of an {@link XmlResourceApplicationContext} and
+ * {@link XmlResourceApplicationContext#reload(Collection) reloads} the ones that change. Changes are collected until
+ * none arrive for a quiet period, since editors often write a file in several steps. Nothing is reloaded until the
+ * watcher is {@link #start() started}, and {@link #close() closing} it stops watching every directory.
+ */
+class ConfigResourceWatcher implements Runnable {
+    private static final Log logger = LogFactory.getLog(ConfigResourceWatcher.class);
+
+    private final XmlResourceApplicationContext appContext;
+    private final long quietPeriodMillis;
+    private final WatchService watchService;
+    private final Map<Path, Resource> watchedFiles = new HashMap<Path, Resource>();
+    private final Map<Path, WatchKey> watchedDirs = new HashMap<Path, WatchKey>();
+    private Thread thread;
+
+    ConfigResourceWatcher(XmlResourceApplicationContext appContext, long quietPeriodMillis) throws IOException {
+        this.appContext = appContext;
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Starts the thread that reloads changed resources.
+     */
+    synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this, "xutils-reload-" + appContext.getId());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Replaces the watched resources, no longer watching directories that don't contain any of them. Resources that
+     * aren't in the file system are ignored.
+     */
+    synchronized void watch(Collection<Resource> resources) {
+        watchedFiles.clear();
+        Set<Path> dirs = new HashSet<Path>();
+        for (Resource resource : resources) {
+            Path file;
+            try {
+                file = resource.getFile().toPath().toAbsolutePath();
+            } catch (IOException e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Not watching [" + resource + "]: not in the file system");
+                }
+                continue;
+            }
+            watchedFiles.put(file, resource);
+
+            Path dir = file.getParent();
+            if (dirs.add(dir) && !watchedDirs.containsKey(dir)) {
+                try {
+                    watchedDirs.put(dir, dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE));
+                } catch (IOException e) {
+                    logger.warn("Unable to watch [" + dir + "] for changes", e);
+                }
+            }
+        }
+        for (Iterator<Map.Entry<Path, WatchKey>> i = watchedDirs.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<Path, WatchKey> entry = i.next();
+            if (!dirs.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                i.remove();
+            }
+        }
+    }
+
+    synchronized void close() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+        for (WatchKey key : watchedDirs.values()) {
+            key.cancel();
+        }
+        watchedDirs.clear();
+        watchedFiles.clear();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.debug("Unable to close watch service", e);
+        }
+    }
+
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Resource> changedResources = new LinkedHashSet<Resource>();
+                WatchKey key = watchService.take();
+                do {
+                    collectChanges(key, changedResources);
+                    key = watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS);
+                } while (key != null);
+
+                if (!changedResources.isEmpty()) {
+                    appContext.reload(changedResources);
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private synchronized void collectChanges(WatchKey key, Set<Resource> changedResources) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                changedResources.addAll(watchedFiles.values());
+            } else {
+                Resource resource = watchedFiles.get(dir.resolve((Path) event.context()));
+                if (resource != null) {
+                    changedResources.add(resource);
+                }
+            }
+        }
+        key.reset();
+    }
+}
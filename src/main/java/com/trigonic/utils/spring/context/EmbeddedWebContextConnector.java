@@ -1,11 +1,15 @@
 package com.trigonic.utils.spring.context;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
 
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.web.context.ContextLoaderListener;
 
 /**
@@ -21,21 +25,44 @@ import org.springframework.web.context.ContextLoaderListener;
  * context before starting the embedded web server. The name specified should match the embeddedWebContext context-param
  * specified in the web.xml.
  * </ul>
+ *
+ * <p>
+ * To start the embedded web server while the outer application is still starting, specify a context-param
+ * <tt>embeddedWebContextTimeout</tt> with the number of milliseconds to wait for the application context to be
+ * registered, or set a {@link #setDefaultTimeout(long) default timeout}.
+ *
+ * <p>
+ * To have the servlet context remember the singletons it looks up by type in the outer application, specify a
+ * context-param <tt>embeddedWebContextCaching</tt> of <tt>true</tt>. The parent is then wrapped in a
+ * {@link CachingApplicationContext}, available through {@link #getCachingParentContext()}.
  */
 public class EmbeddedWebContextConnector extends ContextLoaderListener {
-    private static final Map<String, ApplicationContext> appContextMap;
+    private static final ConcurrentMap<String, Registration> registrations;
+    private static volatile long defaultTimeout = 0;
+
+    private CachingApplicationContext cachingParentContext;
 
     static {
-        appContextMap = new ConcurrentHashMap<String, ApplicationContext>();
+        registrations = new ConcurrentHashMap<String, Registration>();
     }
 
     /**
-     * Registers the specified embedded web context.
+     * Registers the specified embedded web context, releasing any servlet contexts waiting for it.
      * 
      * @return the previously-registered {@link ApplicationContext} or null if nothing previously-registered
      */
     public static ApplicationContext registerAppContext(String embeddedWebContext, ApplicationContext appContext) {
-        return appContextMap.put(embeddedWebContext, appContext);
+        while (true) {
+            Registration registration = new Registration();
+            Registration existing = registrations.putIfAbsent(embeddedWebContext, registration);
+            registration = existing == null ? registration : existing;
+            synchronized (registration) {
+                if (!registration.abandoned) {
+                    return registration.complete(appContext);
+                }
+            }
+            // every servlet context waiting for it gave up and removed it, so try again
+        }
     }
 
     /**
@@ -44,12 +71,39 @@ public class EmbeddedWebContextConnector extends ContextLoaderListener {
      * @return the {@link ApplicationContext} that had been registered or null if nothing had been registered
      */
     public static ApplicationContext unregisterAppContext(String embeddedWebContext) {
-        return appContextMap.remove(embeddedWebContext);
+        Registration registration = registrations.get(embeddedWebContext);
+        if (registration == null || registration.appContext == null) {
+            // leave a pending registration for whoever is waiting on it
+            return null;
+        }
+        registrations.remove(embeddedWebContext, registration);
+        return registration.appContext;
+    }
+
+    /**
+     * Returns whether anything is held for the specified embedded web context, either a registered application
+     * context or a servlet context waiting for one.
+     */
+    static boolean isRegistered(String embeddedWebContext) {
+        return registrations.containsKey(embeddedWebContext);
+    }
+
+    /**
+     * Sets the number of milliseconds to wait for an application context to be registered when the servlet context
+     * doesn't specify <tt>embeddedWebContextTimeout</tt>. Defaults to 0, failing immediately.
+     */
+    public static void setDefaultTimeout(long defaultTimeout) {
+        EmbeddedWebContextConnector.defaultTimeout = defaultTimeout;
+    }
+
+    public static long getDefaultTimeout() {
+        return defaultTimeout;
     }
 
     /**
      * Loads the parent {@link ApplicationContext} for the {@link ServletContext} by retrieving the previously
-     * {@link #registerAppContext(String, ApplicationContext) registered} one for the embedded web context.
+     * {@link #registerAppContext(String, ApplicationContext) registered} one for the embedded web context, waiting for
+     * it to be registered if a timeout is configured.
      */
     @Override
     protected ApplicationContext loadParentContext(ServletContext servletContext) {
@@ -59,11 +113,118 @@ public class EmbeddedWebContextConnector extends ContextLoaderListener {
                     + servletContext.getServletContextName() + "]");
         }
 
-        ApplicationContext appContext = appContextMap.get(name);
+        long timeout = getTimeout(servletContext);
+        Registration registration;
+        if (timeout > 0) {
+            do {
+                registration = new Registration();
+                Registration existing = registrations.putIfAbsent(name, registration);
+                if (existing != null) {
+                    registration = existing;
+                }
+            } while (!registration.join());
+        } else {
+            registration = registrations.get(name);
+        }
+
+        ApplicationContext appContext;
+        try {
+            appContext = registration == null ? null : registration.await(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for application context to be registered for ["
+                    + name + "]", e);
+        } finally {
+            if (timeout > 0) {
+                registration.leave(name);
+            }
+        }
         if (appContext == null) {
-            throw new IllegalStateException("application context not registered for [" + name + "]");
+            throw new IllegalStateException("application context not registered for [" + name + "]"
+                    + (timeout > 0 ? " within " + timeout + "ms" : ""));
         }
 
+        if (Boolean.parseBoolean(servletContext.getInitParameter("embeddedWebContextCaching"))) {
+            if (appContext instanceof ConfigurableApplicationContext) {
+                cachingParentContext = new CachingApplicationContext((ConfigurableApplicationContext) appContext);
+                return cachingParentContext;
+            }
+            servletContext.log("Not caching lookups in [" + name + "]: " + appContext.getClass().getName()
+                    + " doesn't publish refresh and close events");
+        }
         return appContext;
     }
+
+    /**
+     * Returns the wrapper caching lookups in the parent {@link ApplicationContext}, or null if
+     * <tt>embeddedWebContextCaching</tt> isn't enabled.
+     */
+    public CachingApplicationContext getCachingParentContext() {
+        return cachingParentContext;
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        try {
+            super.contextDestroyed(event);
+        } finally {
+            if (cachingParentContext != null) {
+                cachingParentContext.close();
+                cachingParentContext = null;
+            }
+        }
+    }
+
+    private static long getTimeout(ServletContext servletContext) {
+        String timeout = servletContext.getInitParameter("embeddedWebContextTimeout");
+        if (timeout == null) {
+            return defaultTimeout;
+        }
+        try {
+            return Long.parseLong(timeout.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("context param [embeddedWebContextTimeout] is not a number of milliseconds"
+                    + " for [" + servletContext.getServletContextName() + "]", e);
+        }
+    }
+
+    /**
+     * The application context registered for a name, which servlet contexts can wait for. A registration that's still
+     * pending when the last servlet context waiting for it gives up is abandoned and removed.
+     */
+    private static class Registration {
+        private final CountDownLatch registered = new CountDownLatch(1);
+        private volatile ApplicationContext appContext;
+        private int waiting;
+        private boolean abandoned;
+
+        synchronized boolean join() {
+            if (abandoned) {
+                return false;
+            }
+            ++waiting;
+            return true;
+        }
+
+        synchronized void leave(String name) {
+            if (--waiting == 0 && appContext == null) {
+                abandoned = true;
+                registrations.remove(name, this);
+            }
+        }
+
+        synchronized ApplicationContext complete(ApplicationContext appContext) {
+            ApplicationContext previous = this.appContext;
+            this.appContext = appContext;
+            registered.countDown();
+            return previous;
+        }
+
+        ApplicationContext await(long timeout) throws InterruptedException {
+            if (timeout > 0) {
+                registered.await(timeout, TimeUnit.MILLISECONDS);
+            }
+            return appContext;
+        }
+    }
 }
@@ -0,0 +1,217 @@
+package com.trigonic.utils.spring.context;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationContextException;
+import org.springframework.context.Lifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.MethodInvoker;
+
+/**
+ * Starts the {@link EmbeddedWebContextRegistrar#setWebContext(Object) web contexts} of every
+ * {@link EmbeddedWebContextRegistrar} in the application context concurrently once it's refreshed, and stops them
+ * concurrently when it's closed. Each context is registered with the {@link EmbeddedWebContextConnector} before any web
+ * context is started, and the time taken to start each one is recorded.
+ *
+ * <p>
+ * Web contexts are started with the application context's lifecycle beans, in the last phase by default, which is
+ * just before the {@link org.springframework.context.event.ContextRefreshedEvent} is published. Registrars are
+ * registered at that point even when they're set to
+ * {@link EmbeddedWebContextRegistrar#setRegisterOnRefresh(boolean) register on refresh}, since the web contexts would
+ * otherwise wait for a refresh that doesn't complete until they've started.
+ *
+ * <pre>
+ * &lt;bean class="com.trigonic.utils.spring.context.EmbeddedWebContextCoordinator"&gt;
+ *     &lt;property name="parallelism" value="8" /&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ */
+public class EmbeddedWebContextCoordinator implements SmartLifecycle, ApplicationContextAware, DisposableBean {
+    private static final Log logger = LogFactory.getLog(EmbeddedWebContextCoordinator.class);
+
+    private ApplicationContext appContext;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int phase = Integer.MAX_VALUE;
+    private final List<EmbeddedWebContextRegistrar> startedRegistrars = new ArrayList<EmbeddedWebContextRegistrar>();
+    private final Map<String, Long> startupMillis = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+    private volatile boolean running;
+
+    public void setApplicationContext(ApplicationContext appContext) throws BeansException {
+        this.appContext = appContext;
+    }
+
+    /**
+     * Sets the maximum number of web contexts started or stopped at once. Defaults to the number of available
+     * processors.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the lifecycle phase, which defaults to starting after (and stopping before) everything else.
+     */
+    public void setPhase(int phase) {
+        this.phase = phase;
+    }
+
+    public int getPhase() {
+        return phase;
+    }
+
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the milliseconds each web context took to start, by embedded web context name.
+     */
+    public Map<String, Long> getStartupMillis() {
+        synchronized (startupMillis) {
+            return new LinkedHashMap<String, Long>(startupMillis);
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        List<EmbeddedWebContextRegistrar> registrars = new ArrayList<EmbeddedWebContextRegistrar>();
+        for (EmbeddedWebContextRegistrar registrar : appContext.getBeansOfType(EmbeddedWebContextRegistrar.class)
+                .values()) {
+            registrar.register();
+            if (registrar.getWebContext() != null) {
+                registrars.add(registrar);
+            }
+        }
+
+        startupMillis.clear();
+        List<Exception> failures = invokeAll(registrars, true);
+        running = true;
+        if (!failures.isEmpty()) {
+            stop();
+            throw new ApplicationContextException("Unable to start " + failures.size() + " embedded web contexts",
+                    failures.get(0));
+        }
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        List<EmbeddedWebContextRegistrar> registrars = new ArrayList<EmbeddedWebContextRegistrar>(startedRegistrars);
+        startedRegistrars.clear();
+        running = false;
+        for (Exception failure : invokeAll(registrars, false)) {
+            logger.warn("Unable to stop embedded web context", failure);
+        }
+    }
+
+    public void stop(Runnable callback) {
+        try {
+            stop();
+        } finally {
+            callback.run();
+        }
+    }
+
+    public void destroy() {
+        stop();
+    }
+
+    private List<Exception> invokeAll(List<EmbeddedWebContextRegistrar> registrars, final boolean start) {
+        List<Exception> failures = new ArrayList<Exception>();
+        if (registrars.isEmpty()) {
+            return failures;
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("embedded-web-context-");
+        threadFactory.setDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, registrars.size()),
+                threadFactory);
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>(registrars.size());
+            for (final EmbeddedWebContextRegistrar registrar : registrars) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        long startTime = System.nanoTime();
+                        invoke(registrar.getWebContext(), start);
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < registrars.size(); ++i) {
+                EmbeddedWebContextRegistrar registrar = registrars.get(i);
+                try {
+                    long millis = futures.get(i).get();
+                    if (start) {
+                        startedRegistrars.add(registrar);
+                        startupMillis.put(registrar.getEmbeddedWebContext(), millis);
+                        logger.info("Started embedded web context [" + registrar.getEmbeddedWebContext() + "] in "
+                                + millis + "ms");
+                    }
+                } catch (ExecutionException e) {
+                    failures.add(new IllegalStateException("Unable to " + (start ? "start" : "stop")
+                            + " embedded web context [" + registrar.getEmbeddedWebContext() + "]", e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.add(e);
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return failures;
+    }
+
+    private static void invoke(Object webContext, boolean start) throws Exception {
+        if (webContext instanceof Lifecycle) {
+            if (start) {
+                ((Lifecycle) webContext).start();
+            } else {
+                ((Lifecycle) webContext).stop();
+            }
+            return;
+        }
+
+        MethodInvoker methodInvoker = new MethodInvoker();
+        methodInvoker.setTargetObject(webContext);
+        methodInvoker.setTargetMethod(start ? "start" : "stop");
+        methodInvoker.prepare();
+        try {
+            methodInvoker.invoke();
+        } catch (InvocationTargetException e) {
+            if (e.getTargetException() instanceof Exception) {
+                throw (Exception) e.getTargetException();
+            }
+            throw e;
+        }
+    }
+}
@@ -6,15 +6,29 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 
 /**
  * Provides a simple bean for managing the lifecycle of {@link EmbeddedWebContextConnector} registrations of embedded
  * web contexts. Assumes the specified context is scoped to the lifecycle of this bean, registering at initialization
  * and unregistering at destruction.
+ *
+ * <p>
+ * When the embedded web server starts concurrently with the context, set <tt>registerOnRefresh</tt> so that web
+ * contexts {@link EmbeddedWebContextConnector waiting} for the registration only see the context once it's fully
+ * refreshed.
+ *
+ * <p>
+ * The embedded web application itself (e.g. a Jetty <tt>WebAppContext</tt>) can be specified as <tt>webContext</tt> so
+ * that an {@link EmbeddedWebContextCoordinator} starts and stops it along with the other embedded web contexts.
  */
-public class EmbeddedWebContextRegistrar implements ApplicationContextAware, InitializingBean, DisposableBean {
+public class EmbeddedWebContextRegistrar implements ApplicationContextAware, InitializingBean, DisposableBean,
+        ApplicationListener<ContextRefreshedEvent> {
     private ApplicationContext appContext;
     private String embeddedWebContext;
+    private boolean registerOnRefresh;
+    private Object webContext;
 
     public void setApplicationContext(ApplicationContext appContext) throws BeansException {
         this.appContext = appContext;
@@ -25,7 +39,46 @@ public class EmbeddedWebContextRegistrar implements ApplicationContextAware, Ini
         this.embeddedWebContext = embeddedWebContext;
     }
 
+    /**
+     * Sets whether to register when the context has been refreshed rather than when this bean is initialized. Defaults
+     * to false. An {@link EmbeddedWebContextCoordinator} starting the web context registers it earlier, as it starts.
+     */
+    public void setRegisterOnRefresh(boolean registerOnRefresh) {
+        this.registerOnRefresh = registerOnRefresh;
+    }
+
+    /**
+     * Sets the embedded web application to be started by an {@link EmbeddedWebContextCoordinator}, either a
+     * {@link org.springframework.context.Lifecycle} or any object with <tt>start()</tt> and <tt>stop()</tt> methods.
+     */
+    public void setWebContext(Object webContext) {
+        this.webContext = webContext;
+    }
+
+    public Object getWebContext() {
+        return webContext;
+    }
+
+    public String getEmbeddedWebContext() {
+        return embeddedWebContext;
+    }
+
     public void afterPropertiesSet() throws Exception {
+        if (!registerOnRefresh) {
+            register();
+        }
+    }
+
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (registerOnRefresh && event.getApplicationContext() == appContext) {
+            register();
+        }
+    }
+
+    /**
+     * Registers the context, which may already have been registered.
+     */
+    void register() {
         EmbeddedWebContextConnector.registerAppContext(embeddedWebContext, appContext);
     }
 
@@ -0,0 +1,149 @@
+package com.trigonic.utils.spring.context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.trigonic.utils.spring.beans.ImportEvent;
+import com.trigonic.utils.spring.beans.ImportListener;
+
+/**
+ * Aggregates the {@link ImportEvent import events} of a context so the cost of its imports can be watched over JMX.
+ * {@link XmlResourceApplicationContext} keeps one of these for its own imports.
+ */
+public class ImportStatistics implements ImportListener, ImportStatisticsMBean {
+    private int importCount;
+    private int alternateCount;
+    private int beanCount;
+    private long probeNanos;
+    private long parseNanos;
+    private long allocatedBytes;
+    private int duplicateCount;
+    private final Map<String, LocationStatistics> locations = new LinkedHashMap<String, LocationStatistics>();
+
+    public synchronized void importCompleted(ImportEvent event) {
+        String key = "[" + event.getLocation() + "] in " + event.getSourceResource().getDescription();
+        LocationStatistics location = locations.get(key);
+        if (location == null) {
+            location = new LocationStatistics(key);
+            locations.put(key, location);
+        }
+        location.add(event);
+        // skipped duplicates aren't included in enclosing imports, so count them at every depth
+        duplicateCount += event.getDuplicateCount();
+
+        if (event.getDepth() == 0) {
+            ++importCount;
+            if (event.isAlternateUsed()) {
+                ++alternateCount;
+            }
+            beanCount += event.getBeanCount();
+            probeNanos += event.getProbeNanos();
+            parseNanos += event.getParseNanos();
+            if (allocatedBytes >= 0) {
+                allocatedBytes = event.getAllocatedBytes() < 0 ? -1 : allocatedBytes + event.getAllocatedBytes();
+            }
+        }
+    }
+
+    public synchronized int getImportCount() {
+        return importCount;
+    }
+
+    public synchronized int getAlternateCount() {
+        return alternateCount;
+    }
+
+    public synchronized int getBeanCount() {
+        return beanCount;
+    }
+
+    public synchronized long getProbeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(probeNanos);
+    }
+
+    public synchronized long getParseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(parseNanos);
+    }
+
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public synchronized int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public synchronized String[] getImports() {
+        List<LocationStatistics> sorted = new ArrayList<LocationStatistics>(locations.values());
+        Collections.sort(sorted, new Comparator<LocationStatistics>() {
+            public int compare(LocationStatistics location1, LocationStatistics location2) {
+                long cost1 = location1.probeNanos + location1.parseNanos;
+                long cost2 = location2.probeNanos + location2.parseNanos;
+                return cost1 < cost2 ? 1 : cost1 == cost2 ? 0 : -1;
+            }
+        });
+        String[] imports = new String[sorted.size()];
+        for (int i = 0; i < imports.length; ++i) {
+            imports[i] = sorted.get(i).toString();
+        }
+        return imports;
+    }
+
+    public synchronized void reset() {
+        importCount = 0;
+        alternateCount = 0;
+        beanCount = 0;
+        probeNanos = 0;
+        parseNanos = 0;
+        allocatedBytes = 0;
+        duplicateCount = 0;
+        locations.clear();
+    }
+
+    /**
+     * Forgets the statistics of each import location, keeping only the totals.
+     */
+    public synchronized void clearImports() {
+        locations.clear();
+    }
+
+    private static class LocationStatistics {
+        private final String key;
+        private int importCount;
+        private int alternateCount;
+        private int resourceCount;
+        private int beanCount;
+        private int duplicateCount;
+        private long probeNanos;
+        private long parseNanos;
+
+        LocationStatistics(String key) {
+            this.key = key;
+        }
+
+        void add(ImportEvent event) {
+            ++importCount;
+            if (event.isAlternateUsed()) {
+                ++alternateCount;
+            }
+            resourceCount += event.getResources().size();
+            beanCount += event.getBeanCount();
+            duplicateCount += event.getDuplicateCount();
+            probeNanos += event.getProbeNanos();
+            parseNanos += event.getParseNanos();
+        }
+
+        @Override
+        public String toString() {
+            return key + ": " + importCount + " imports, " + alternateCount + " alternate, " + resourceCount
+                    + " resources, " + duplicateCount + " duplicate, " + beanCount + " beans, probe "
+                    + TimeUnit.NANOSECONDS.toMillis(probeNanos) + "ms, parse "
+                    + TimeUnit.NANOSECONDS.toMillis(parseNanos) + "ms";
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.trigonic.utils.spring.context;
+
+/**
+ * Management interface for {@link ImportStatistics}. Totals only count imports declared directly in the context's
+ * config resources, since those already include the cost of anything they import in turn.
+ */
+public interface ImportStatisticsMBean {
+    int getImportCount();
+
+    int getAlternateCount();
+
+    int getBeanCount();
+
+    long getProbeMillis();
+
+    long getParseMillis();
+
+    /**
+     * Returns the bytes allocated while importing, or -1 if the JVM can't measure it or it isn't being measured.
+     */
+    long getAllocatedBytes();
+
+    /**
+     * Returns how many imports, at any depth, were skipped because the resource had already been imported.
+     */
+    int getDuplicateCount();
+
+    /**
+     * Describes every import, including nested ones, with the most expensive first.
+     */
+    String[] getImports();
+
+    void reset();
+}
@@ -0,0 +1,486 @@
+package com.trigonic.utils.spring.context;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.FatalBeanException;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanCurrentlyInCreationException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.SmartFactoryBean;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueHolder;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+/**
+ * Pre-instantiates non-lazy singletons concurrently on a {@link ForkJoinPool}, following the graph of references and
+ * <tt>depends-on</tt> declared by their bean definitions: a singleton is only created once everything it refers to,
+ * directly or through lazy and prototype beans, has been created, so independent parts of the graph are created at the
+ * same time.
+ *
+ * <p>
+ * Only explicitly declared dependencies are visible in the graph, so this falls back to the usual sequential
+ * pre-instantiation whenever the graph may be incomplete or can't be ordered: when any bean is autowired, when
+ * instantiation-aware post-processors such as the annotation processors are registered, or when references are
+ * circular. The decision depends only on the bean definitions, so the same configuration always takes the same path.
+ *
+ * <p>
+ * Beans can still look each other up at runtime, such as from <tt>afterPropertiesSet</tt>, without the graph knowing.
+ * A thread needing a bean another thread is creating waits for it, unless that thread is itself waiting, directly or
+ * through other threads, for a bean this one is creating; the cycle is then resolved with the early reference to the
+ * bean, just as a single thread would resolve it. Waiting for another thread, and pre-instantiation as a whole, fail
+ * once no progress is made within the timeout.
+ */
+class ParallelInstantiatingBeanFactory extends XmlResourceBeanFactory {
+    private static final long serialVersionUID = 1L;
+
+    private static final long DEADLOCK_CHECK_MILLIS = 10;
+
+    private final int parallelism;
+    private final long timeoutMillis;
+    private final ConcurrentMap<String, ReentrantLock> creationLocks = new ConcurrentHashMap<String, ReentrantLock>();
+    private final ConcurrentMap<String, Thread> creatingThreads = new ConcurrentHashMap<String, Thread>();
+    private final ConcurrentMap<Thread, String> awaitedBeans = new ConcurrentHashMap<Thread, String>();
+    private final ThreadLocal<Set<Exception>> suppressedExceptions = new ThreadLocal<Set<Exception>>();
+    private volatile boolean instantiatingInParallel;
+
+    ParallelInstantiatingBeanFactory(BeanFactory parentBeanFactory, int parallelism, long timeoutMillis) {
+        super(parentBeanFactory);
+        this.parallelism = parallelism;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void preInstantiateSingletons() throws BeansException {
+        Map<String, Set<String>> dependencies = parallelism > 1 ? buildDependencyGraph() : null;
+        if (dependencies == null) {
+            super.preInstantiateSingletons();
+            return;
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Pre-instantiating " + dependencies.size() + " singletons in parallel in " + this);
+        }
+        long startMillis = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        instantiatingInParallel = true;
+        try {
+            new Instantiation(dependencies, pool).run();
+        } finally {
+            instantiatingInParallel = false;
+            pool.shutdownNow();
+            creationLocks.clear();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Pre-instantiated singletons in " + (System.currentTimeMillis() - startMillis) + "ms");
+        }
+    }
+
+    /**
+     * Creates singletons under a lock for each bean rather than the single lock of the registry, so unrelated beans
+     * can be created at the same time.
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Object getSingleton(String beanName, ObjectFactory singletonFactory) {
+        if (!instantiatingInParallel) {
+            return super.getSingleton(beanName, singletonFactory);
+        }
+        if (!lockCreation(beanName)) {
+            return getEarlySingleton(beanName);
+        }
+        try {
+            if (containsSingleton(beanName)) {
+                return getSingleton(beanName, false);
+            }
+            checkCreationAllowed(beanName);
+            Thread previousThread = creatingThreads.put(beanName, Thread.currentThread());
+            beforeSingletonCreation(beanName);
+            boolean recordSuppressedExceptions = suppressedExceptions.get() == null;
+            if (recordSuppressedExceptions) {
+                suppressedExceptions.set(new LinkedHashSet<Exception>());
+            }
+            Object singletonObject;
+            try {
+                singletonObject = singletonFactory.getObject();
+            } catch (BeanCreationException e) {
+                if (recordSuppressedExceptions) {
+                    for (Exception suppressedException : suppressedExceptions.get()) {
+                        e.addRelatedCause(suppressedException);
+                    }
+                }
+                throw e;
+            } finally {
+                if (recordSuppressedExceptions) {
+                    suppressedExceptions.remove();
+                }
+                afterSingletonCreation(beanName);
+                if (previousThread == null) {
+                    creatingThreads.remove(beanName);
+                }
+            }
+            addSingleton(beanName, singletonObject);
+            return singletonObject;
+        } finally {
+            getCreationLock(beanName).unlock();
+        }
+    }
+
+    /**
+     * Records exceptions suppressed while creating a singleton for the thread creating it, since the registry only
+     * keeps one set of them for the singleton it's creating itself.
+     */
+    @Override
+    protected void onSuppressedException(Exception ex) {
+        Set<Exception> exceptions = suppressedExceptions.get();
+        if (exceptions != null) {
+            exceptions.add(ex);
+        } else {
+            super.onSuppressedException(ex);
+        }
+    }
+
+    /**
+     * Waits for a singleton being created by another thread instead of handing out its early reference, which is only
+     * meant for resolving circular references within a single thread, unless waiting would deadlock.
+     */
+    @Override
+    public Object getSingleton(String beanName) {
+        Thread creatingThread = creatingThreads.get(beanName);
+        // waiting while holding the registry lock could deadlock against the creating thread
+        if (creatingThread != null && creatingThread != Thread.currentThread()
+                && !Thread.holdsLock(getSingletonMutex())) {
+            if (lockCreation(beanName)) {
+                getCreationLock(beanName).unlock();
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("Resolving circular lookup of bean '" + beanName + "' across threads");
+            }
+        }
+        return super.getSingleton(beanName);
+    }
+
+    /**
+     * Returns the early reference to a singleton whose creating thread is waiting for this one.
+     */
+    private Object getEarlySingleton(String beanName) {
+        Object singletonObject = super.getSingleton(beanName);
+        if (singletonObject == null) {
+            throw new BeanCurrentlyInCreationException(beanName, "Requested bean is being created by another thread "
+                    + "that is waiting for a bean this thread is creating, and has no early reference yet");
+        }
+        return singletonObject;
+    }
+
+    /**
+     * Acquires the creation lock of the bean, waiting for the thread creating it unless that thread is itself waiting,
+     * directly or through other threads, for a bean this thread is creating.
+     *
+     * @return false if waiting would deadlock, in which case the lock isn't held
+     */
+    private boolean lockCreation(String beanName) {
+        ReentrantLock lock = getCreationLock(beanName);
+        if (lock.tryLock()) {
+            return true;
+        }
+        Thread thread = Thread.currentThread();
+        awaitedBeans.put(thread, beanName);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!isWaitingFor(beanName, thread)) {
+                if (lock.tryLock(DEADLOCK_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw new BeanCreationException(beanName, "Timed out after " + timeoutMillis
+                            + "ms waiting for another thread to create it");
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BeanCreationException(beanName, "Interrupted while waiting for another thread to create it", e);
+        } finally {
+            awaitedBeans.remove(thread);
+        }
+    }
+
+    /**
+     * Determines whether the thread creating the bean is waiting for the specified thread, following the beans each
+     * thread along the way is waiting for.
+     */
+    private boolean isWaitingFor(String beanName, Thread thread) {
+        Set<Thread> visited = new HashSet<Thread>();
+        String awaitedBean = beanName;
+        while (awaitedBean != null) {
+            Thread creatingThread = creatingThreads.get(awaitedBean);
+            if (creatingThread == null || !visited.add(creatingThread)) {
+                return false;
+            }
+            if (creatingThread == thread) {
+                return true;
+            }
+            awaitedBean = awaitedBeans.get(creatingThread);
+        }
+        return false;
+    }
+
+    private ReentrantLock getCreationLock(String beanName) {
+        ReentrantLock lock = creationLocks.get(beanName);
+        if (lock == null) {
+            lock = new ReentrantLock();
+            ReentrantLock existing = creationLocks.putIfAbsent(beanName, lock);
+            if (existing != null) {
+                lock = existing;
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * Maps each singleton to pre-instantiate to the singletons it needs created first.
+     *
+     * @return the graph, or null if the singletons should be pre-instantiated sequentially
+     */
+    private Map<String, Set<String>> buildDependencyGraph() {
+        if (hasInstantiationAwareBeanPostProcessors()) {
+            logger.debug("Pre-instantiating sequentially: instantiation-aware bean post-processors are registered");
+            return null;
+        }
+
+        Set<String> eagerBeanNames = new LinkedHashSet<String>();
+        for (String beanName : getBeanDefinitionNames()) {
+            RootBeanDefinition beanDefinition = getMergedLocalBeanDefinition(beanName);
+            if (!beanDefinition.isAbstract() && beanDefinition.isSingleton() && !beanDefinition.isLazyInit()) {
+                eagerBeanNames.add(beanName);
+            }
+        }
+
+        Map<String, Set<String>> dependencies = new LinkedHashMap<String, Set<String>>();
+        for (String beanName : eagerBeanNames) {
+            Set<String> beanDependencies = new LinkedHashSet<String>();
+            Set<String> visited = new HashSet<String>();
+            visited.add(beanName);
+            if (!collectDependencies(getMergedLocalBeanDefinition(beanName), eagerBeanNames, visited,
+                    beanDependencies)) {
+                logger.debug("Pre-instantiating sequentially: [" + beanName + "] is autowired");
+                return null;
+            }
+            if (beanDependencies.contains(beanName)) {
+                logger.debug("Pre-instantiating sequentially: [" + beanName + "] refers to itself");
+                return null;
+            }
+            dependencies.put(beanName, beanDependencies);
+        }
+
+        if (dependencies.size() < 2) {
+            return null;
+        }
+        if (hasCycle(dependencies)) {
+            logger.debug("Pre-instantiating sequentially: singletons have circular references");
+            return null;
+        }
+        return dependencies;
+    }
+
+    /**
+     * Adds the eager singletons the bean definition refers to, following references to other beans until reaching
+     * one.
+     *
+     * @return false if the definition or anything it refers to is autowired
+     */
+    private boolean collectDependencies(BeanDefinition beanDefinition, Set<String> eagerBeanNames,
+            Set<String> visited, Set<String> dependencies) {
+        if (beanDefinition instanceof AbstractBeanDefinition
+                && ((AbstractBeanDefinition) beanDefinition).getResolvedAutowireMode()
+                != AutowireCapableBeanFactory.AUTOWIRE_NO) {
+            return false;
+        }
+
+        List<String> references = new ArrayList<String>();
+        if (beanDefinition.getParentName() != null) {
+            references.add(beanDefinition.getParentName());
+        }
+        if (beanDefinition.getFactoryBeanName() != null) {
+            references.add(beanDefinition.getFactoryBeanName());
+        }
+        if (beanDefinition.getDependsOn() != null) {
+            Collections.addAll(references, beanDefinition.getDependsOn());
+        }
+        List<BeanDefinition> innerBeanDefinitions = new ArrayList<BeanDefinition>();
+        for (PropertyValue propertyValue : beanDefinition.getPropertyValues().getPropertyValues()) {
+            collectReferences(propertyValue.getValue(), references, innerBeanDefinitions);
+        }
+        for (ValueHolder valueHolder : beanDefinition.getConstructorArgumentValues().getIndexedArgumentValues()
+                .values()) {
+            collectReferences(valueHolder.getValue(), references, innerBeanDefinitions);
+        }
+        for (ValueHolder valueHolder : beanDefinition.getConstructorArgumentValues().getGenericArgumentValues()) {
+            collectReferences(valueHolder.getValue(), references, innerBeanDefinitions);
+        }
+
+        for (BeanDefinition innerBeanDefinition : innerBeanDefinitions) {
+            if (!collectDependencies(innerBeanDefinition, eagerBeanNames, visited, dependencies)) {
+                return false;
+            }
+        }
+        for (String reference : references) {
+            String beanName = canonicalName(BeanFactoryUtils.transformedBeanName(reference));
+            if (eagerBeanNames.contains(beanName)) {
+                dependencies.add(beanName);
+            } else if (visited.add(beanName) && containsBeanDefinition(beanName)
+                    && !collectDependencies(getBeanDefinition(beanName), eagerBeanNames, visited, dependencies)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void collectReferences(Object value, List<String> references,
+            List<BeanDefinition> innerBeanDefinitions) {
+        if (value instanceof RuntimeBeanReference) {
+            references.add(((RuntimeBeanReference) value).getBeanName());
+        } else if (value instanceof BeanDefinitionHolder) {
+            innerBeanDefinitions.add(((BeanDefinitionHolder) value).getBeanDefinition());
+        } else if (value instanceof BeanDefinition) {
+            innerBeanDefinitions.add((BeanDefinition) value);
+        } else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                collectReferences(element, references, innerBeanDefinitions);
+            }
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                collectReferences(entry.getKey(), references, innerBeanDefinitions);
+                collectReferences(entry.getValue(), references, innerBeanDefinitions);
+            }
+        }
+    }
+
+    private void instantiate(String beanName) {
+        if (isFactoryBean(beanName)) {
+            FactoryBean<?> factory = (FactoryBean<?>) getBean(FACTORY_BEAN_PREFIX + beanName);
+            if (factory instanceof SmartFactoryBean && ((SmartFactoryBean<?>) factory).isEagerInit()) {
+                getBean(beanName);
+            }
+        } else {
+            getBean(beanName);
+        }
+    }
+
+    /**
+     * Submits each singleton once the singletons it depends on have been created, and waits for all of them, the
+     * first failure or until none has been created within the timeout.
+     */
+    private class Instantiation {
+        private final Map<String, List<String>> dependents;
+        private final Map<String, Integer> remaining = new HashMap<String, Integer>();
+        private final ForkJoinPool pool;
+        private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        private int running;
+        private int completed;
+        private long progressNanos = System.nanoTime();
+        private Throwable failure;
+
+        Instantiation(Map<String, Set<String>> dependencies, ForkJoinPool pool) {
+            this.dependents = getDependents(dependencies);
+            this.pool = pool;
+            for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+                remaining.put(entry.getKey(), entry.getValue().size());
+            }
+        }
+
+        synchronized void run() {
+            for (Map.Entry<String, Integer> entry : remaining.entrySet()) {
+                if (entry.getValue() == 0) {
+                    submit(entry.getKey());
+                }
+            }
+            try {
+                while (running > 0) {
+                    long waitMillis = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - progressNanos);
+                    if (waitMillis <= 0) {
+                        if (failure == null) {
+                            failure = new FatalBeanException("No singleton was pre-instantiated within "
+                                    + timeoutMillis + "ms, still creating " + creatingThreads.keySet());
+                        }
+                        break;
+                    }
+                    wait(waitMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FatalBeanException("Interrupted while pre-instantiating singletons", e);
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (completed < dependents.size()) {
+                throw new FatalBeanException("Only pre-instantiated " + completed + " of " + dependents.size()
+                        + " singletons");
+            }
+        }
+
+        private void submit(final String beanName) {
+            ++running;
+            pool.execute(new Runnable() {
+                public void run() {
+                    Thread thread = Thread.currentThread();
+                    ClassLoader previousClassLoader = thread.getContextClassLoader();
+                    thread.setContextClassLoader(contextClassLoader);
+                    try {
+                        instantiate(beanName);
+                        completed(beanName, null);
+                    } catch (Throwable e) {
+                        completed(beanName, e);
+                    } finally {
+                        thread.setContextClassLoader(previousClassLoader);
+                    }
+                }
+            });
+        }
+
+        private synchronized void completed(String beanName, Throwable beanFailure) {
+            --running;
+            progressNanos = System.nanoTime();
+            if (beanFailure != null) {
+                if (failure == null) {
+                    failure = beanFailure;
+                }
+            } else {
+                ++completed;
+                if (failure == null) {
+                    for (String dependent : dependents.get(beanName)) {
+                        int count = remaining.get(dependent) - 1;
+                        remaining.put(dependent, count);
+                        if (count == 0) {
+                            submit(dependent);
+                        }
+                    }
+                }
+            }
+            notifyAll();
+        }
+    }
+}
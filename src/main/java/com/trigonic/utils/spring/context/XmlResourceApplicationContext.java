@@ -1,13 +1,49 @@
 package com.trigonic.utils.spring.context;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.parsing.ReaderEventListener;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.xml.ResourceEntityResolver;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.AbstractXmlApplicationContext;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+import com.trigonic.utils.spring.beans.BeanDefinitionSnapshot;
+import com.trigonic.utils.spring.beans.GrammarCachingDocumentLoader;
+import com.trigonic.utils.spring.beans.ImportDocumentCache;
+import com.trigonic.utils.spring.beans.ImportEvent;
+import com.trigonic.utils.spring.beans.ImportHelper;
+import com.trigonic.utils.spring.beans.ImportListener;
+import com.trigonic.utils.spring.beans.ImportOptions;
+import com.trigonic.utils.spring.beans.ResourceRecordingDocumentReader;
+import com.trigonic.utils.spring.beans.StreamingBeanDefinitionReader;
 
 /**
  * Surprisingly, Spring doesn't seem to have an {@link AbstractXmlApplicationContext} that pulls from a set of
@@ -15,24 +51,657 @@ import org.springframework.core.io.UrlResource;
  * and {@link org.springframework.context.support.FileSystemXmlApplicationContext}, both of which construct themselves
  * with a set of {@link String strings}.  This provides an {@link ApplicationContext} that can be constructed with
  * a collection of {@link Resource resources}.
+ *
+ * <p>
+ * Config resources are loaded through {@link ImportHelper}, so they're served from the shared
+ * {@link ImportDocumentCache} when it's enabled.
+ *
+ * <p>
+ * A context constructed with a {@link ResourceLoader} resolves every resource location through it, which lets a
+ * {@link com.trigonic.utils.spring.beans.ConfigBundleResourceLoader} serve the whole configuration from a single
+ * memory-mapped bundle.
+ *
+ * <p>
+ * A context created {@link #fromSnapshot(Resource, ApplicationContext, Object...) from a snapshot} registers the bean
+ * definitions {@link BeanDefinitionSnapshotCompiler compiled} ahead of time instead of parsing its config resources,
+ * unless the snapshot is missing or stale, in which case it falls back to parsing them.
+ *
+ * <p>
+ * A context created {@link #fromTemplate(XmlResourceContextTemplate, ApplicationContext, Properties) from a template}
+ * registers the bean definitions the {@link XmlResourceContextTemplate template} parsed, without reading its config
+ * resources at all.
+ *
+ * <p>
+ * Imports into the context's bean factory use its own {@link #setImportOptions(ImportOptions) import options} when
+ * they're set, so contexts in the same JVM can import differently.
+ *
+ * <p>
+ * A context constructed without refreshing can be {@link #refreshAsync(Executor) refreshed} on another thread, so that
+ * several independent contexts start concurrently.
+ *
+ * <p>
+ * With {@link #setImportStatisticsEnabled(boolean) import statistics enabled}, the cost of the imports parsed by the
+ * latest refresh is available from {@link #getImportStatistics()}, which can also be
+ * {@link #setImportStatisticsExported(boolean) exported} to the platform MBean server.
+ *
+ * <p>
+ * With {@link #setReloadEnabled(boolean) reloading enabled}, the config resources and everything they import from the
+ * file system are watched for changes, and changed resources are {@link #reload(Collection) reloaded} by replacing only
+ * the bean definitions that changed.
+ *
+ * <p>
+ * With an {@link #setInstantiationParallelism(int) instantiation parallelism} above 1, independent non-lazy singletons
+ * are pre-instantiated concurrently.
+ *
+ * <p>
+ * Contexts that live long after starting up can be {@link #compact() compacted} to drop the metadata only needed while
+ * loading and instantiating, either explicitly or {@link #setCompactAfterRefresh(boolean) after every refresh}.
+ *
+ * <p>
+ * With {@link #setStreaming(boolean) streaming} enabled, config resources and their imports are read as StAX streams
+ * rather than parsed into complete DOM documents, for configurations too large to hold in memory at once.
+ *
+ * <p>
+ * With a {@link #setDestructionParallelism(int) destruction parallelism} above 1, singletons are destroyed concurrently
+ * in reverse dependency order when the context is closed or refreshed again.
  */
 public class XmlResourceApplicationContext extends AbstractXmlApplicationContext {
+    private static final String IMPORT_STATISTICS_DOMAIN = "com.trigonic.utils.spring";
+
+    private static final long RELOAD_QUIET_PERIOD_MILLIS = 200;
+
+    private static volatile boolean importStatisticsExported = false;
+
+    private final ResourceLoader resourceLoader;
     private final Resource[] configResources;
+    private final Resource snapshot;
+    private final XmlResourceContextTemplate template;
+    private final Properties templateOverrides;
+    private ReaderEventListener readerEventListener;
+    private final ImportStatistics importStatistics = new ImportStatistics();
+    private ObjectName importStatisticsName;
+    private volatile boolean importStatisticsEnabled;
+    private volatile boolean reloadEnabled;
+    private volatile Map<Resource, Set<Resource>> importedResources = Collections.emptyMap();
+    private volatile boolean resourcesRecorded;
+    private volatile long reloadCount;
+    private final Object reloadMonitor = new Object();
+    private ConfigResourceWatcher reloadWatcher;
+    private volatile ImportOptions importOptions;
+    private int instantiationParallelism = 1;
+    private long instantiationTimeoutMillis = 300000;
+    private volatile boolean compactAfterRefresh;
+    private volatile boolean streaming;
+    private volatile int destructionParallelism = 1;
+    private volatile long destructionTimeoutMillis = 30000;
+    private volatile Map<String, Long> destructionMillis = Collections.emptyMap();
 
     public XmlResourceApplicationContext(Object... configResources) {
         this(null, configResources);
     }
 
     public XmlResourceApplicationContext(ApplicationContext parent, Object... configResources) {
+        this(parent, configResources, null, true);
+    }
+
+    /**
+     * Creates a context that is only refreshed when requested if <tt>refresh</tt> is false, allowing it to be
+     * configured first or {@link #refreshAsync(Executor) refreshed asynchronously}.
+     */
+    public XmlResourceApplicationContext(Object[] configResources, boolean refresh, ApplicationContext parent) {
+        this(parent, configResources, null, refresh);
+    }
+
+    /**
+     * Creates a context that resolves its config resources, imports and any other resource locations through the
+     * specified loader, such as a {@link com.trigonic.utils.spring.beans.ConfigBundleResourceLoader}, rather than as
+     * usual. Resources are resolved as usual if it's null.
+     */
+    public XmlResourceApplicationContext(ResourceLoader resourceLoader, Object[] configResources, boolean refresh,
+            ApplicationContext parent) {
+        this(parent, resourceLoader, configResources, null, refresh);
+    }
+
+    XmlResourceApplicationContext(ApplicationContext parent, Object[] configResources, Resource snapshot,
+            boolean refresh) {
+        this(parent, null, configResources, snapshot, refresh);
+    }
+
+    XmlResourceApplicationContext(ApplicationContext parent, ResourceLoader resourceLoader, Object[] configResources,
+            Resource snapshot, boolean refresh) {
         super(parent);
+        this.resourceLoader = resourceLoader;
         this.configResources = normalize(configResources);
-        refresh();
+        this.snapshot = snapshot;
+        this.template = null;
+        this.templateOverrides = null;
+        if (refresh) {
+            refresh();
+        }
+    }
+
+    XmlResourceApplicationContext(ApplicationContext parent, XmlResourceContextTemplate template,
+            Properties templateOverrides, boolean refresh) {
+        super(parent);
+        this.resourceLoader = null;
+        this.configResources = template.getConfigResources();
+        this.snapshot = null;
+        this.template = template;
+        this.templateOverrides = templateOverrides;
+        if (refresh) {
+            refresh();
+        }
+    }
+
+    /**
+     * Creates a context that loads its bean definitions from the specified snapshot, falling back to the config
+     * resources when the snapshot is missing or no longer matches them.
+     */
+    public static XmlResourceApplicationContext fromSnapshot(Resource snapshot, ApplicationContext parent,
+            Object... configResources) {
+        return new XmlResourceApplicationContext(parent, configResources, snapshot, true);
+    }
+
+    /**
+     * Creates a context from the specified snapshot as above, resolving its config resources and the resources the
+     * snapshot depends on through the specified loader.
+     *
+     * @see #XmlResourceApplicationContext(ResourceLoader, Object[], boolean, ApplicationContext)
+     */
+    public static XmlResourceApplicationContext fromSnapshot(Resource snapshot, ResourceLoader resourceLoader,
+            ApplicationContext parent, Object... configResources) {
+        return new XmlResourceApplicationContext(parent, resourceLoader, configResources, snapshot, true);
+    }
+
+    /**
+     * Creates a context that registers the bean definitions of the specified template, with property values
+     * overridden by <tt>beanName.property</tt> keys as for a
+     * {@link org.springframework.beans.factory.config.PropertyOverrideConfigurer}.
+     *
+     * @param overrides the property values to override, or null
+     */
+    public static XmlResourceApplicationContext fromTemplate(XmlResourceContextTemplate template,
+            ApplicationContext parent, Properties overrides) {
+        return new XmlResourceApplicationContext(parent, template, overrides, true);
+    }
+
+    /**
+     * Refreshes this context on the specified executor.
+     *
+     * @return a future that completes with this context once it's refreshed, or with the exception that refreshing
+     * failed with
+     */
+    public Future<XmlResourceApplicationContext> refreshAsync(Executor executor) {
+        FutureTask<XmlResourceApplicationContext> refreshTask = new FutureTask<XmlResourceApplicationContext>(
+                new Callable<XmlResourceApplicationContext>() {
+                    public XmlResourceApplicationContext call() {
+                        refresh();
+                        return XmlResourceApplicationContext.this;
+                    }
+                });
+        executor.execute(refreshTask);
+        return refreshTask;
+    }
+
+    /**
+     * Sets a listener to be notified of the components, aliases and imports read from the config resources. This only
+     * applies to bean definitions loaded by a subsequent refresh.
+     */
+    public void setReaderEventListener(ReaderEventListener readerEventListener) {
+        this.readerEventListener = readerEventListener;
+    }
+
+    /**
+     * Sets the options for the imports into this context's bean factory, or null (the default) to use
+     * {@link ImportHelper#getDefaultOptions() the default ones}. This applies from the next refresh or
+     * {@link #reload(Collection) reload}.
+     */
+    public void setImportOptions(ImportOptions importOptions) {
+        this.importOptions = importOptions;
+    }
+
+    public ImportOptions getImportOptions() {
+        return importOptions;
+    }
+
+    /**
+     * Sets whether contexts register their {@link ImportStatistics} with the platform MBean server, named
+     * <tt>com.trigonic.utils.spring:type=ImportStatistics,context=<i>id</i></tt>, when they're refreshed. Exported
+     * statistics are collected whether or not they're {@link #setImportStatisticsEnabled(boolean) enabled}. Defaults
+     * to false.
+     */
+    public static void setImportStatisticsExported(boolean importStatisticsExported) {
+        XmlResourceApplicationContext.importStatisticsExported = importStatisticsExported;
+    }
+
+    public static boolean isImportStatisticsExported() {
+        return importStatisticsExported;
+    }
+
+    /**
+     * Sets whether the cost of the imports parsed by each refresh is collected into {@link #getImportStatistics()}.
+     * Every import is timed while statistics are collected; allocation is only measured as well when
+     * {@link ImportOptions#setAllocationMeasured(boolean) enabled}. This applies from the next refresh. Defaults to
+     * false.
+     */
+    public void setImportStatisticsEnabled(boolean importStatisticsEnabled) {
+        this.importStatisticsEnabled = importStatisticsEnabled;
+    }
+
+    public boolean isImportStatisticsEnabled() {
+        return importStatisticsEnabled;
+    }
+
+    /**
+     * Returns the statistics for the imports parsed by the latest refresh, which are empty if they weren't
+     * {@link #setImportStatisticsEnabled(boolean) collected} or the bean definitions came from a snapshot.
+     */
+    public ImportStatistics getImportStatistics() {
+        return importStatistics;
+    }
+
+    /**
+     * Sets whether the config resources and the resources they import are watched for changes and reloaded. Only
+     * resources in the file system can be watched. This applies from the next refresh, since bean definitions must
+     * record the resource they came from to be reloaded. Defaults to false.
+     */
+    public void setReloadEnabled(boolean reloadEnabled) {
+        this.reloadEnabled = reloadEnabled;
+    }
+
+    public boolean isReloadEnabled() {
+        return reloadEnabled;
+    }
+
+    /**
+     * Returns how many times bean definitions were {@link #reload(Collection) reloaded} without refreshing, each of
+     * which may have replaced beans and changed the bean names in the same bean factory.
+     */
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    /**
+     * Sets the number of threads pre-instantiating non-lazy singletons. Above 1, singletons that don't depend on each
+     * other through their references or <tt>depends-on</tt> are created concurrently, unless any bean is autowired,
+     * annotation processors are registered or references are circular, in which case they're created sequentially as
+     * usual. This applies from the next refresh. Defaults to 1.
+     */
+    public void setInstantiationParallelism(int instantiationParallelism) {
+        this.instantiationParallelism = instantiationParallelism;
+    }
+
+    public int getInstantiationParallelism() {
+        return instantiationParallelism;
+    }
+
+    /**
+     * Sets how long pre-instantiating singletons in parallel may go without creating any of them, and how long a
+     * thread may wait for a singleton another thread is creating, before refreshing fails. This applies from the next
+     * refresh. Defaults to 5 minutes.
+     */
+    public void setInstantiationTimeoutMillis(long instantiationTimeoutMillis) {
+        this.instantiationTimeoutMillis = instantiationTimeoutMillis;
+    }
+
+    public long getInstantiationTimeoutMillis() {
+        return instantiationTimeoutMillis;
+    }
+
+    /**
+     * Sets whether the context is {@link #compact() compacted} at the end of each refresh and reload. Defaults to
+     * false.
+     */
+    public void setCompactAfterRefresh(boolean compactAfterRefresh) {
+        this.compactAfterRefresh = compactAfterRefresh;
+    }
+
+    public boolean isCompactAfterRefresh() {
+        return compactAfterRefresh;
+    }
+
+    /**
+     * Sets whether config resources and their imports are read by a {@link StreamingBeanDefinitionReader}, which
+     * registers bean definitions as it reads each document instead of parsing it into a DOM first. Streamed documents
+     * aren't validated. This applies from the next refresh. Defaults to false.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Sets the number of threads destroying singletons. Above 1, each singleton is destroyed once every bean depending
+     * on it has been destroyed, so singletons that don't depend on each other are destroyed concurrently, unless
+     * dependencies are circular, in which case they're destroyed sequentially as usual. Defaults to 1.
+     */
+    public void setDestructionParallelism(int destructionParallelism) {
+        this.destructionParallelism = destructionParallelism;
+    }
+
+    public int getDestructionParallelism() {
+        return destructionParallelism;
+    }
+
+    /**
+     * Sets how long concurrent destruction waits for singletons before abandoning those not destroyed yet, which are
+     * then removed without being destroyed. Defaults to 30 seconds.
+     */
+    public void setDestructionTimeoutMillis(long destructionTimeoutMillis) {
+        this.destructionTimeoutMillis = destructionTimeoutMillis;
+    }
+
+    public long getDestructionTimeoutMillis() {
+        return destructionTimeoutMillis;
+    }
+
+    /**
+     * Returns the milliseconds spent destroying each singleton by the latest concurrent destruction, in the order they
+     * finished, or an empty map if singletons were destroyed sequentially.
+     */
+    public Map<String, Long> getDestructionMillis() {
+        return destructionMillis;
+    }
+
+    /**
+     * Drops the metadata kept for the bean definitions and imports loaded by the latest refresh: the source and
+     * resource of every bean definition, the resources recorded for each import and the statistics of each import
+     * location, keeping the totals. The configuration is frozen, and the merged definitions of singletons already
+     * created are forgotten, so type lookups that need them merge them again. The resources bean definitions came
+     * from, and those recorded for each import, are kept when reloading was enabled for the latest refresh. The bean
+     * definitions of a context created from a template keep their metadata, since they share it with the template and
+     * its other contexts.
+     */
+    public void compact() {
+        ConfigurableListableBeanFactory beanFactory = getBeanFactory();
+        boolean keepResources = resourcesRecorded;
+        int count = 0;
+        if (beanFactory instanceof XmlResourceBeanFactory) {
+            count = ((XmlResourceBeanFactory) beanFactory).compact(keepResources, template == null);
+        } else {
+            beanFactory.freezeConfiguration();
+        }
+        importStatistics.clearImports();
+        if (!keepResources) {
+            importedResources = Collections.emptyMap();
+            ImportHelper.forgetImportedResources((BeanDefinitionRegistry) beanFactory);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Compacted " + getDisplayName() + ", forgetting " + count + " merged bean definitions");
+        }
+    }
+
+    /**
+     * Reloads the specified resources, replacing the bean definitions that changed and recreating the singletons
+     * affected. This falls back to a full refresh when the changes can't be applied incrementally, such as when a
+     * resource's imports changed, a post-processor changed, or reloading wasn't enabled for the latest refresh.
+     * Failures are logged rather than thrown, since this is normally called when watched files change.
+     */
+    public void reload(Collection<Resource> changedResources) {
+        synchronized (reloadMonitor) {
+            try {
+                BeanDefinitionReloader reloader = new BeanDefinitionReloader(this,
+                        (DefaultListableBeanFactory) getBeanFactory(), importedResources);
+                if (!resourcesRecorded || !reloader.reload(changedResources)) {
+                    logger.info("Refreshing " + getDisplayName() + " to reload " + changedResources);
+                    refresh();
+                } else {
+                    ++reloadCount;
+                    if (compactAfterRefresh) {
+                        compact();
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.error("Unable to reload " + changedResources, e);
+            }
+        }
+    }
+
+    @Override
+    protected DefaultListableBeanFactory createBeanFactory() {
+        if (instantiationParallelism > 1) {
+            return new ParallelInstantiatingBeanFactory(getInternalParentBeanFactory(), instantiationParallelism,
+                    instantiationTimeoutMillis);
+        }
+        return new XmlResourceBeanFactory(getInternalParentBeanFactory());
+    }
+
+    @Override
+    public Resource getResource(String location) {
+        return resourceLoader == null ? super.getResource(location) : resourceLoader.getResource(location);
+    }
+
+    @Override
+    public Resource[] getResources(String locationPattern) throws IOException {
+        if (resourceLoader instanceof ResourcePatternResolver) {
+            return ((ResourcePatternResolver) resourceLoader).getResources(locationPattern);
+        }
+        return super.getResources(locationPattern);
     }
 
     @Override
     protected Resource[] getConfigResources() {
         return configResources;
     }
+
+    @Override
+    protected void initBeanDefinitionReader(XmlBeanDefinitionReader reader) {
+        super.initBeanDefinitionReader(reader);
+        if (readerEventListener != null) {
+            reader.setEventListener(readerEventListener);
+        }
+        if (reloadEnabled) {
+            reader.setDocumentReaderClass(ResourceRecordingDocumentReader.class);
+        }
+        if (ImportHelper.getImportOptions(reader.getRegistry()).isGrammarCached()) {
+            reader.setDocumentLoader(GrammarCachingDocumentLoader.getSharedInstance());
+        }
+    }
+
+    /**
+     * Creates a reader configured the same way as the one used by a refresh, importing into the registry with this
+     * context's import options.
+     */
+    XmlBeanDefinitionReader createBeanDefinitionReader(BeanDefinitionRegistry registry) {
+        ImportHelper.setImportOptions(registry, importOptions);
+        XmlBeanDefinitionReader reader = streaming ? new StreamingBeanDefinitionReader(registry)
+                : new XmlBeanDefinitionReader(registry);
+        reader.setEnvironment(getEnvironment());
+        reader.setResourceLoader(this);
+        reader.setEntityResolver(new ResourceEntityResolver(this));
+        initBeanDefinitionReader(reader);
+        return reader;
+    }
+
+    @Override
+    protected void loadBeanDefinitions(DefaultListableBeanFactory beanFactory) throws BeansException, IOException {
+        if (template != null) {
+            int count = template.registerBeanDefinitions(beanFactory, templateOverrides,
+                    !getBeanFactoryPostProcessors().isEmpty());
+            importedResources = Collections.emptyMap();
+            resourcesRecorded = false;
+            if (logger.isDebugEnabled()) {
+                logger.debug("Loaded " + count + " bean definitions from template");
+            }
+            return;
+        }
+        BeanDefinitionSnapshot currentSnapshot = snapshot == null ? null : readSnapshot();
+        if (currentSnapshot != null && !currentSnapshot.isStale(this, configResources, getEnvironment())) {
+            int count = currentSnapshot.registerBeanDefinitions(beanFactory);
+            importedResources = Collections.emptyMap();
+            resourcesRecorded = false;
+            if (logger.isDebugEnabled()) {
+                logger.debug("Loaded " + count + " bean definitions from snapshot [" + snapshot + "]");
+            }
+        } else {
+            if (currentSnapshot != null) {
+                logger.info("Snapshot [" + snapshot + "] is stale, loading bean definitions from config resources");
+            }
+            loadBeanDefinitions(createBeanDefinitionReader(beanFactory));
+        }
+    }
+
+    private BeanDefinitionSnapshot readSnapshot() {
+        if (!snapshot.exists()) {
+            logger.info("Snapshot [" + snapshot + "] does not exist, loading bean definitions from config resources");
+            return null;
+        }
+        try {
+            InputStream inputStream = snapshot.getInputStream();
+            try {
+                return BeanDefinitionSnapshot.readFrom(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read snapshot [" + snapshot + "], loading bean definitions from config resources",
+                    e);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the bean definitions into a fresh bean factory without instantiating anything.
+     */
+    ConfigurableListableBeanFactory loadBeanDefinitionsOnly() {
+        refreshBeanFactory();
+        return getBeanFactory();
+    }
+
+    @Override
+    protected void loadBeanDefinitions(XmlBeanDefinitionReader reader) throws BeansException, IOException {
+        final BeanDefinitionRegistry registry = reader.getRegistry();
+        final Map<Resource, Set<Resource>> imports = new LinkedHashMap<Resource, Set<Resource>>();
+        final boolean statisticsCollected = importStatisticsEnabled || importStatisticsExported;
+        final boolean importsRecorded = reloadEnabled;
+        ImportListener importListener = null;
+        if (statisticsCollected || importsRecorded) {
+            importListener = new ImportListener() {
+                public void importCompleted(ImportEvent event) {
+                    if (event.getRegistry() == registry) {
+                        if (statisticsCollected) {
+                            importStatistics.importCompleted(event);
+                        }
+                        if (importsRecorded) {
+                            recordImport(imports, event);
+                        }
+                    }
+                }
+            };
+            ImportHelper.addImportListener(importListener);
+        }
+        importStatistics.reset();
+        try {
+            for (Resource configResource : configResources) {
+                ImportHelper.loadBeanDefinitions(reader, configResource);
+            }
+        } finally {
+            if (importListener != null) {
+                ImportHelper.removeImportListener(importListener);
+            }
+        }
+        int duplicateCount = ImportHelper.getDuplicateImportCount(registry);
+        if (duplicateCount > 0 && logger.isInfoEnabled()) {
+            logger.info("Skipped " + duplicateCount + " imports of resources already imported into "
+                    + getDisplayName());
+        }
+        importedResources = imports;
+        resourcesRecorded = importsRecorded;
+        if (importStatisticsExported) {
+            exportImportStatistics();
+        }
+    }
+
+    static void recordImport(Map<Resource, Set<Resource>> imports, ImportEvent event) {
+        Set<Resource> resources = imports.get(event.getSourceResource());
+        if (resources == null) {
+            resources = new LinkedHashSet<Resource>();
+            imports.put(event.getSourceResource(), resources);
+        }
+        resources.addAll(event.getResources());
+    }
+
+    @Override
+    protected void finishRefresh() {
+        super.finishRefresh();
+        if (reloadEnabled) {
+            watchLoadedResources();
+        }
+        if (compactAfterRefresh) {
+            compact();
+        }
+    }
+
+    private synchronized void watchLoadedResources() {
+        if (reloadWatcher == null) {
+            try {
+                reloadWatcher = new ConfigResourceWatcher(this, RELOAD_QUIET_PERIOD_MILLIS);
+            } catch (IOException e) {
+                logger.warn("Unable to watch config resources of " + getDisplayName() + " for changes", e);
+                return;
+            }
+        }
+        Set<Resource> loadedResources = new LinkedHashSet<Resource>();
+        Collections.addAll(loadedResources, configResources);
+        for (Set<Resource> resources : importedResources.values()) {
+            loadedResources.addAll(resources);
+        }
+        reloadWatcher.watch(loadedResources);
+        reloadWatcher.start();
+    }
+
+    private synchronized void exportImportStatistics() {
+        if (importStatisticsName == null) {
+            try {
+                ObjectName name = new ObjectName(IMPORT_STATISTICS_DOMAIN + ":type=ImportStatistics,context="
+                        + ObjectName.quote(getId()));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(importStatistics, name);
+                importStatisticsName = name;
+            } catch (JMException e) {
+                logger.warn("Unable to export import statistics for " + getDisplayName(), e);
+            }
+        }
+    }
+
+    @Override
+    protected void destroyBeans() {
+        ConfigurableListableBeanFactory beanFactory = getBeanFactory();
+        if (destructionParallelism > 1 && beanFactory instanceof XmlResourceBeanFactory) {
+            destructionMillis = Collections.unmodifiableMap(((XmlResourceBeanFactory) beanFactory).destroySingletons(
+                    destructionParallelism, destructionTimeoutMillis));
+        } else {
+            destructionMillis = Collections.emptyMap();
+            super.destroyBeans();
+        }
+    }
+
+    @Override
+    protected void onClose() {
+        super.onClose();
+        unexportImportStatistics();
+        stopWatching();
+    }
+
+    private synchronized void stopWatching() {
+        if (reloadWatcher != null) {
+            reloadWatcher.close();
+            reloadWatcher = null;
+        }
+    }
+
+    private synchronized void unexportImportStatistics() {
+        if (importStatisticsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(importStatisticsName);
+            } catch (JMException e) {
+                logger.warn("Unable to unexport import statistics for " + getDisplayName(), e);
+            }
+            importStatisticsName = null;
+        }
+    }
     
     private Resource[] normalize(Object[] resources) {
         Resource[] results = new Resource[resources.length];
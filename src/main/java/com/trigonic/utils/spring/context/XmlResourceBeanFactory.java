@@ -0,0 +1,433 @@
+package com.trigonic.utils.spring.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.BeanMetadataAttribute;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.BeanCreationNotAllowedException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueHolder;
+import org.springframework.beans.factory.config.RuntimeBeanNameReference;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.config.TypedStringValue;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.ManagedList;
+import org.springframework.beans.factory.support.ManagedMap;
+import org.springframework.beans.factory.support.ManagedProperties;
+import org.springframework.beans.factory.support.ManagedSet;
+
+/**
+ * The bean factory of an {@link XmlResourceApplicationContext}, which can {@link #compact(boolean) trim} the metadata
+ * kept by its bean definitions once the context has been refreshed, and
+ * {@link #destroySingletons(int, long) destroy} its singletons concurrently.
+ *
+ * <p>
+ * The merged definition of a singleton is only needed to create it, so compacting forgets the merged definitions of
+ * the singletons already created, along with the converted property values and resolved constructors cached in them.
+ * Type lookups that need one again merge it without caching it. Factory beans keep theirs, since it's needed each time
+ * their product is requested.
+ *
+ * <p>
+ * Singletons are destroyed concurrently in reverse dependency order: a singleton is only destroyed once every bean
+ * that depends on it, through its references, <tt>depends-on</tt> or the inner beans it contains, has been destroyed,
+ * rather than one after another in the reverse of the order they were registered in. As with sequential destruction,
+ * no singletons can be created while they're being destroyed.
+ */
+class XmlResourceBeanFactory extends DefaultListableBeanFactory {
+    private static final long serialVersionUID = 1L;
+
+    private volatile boolean singletonsInDestruction;
+    private final Set<String> compactedBeanNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> abandonedBeanNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    XmlResourceBeanFactory(BeanFactory parentBeanFactory) {
+        super(parentBeanFactory);
+    }
+
+    /**
+     * Freezes the configuration, drops the source of every bean definition and value along with the resource each
+     * definition came from, unless <tt>keepResources</tt>, and forgets the merged definitions of the singletons
+     * already created. Other merged definitions are dropped too, but cached again once merged from the stripped
+     * definition.
+     *
+     * @param stripped whether the metadata of the bean definitions is dropped, which must not be done when they share
+     * it with definitions registered elsewhere
+     * @return the number of singletons whose merged definitions are no longer cached
+     */
+    int compact(boolean keepResources, boolean stripped) {
+        freezeConfiguration();
+        int count = 0;
+        for (String beanName : getBeanDefinitionNames()) {
+            if (stripped) {
+                stripMetadata(getBeanDefinition(beanName), keepResources);
+            }
+            if (containsSingleton(beanName) && !(getSingleton(beanName) instanceof FactoryBean)
+                    && compactedBeanNames.add(beanName)) {
+                ++count;
+            }
+            // the others are merged again from the stripped definition when next needed
+            clearMergedBeanDefinition(beanName);
+        }
+        return count;
+    }
+
+    @Override
+    protected boolean isBeanEligibleForMetadataCaching(String beanName) {
+        return !compactedBeanNames.contains(beanName) && super.isBeanEligibleForMetadataCaching(beanName);
+    }
+
+    @Override
+    protected void resetBeanDefinition(String beanName) {
+        compactedBeanNames.remove(beanName);
+        super.resetBeanDefinition(beanName);
+    }
+
+    /**
+     * Refuses to create singletons while they're being destroyed. The registry only does so itself during its own
+     * sequential destruction, which starts after the concurrent destruction has finished.
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Object getSingleton(String beanName, ObjectFactory singletonFactory) {
+        checkCreationAllowed(beanName);
+        return super.getSingleton(beanName, singletonFactory);
+    }
+
+    void checkCreationAllowed(String beanName) {
+        if (singletonsInDestruction && !containsSingleton(beanName)) {
+            throw new BeanCreationNotAllowedException(beanName, "Singleton bean creation not allowed while the "
+                    + "singletons of this factory are in destruction (Do not request a bean from a BeanFactory in a "
+                    + "destroy method implementation!)");
+        }
+    }
+
+    @Override
+    public void destroySingletons() {
+        singletonsInDestruction = true;
+        try {
+            super.destroySingletons();
+        } finally {
+            singletonsInDestruction = false;
+        }
+    }
+
+    /**
+     * Destroys singletons concurrently on a pool of the specified size, then anything left, such as inner beans,
+     * sequentially as usual. Once the timeout elapses, singletons still being destroyed are left to finish on their
+     * own, and those not yet destroyed are removed without being destroyed. Falls back to the usual sequential
+     * destruction if dependencies between singletons are circular.
+     *
+     * @return the milliseconds spent destroying each singleton destroyed concurrently, in the order they finished
+     */
+    Map<String, Long> destroySingletons(int parallelism, long timeoutMillis) {
+        singletonsInDestruction = true;
+        Map<String, Long> destructionMillis = Collections.emptyMap();
+        try {
+            Map<String, Set<String>> dependents = buildDestructionGraph();
+            if (dependents != null) {
+                if (logger.isInfoEnabled()) {
+                    logger.info("Destroying " + dependents.size() + " singletons in parallel in " + this);
+                }
+                long startMillis = System.currentTimeMillis();
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    destructionMillis = new Destruction(dependents, pool).run(timeoutMillis);
+                } finally {
+                    pool.shutdownNow();
+                }
+                if (logger.isInfoEnabled()) {
+                    logger.info("Destroyed " + destructionMillis.size() + " singletons in "
+                            + (System.currentTimeMillis() - startMillis) + "ms, slowest: "
+                            + getSlowest(destructionMillis));
+                }
+            }
+        } finally {
+            try {
+                destroySingletons();
+            } finally {
+                abandonedBeanNames.clear();
+            }
+        }
+        return destructionMillis;
+    }
+
+    @Override
+    protected void destroyBean(String beanName, DisposableBean bean) {
+        if (bean != null && abandonedBeanNames.contains(beanName)) {
+            logger.warn("Abandoned destruction of bean '" + beanName + "' after the destruction timeout elapsed");
+            bean = null;
+        }
+        super.destroyBean(beanName, bean);
+    }
+
+    /**
+     * Maps each singleton to the singletons that must be destroyed before it.
+     *
+     * @return the graph, or null if the singletons should be destroyed sequentially
+     */
+    private Map<String, Set<String>> buildDestructionGraph() {
+        Set<String> singletonNames = new LinkedHashSet<String>(Arrays.asList(getSingletonNames()));
+        Map<String, Set<String>> graph = new LinkedHashMap<String, Set<String>>();
+        for (String beanName : singletonNames) {
+            Set<String> dependents = new LinkedHashSet<String>();
+            Set<String> visited = new HashSet<String>();
+            visited.add(beanName);
+            collectDependents(beanName, singletonNames, visited, dependents);
+            graph.put(beanName, dependents);
+        }
+        if (graph.size() < 2) {
+            return null;
+        }
+        if (hasCycle(graph)) {
+            logger.debug("Destroying sequentially: singletons have circular dependencies");
+            return null;
+        }
+        return graph;
+    }
+
+    /**
+     * Adds the singletons depending on the bean, following inner beans, which aren't singletons themselves, to the
+     * beans containing them.
+     */
+    private void collectDependents(String beanName, Set<String> singletonNames, Set<String> visited,
+            Set<String> dependents) {
+        for (String dependent : getDependentBeans(beanName)) {
+            if (singletonNames.contains(dependent)) {
+                dependents.add(dependent);
+            } else if (visited.add(dependent)) {
+                collectDependents(dependent, singletonNames, visited, dependents);
+            }
+        }
+    }
+
+    private static String getSlowest(Map<String, Long> destructionMillis) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(destructionMillis.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            public int compare(Map.Entry<String, Long> entry1, Map.Entry<String, Long> entry2) {
+                return entry2.getValue().compareTo(entry1.getValue());
+            }
+        });
+        StringBuilder slowest = new StringBuilder();
+        for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(5, entries.size()))) {
+            slowest.append(slowest.length() == 0 ? "" : ", ").append(entry.getKey()).append(" (")
+                    .append(entry.getValue()).append("ms)");
+        }
+        return slowest.toString();
+    }
+
+    /**
+     * Determines whether the graph, mapping each bean to the beans that must be handled before it, can't be ordered.
+     */
+    static boolean hasCycle(Map<String, Set<String>> dependencies) {
+        Map<String, Integer> remaining = new HashMap<String, Integer>();
+        List<String> ready = new ArrayList<String>();
+        Map<String, List<String>> dependents = getDependents(dependencies);
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            remaining.put(entry.getKey(), entry.getValue().size());
+            if (entry.getValue().isEmpty()) {
+                ready.add(entry.getKey());
+            }
+        }
+        int ordered = 0;
+        while (ordered < ready.size()) {
+            for (String dependent : dependents.get(ready.get(ordered++))) {
+                int count = remaining.get(dependent) - 1;
+                remaining.put(dependent, count);
+                if (count == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        return ordered < dependencies.size();
+    }
+
+    /**
+     * Inverts the graph, mapping each bean to the beans that can only be handled after it.
+     */
+    static Map<String, List<String>> getDependents(Map<String, Set<String>> dependencies) {
+        Map<String, List<String>> dependents = new LinkedHashMap<String, List<String>>();
+        for (String beanName : dependencies.keySet()) {
+            dependents.put(beanName, new ArrayList<String>());
+        }
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            for (String dependency : entry.getValue()) {
+                dependents.get(dependency).add(entry.getKey());
+            }
+        }
+        return dependents;
+    }
+
+    private static void stripMetadata(BeanDefinition beanDefinition, boolean keepResources) {
+        if (beanDefinition instanceof AbstractBeanDefinition) {
+            AbstractBeanDefinition abstractBeanDefinition = (AbstractBeanDefinition) beanDefinition;
+            abstractBeanDefinition.setSource(null);
+            if (!keepResources) {
+                abstractBeanDefinition.setResource(null);
+            }
+            for (String attributeName : abstractBeanDefinition.attributeNames()) {
+                BeanMetadataAttribute attribute = abstractBeanDefinition.getMetadataAttribute(attributeName);
+                if (attribute != null) {
+                    attribute.setSource(null);
+                }
+            }
+        }
+        for (PropertyValue propertyValue : beanDefinition.getPropertyValues().getPropertyValues()) {
+            propertyValue.setSource(null);
+            stripMetadata(propertyValue.getValue(), keepResources);
+        }
+        for (ValueHolder valueHolder : beanDefinition.getConstructorArgumentValues().getIndexedArgumentValues()
+                .values()) {
+            valueHolder.setSource(null);
+            stripMetadata(valueHolder.getValue(), keepResources);
+        }
+        for (ValueHolder valueHolder : beanDefinition.getConstructorArgumentValues().getGenericArgumentValues()) {
+            valueHolder.setSource(null);
+            stripMetadata(valueHolder.getValue(), keepResources);
+        }
+    }
+
+    private static void stripMetadata(Object value, boolean keepResources) {
+        if (value instanceof TypedStringValue) {
+            ((TypedStringValue) value).setSource(null);
+        } else if (value instanceof RuntimeBeanReference) {
+            ((RuntimeBeanReference) value).setSource(null);
+        } else if (value instanceof RuntimeBeanNameReference) {
+            ((RuntimeBeanNameReference) value).setSource(null);
+        } else if (value instanceof BeanDefinitionHolder) {
+            stripMetadata(((BeanDefinitionHolder) value).getBeanDefinition(), keepResources);
+        } else if (value instanceof BeanDefinition) {
+            stripMetadata((BeanDefinition) value, keepResources);
+        }
+
+        if (value instanceof ManagedList) {
+            ((ManagedList<?>) value).setSource(null);
+        } else if (value instanceof ManagedSet) {
+            ((ManagedSet<?>) value).setSource(null);
+        } else if (value instanceof ManagedMap) {
+            ((ManagedMap<?, ?>) value).setSource(null);
+        } else if (value instanceof ManagedProperties) {
+            ((ManagedProperties) value).setSource(null);
+        }
+        if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                stripMetadata(element, keepResources);
+            }
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                stripMetadata(entry.getKey(), keepResources);
+                stripMetadata(entry.getValue(), keepResources);
+            }
+        }
+    }
+
+    /**
+     * Submits each singleton once the singletons depending on it have been destroyed, and waits for all of them or
+     * the timeout.
+     */
+    private class Destruction {
+        private final Map<String, List<String>> waiting;
+        private final Map<String, Integer> remaining = new HashMap<String, Integer>();
+        private final Map<String, Long> destructionMillis = new LinkedHashMap<String, Long>();
+        private final ForkJoinPool pool;
+        private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        private int running;
+        private boolean abandoned;
+
+        Destruction(Map<String, Set<String>> dependents, ForkJoinPool pool) {
+            this.waiting = getDependents(dependents);
+            this.pool = pool;
+            for (Map.Entry<String, Set<String>> entry : dependents.entrySet()) {
+                remaining.put(entry.getKey(), entry.getValue().size());
+            }
+        }
+
+        synchronized Map<String, Long> run(long timeoutMillis) {
+            for (Map.Entry<String, Integer> entry : remaining.entrySet()) {
+                if (entry.getValue() == 0) {
+                    submit(entry.getKey());
+                }
+            }
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            try {
+                long waitMillis = timeoutMillis;
+                while (running > 0 && waitMillis > 0) {
+                    wait(waitMillis);
+                    waitMillis = deadline - System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (destructionMillis.size() < waiting.size()) {
+                abandon();
+            }
+            return new LinkedHashMap<String, Long>(destructionMillis);
+        }
+
+        private void abandon() {
+            abandoned = true;
+            for (String beanName : waiting.keySet()) {
+                if (!destructionMillis.containsKey(beanName)) {
+                    abandonedBeanNames.add(beanName);
+                }
+            }
+            logger.warn("Destruction timed out with " + abandonedBeanNames.size() + " singletons left: "
+                    + abandonedBeanNames);
+        }
+
+        private void submit(final String beanName) {
+            ++running;
+            pool.execute(new Runnable() {
+                public void run() {
+                    Thread thread = Thread.currentThread();
+                    ClassLoader previousClassLoader = thread.getContextClassLoader();
+                    thread.setContextClassLoader(contextClassLoader);
+                    long startNanos = System.nanoTime();
+                    try {
+                        destroySingleton(beanName);
+                    } finally {
+                        thread.setContextClassLoader(previousClassLoader);
+                        completed(beanName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                    }
+                }
+            });
+        }
+
+        private synchronized void completed(String beanName, long millis) {
+            --running;
+            destructionMillis.put(beanName, millis);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Destroyed singleton '" + beanName + "' in " + millis + "ms");
+            }
+            if (!abandoned) {
+                for (String next : waiting.get(beanName)) {
+                    int count = remaining.get(next) - 1;
+                    remaining.put(next, count);
+                    if (count == 0) {
+                        submit(next);
+                    }
+                }
+            }
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.trigonic.utils.spring.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.Resource;
+
+/**
+ * A bounded, least-recently-used pool of refreshed {@link XmlResourceApplicationContext contexts}, so that test suites
+ * setting up the same configuration over and over reuse a live context instead of loading and refreshing it again.
+ * Contexts are keyed by their normalized config resources and their parent, which is compared by identity.
+ *
+ * <p>
+ * A test that modifies its context should {@link #markDirty(ApplicationContext) mark it dirty}, which closes it so that
+ * the next request for the same configuration gets a new one. Evicted contexts are closed too, as are those still
+ * pooled by the {@link #getSharedInstance() shared instance} when the JVM shuts down. A pooled context closed by
+ * anything else is replaced on the next request.
+ */
+public class XmlResourceContextPool {
+    private static final Log logger = LogFactory.getLog(XmlResourceContextPool.class);
+
+    private static final int DEFAULT_MAX_SIZE = 16;
+    private static final XmlResourceContextPool sharedInstance = new XmlResourceContextPool(DEFAULT_MAX_SIZE);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("XmlResourceContextPool shutdown") {
+            @Override
+            public void run() {
+                sharedInstance.clear();
+            }
+        });
+    }
+
+    private final Map<PoolKey, XmlResourceApplicationContext> contexts =
+            new LinkedHashMap<PoolKey, XmlResourceApplicationContext>(16, 0.75f, true);
+    private volatile int maxSize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public XmlResourceContextPool(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Returns the pool shared across the JVM, which holds up to 16 contexts unless
+     * {@link #setMaxSize(int) resized}.
+     */
+    public static XmlResourceContextPool getSharedInstance() {
+        return sharedInstance;
+    }
+
+    /**
+     * Sets the maximum number of contexts retained, where zero disables pooling. Shrinking the pool evicts and closes
+     * the least-recently-used contexts immediately.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative");
+        }
+        this.maxSize = maxSize;
+        List<XmlResourceApplicationContext> evicted;
+        synchronized (contexts) {
+            evicted = evictEldest();
+        }
+        close(evicted);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getSize() {
+        synchronized (contexts) {
+            return contexts.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the pooled context for the config resources, which may be anything {@link XmlResourceApplicationContext}
+     * accepts, and parent, creating and refreshing one if none is pooled. Callers must not close the context
+     * themselves; a context that's no longer fit for reuse should be {@link #markDirty(ApplicationContext) marked
+     * dirty} instead.
+     */
+    public XmlResourceApplicationContext getContext(ApplicationContext parent, Object... configResources) {
+        // an unrefreshed context normalizes the config resources the same way a refreshed one would
+        XmlResourceApplicationContext created = new XmlResourceApplicationContext(configResources, false, parent);
+        PoolKey key = new PoolKey(parent, created.getConfigResources());
+        XmlResourceApplicationContext pooled = getPooled(key);
+        if (pooled != null) {
+            hitCount.incrementAndGet();
+            return pooled;
+        }
+
+        missCount.incrementAndGet();
+        created.refresh();
+        if (maxSize == 0) {
+            return created;
+        }
+        List<XmlResourceApplicationContext> evicted;
+        synchronized (contexts) {
+            pooled = contexts.get(key);
+            if (pooled != null && pooled.isActive()) {
+                // another thread pooled the same configuration meanwhile
+                evicted = Arrays.asList(created);
+                created = pooled;
+            } else {
+                contexts.put(key, created);
+                evicted = evictEldest();
+            }
+        }
+        close(evicted);
+        return created;
+    }
+
+    private XmlResourceApplicationContext getPooled(PoolKey key) {
+        synchronized (contexts) {
+            XmlResourceApplicationContext pooled = contexts.get(key);
+            if (pooled != null && !pooled.isActive()) {
+                contexts.remove(key);
+                pooled = null;
+            }
+            return pooled;
+        }
+    }
+
+    /**
+     * Removes the context from the pool and closes it, so the next request for its configuration creates a new one.
+     *
+     * @return whether the context was pooled
+     */
+    public boolean markDirty(ApplicationContext context) {
+        List<XmlResourceApplicationContext> removed = new ArrayList<XmlResourceApplicationContext>();
+        synchronized (contexts) {
+            for (Iterator<XmlResourceApplicationContext> i = contexts.values().iterator(); i.hasNext();) {
+                XmlResourceApplicationContext pooled = i.next();
+                if (pooled == context) {
+                    i.remove();
+                    removed.add(pooled);
+                    break;
+                }
+            }
+        }
+        close(removed);
+        return !removed.isEmpty();
+    }
+
+    /**
+     * Removes every context from the pool and closes it.
+     */
+    public void clear() {
+        List<XmlResourceApplicationContext> removed;
+        synchronized (contexts) {
+            removed = new ArrayList<XmlResourceApplicationContext>(contexts.values());
+            contexts.clear();
+        }
+        close(removed);
+    }
+
+    private List<XmlResourceApplicationContext> evictEldest() {
+        List<XmlResourceApplicationContext> evicted = new ArrayList<XmlResourceApplicationContext>();
+        for (Iterator<XmlResourceApplicationContext> i = contexts.values().iterator(); contexts.size() > maxSize;) {
+            evicted.add(i.next());
+            i.remove();
+            evictionCount.incrementAndGet();
+        }
+        return evicted;
+    }
+
+    private static void close(List<XmlResourceApplicationContext> closed) {
+        for (XmlResourceApplicationContext context : closed) {
+            try {
+                context.close();
+            } catch (RuntimeException e) {
+                logger.warn("Unable to close pooled context " + context.getDisplayName(), e);
+            }
+        }
+    }
+
+    private static class PoolKey {
+        private final ApplicationContext parent;
+        private final Resource[] configResources;
+
+        PoolKey(ApplicationContext parent, Resource[] configResources) {
+            this.parent = parent;
+            this.configResources = configResources;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) obj;
+            return parent == other.parent && Arrays.equals(configResources, other.configResources);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(parent) * 31 + Arrays.hashCode(configResources);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.trigonic.utils.spring.context;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueHolder;
+import org.springframework.beans.factory.config.TypedStringValue;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.ManagedArray;
+import org.springframework.beans.factory.support.ManagedList;
+import org.springframework.beans.factory.support.ManagedMap;
+import org.springframework.beans.factory.support.ManagedProperties;
+import org.springframework.beans.factory.support.ManagedSet;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.Resource;
+
+/**
+ * The bean definitions parsed once from a set of config resources, from which any number of sibling
+ * {@link XmlResourceApplicationContext contexts} can be {@link XmlResourceApplicationContext#fromTemplate created}
+ * without resolving or parsing the resources again, each with its own property overrides.
+ *
+ * <p>
+ * Siblings share the template's bean definitions until they'd be modified: a definition with overrides is copied
+ * first, and all of them are copied when the template or the context declares a {@link BeanFactoryPostProcessor},
+ * since post-processors such as placeholder configurers modify definitions in place. The profiles active while parsing
+ * the template apply to every sibling.
+ */
+public class XmlResourceContextTemplate {
+    private static final Log logger = LogFactory.getLog(XmlResourceContextTemplate.class);
+
+    private final Resource[] configResources;
+    private final Map<String, BeanDefinition> beanDefinitions = new LinkedHashMap<String, BeanDefinition>();
+    private final Map<String, String> aliases = new LinkedHashMap<String, String>();
+    private final boolean postProcessed;
+
+    /**
+     * Parses the specified config resources, which may be anything {@link XmlResourceApplicationContext} accepts.
+     */
+    public XmlResourceContextTemplate(Object... configResources) {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(null, configResources, null,
+                false);
+        ConfigurableListableBeanFactory beanFactory = appContext.loadBeanDefinitionsOnly();
+        this.configResources = appContext.getConfigResources();
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            beanDefinitions.put(beanName, beanFactory.getBeanDefinition(beanName));
+            for (String alias : beanFactory.getAliases(beanName)) {
+                aliases.put(alias, beanName);
+            }
+        }
+        postProcessed = beanFactory.getBeanNamesForType(BeanFactoryPostProcessor.class, true, false).length > 0;
+    }
+
+    Resource[] getConfigResources() {
+        return configResources;
+    }
+
+    public int getBeanDefinitionCount() {
+        return beanDefinitions.size();
+    }
+
+    /**
+     * Creates and refreshes a sibling context.
+     *
+     * @param overrides property values by <tt>beanName.property</tt>, as for a
+     * {@link org.springframework.beans.factory.config.PropertyOverrideConfigurer}, or null
+     */
+    public XmlResourceApplicationContext createContext(ApplicationContext parent, Properties overrides) {
+        return XmlResourceApplicationContext.fromTemplate(this, parent, overrides);
+    }
+
+    /**
+     * Registers the template's bean definitions and aliases, applying the overrides.
+     *
+     * @param copied whether every definition must be copied rather than shared, because the context declares
+     * post-processors of its own
+     * @return the number of bean definitions registered
+     */
+    int registerBeanDefinitions(BeanDefinitionRegistry registry, Properties overrides, boolean copied)
+            throws BeansException {
+        boolean copyAll = copied || postProcessed;
+        Map<String, BeanDefinition> registered = new LinkedHashMap<String, BeanDefinition>(beanDefinitions);
+        if (copyAll) {
+            for (Map.Entry<String, BeanDefinition> entry : registered.entrySet()) {
+                entry.setValue(copy(entry.getValue()));
+            }
+        }
+        if (overrides != null) {
+            for (String key : overrides.stringPropertyNames()) {
+                applyOverride(registered, key, overrides.getProperty(key), copyAll);
+            }
+        }
+
+        for (Map.Entry<String, BeanDefinition> entry : registered.entrySet()) {
+            registry.registerBeanDefinition(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : aliases.entrySet()) {
+            registry.registerAlias(entry.getValue(), entry.getKey());
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Registered " + registered.size() + " bean definitions from template, "
+                    + (copyAll ? "copying all of them" : "sharing those without overrides"));
+        }
+        return registered.size();
+    }
+
+    private void applyOverride(Map<String, BeanDefinition> registered, String key, String value, boolean copied) {
+        int separatorIndex = key.indexOf('.');
+        if (separatorIndex == -1) {
+            throw new BeanInitializationException("Invalid key '" + key + "': expected 'beanName.property'");
+        }
+        String beanName = key.substring(0, separatorIndex);
+        BeanDefinition beanDefinition = registered.get(beanName);
+        if (beanDefinition == null) {
+            throw new BeanInitializationException("Invalid key '" + key + "': no bean named '" + beanName + "'");
+        }
+        if (!copied && beanDefinition == beanDefinitions.get(beanName)) {
+            // only the property values are modified, so the values themselves can still be shared
+            beanDefinition = ((AbstractBeanDefinition) beanDefinition).cloneBeanDefinition();
+            registered.put(beanName, beanDefinition);
+        }
+        beanDefinition.getPropertyValues().addPropertyValue(new PropertyValue(key.substring(separatorIndex + 1),
+                value));
+    }
+
+    /**
+     * Copies the bean definition along with every value that post-processors could modify in place.
+     */
+    private static BeanDefinition copy(BeanDefinition beanDefinition) {
+        if (!(beanDefinition instanceof AbstractBeanDefinition)) {
+            throw new IllegalArgumentException("Unable to copy bean definition of type "
+                    + beanDefinition.getClass().getName());
+        }
+        AbstractBeanDefinition copy = ((AbstractBeanDefinition) beanDefinition).cloneBeanDefinition();
+        MutablePropertyValues propertyValues = new MutablePropertyValues();
+        for (PropertyValue propertyValue : copy.getPropertyValues().getPropertyValues()) {
+            propertyValues.addPropertyValue(new PropertyValue(propertyValue, copyValue(propertyValue.getValue())));
+        }
+        copy.setPropertyValues(propertyValues);
+        for (ValueHolder valueHolder : copy.getConstructorArgumentValues().getIndexedArgumentValues().values()) {
+            valueHolder.setValue(copyValue(valueHolder.getValue()));
+        }
+        for (ValueHolder valueHolder : copy.getConstructorArgumentValues().getGenericArgumentValues()) {
+            valueHolder.setValue(copyValue(valueHolder.getValue()));
+        }
+        return copy;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof TypedStringValue) {
+            TypedStringValue typedValue = (TypedStringValue) value;
+            TypedStringValue copy = new TypedStringValue(typedValue.getValue());
+            copy.setTargetTypeName(typedValue.getTargetTypeName());
+            copy.setSpecifiedTypeName(typedValue.getSpecifiedTypeName());
+            copy.setSource(typedValue.getSource());
+            if (typedValue.isDynamic()) {
+                copy.setDynamic();
+            }
+            return copy;
+        } else if (value instanceof BeanDefinitionHolder) {
+            BeanDefinitionHolder holder = (BeanDefinitionHolder) value;
+            return new BeanDefinitionHolder(copy(holder.getBeanDefinition()), holder.getBeanName(),
+                    holder.getAliases());
+        } else if (value instanceof BeanDefinition) {
+            return copy((BeanDefinition) value);
+        } else if (value instanceof ManagedArray) {
+            ManagedArray array = (ManagedArray) value;
+            ManagedArray copy = new ManagedArray(array.getElementTypeName(), array.size());
+            copy.setMergeEnabled(array.isMergeEnabled());
+            copy.setSource(array.getSource());
+            for (Object element : array) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        } else if (value instanceof ManagedList) {
+            ManagedList<?> list = (ManagedList<?>) value;
+            ManagedList<Object> copy = new ManagedList<Object>(list.size());
+            copy.setElementTypeName(list.getElementTypeName());
+            copy.setMergeEnabled(list.isMergeEnabled());
+            copy.setSource(list.getSource());
+            for (Object element : list) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        } else if (value instanceof ManagedSet) {
+            ManagedSet<?> set = (ManagedSet<?>) value;
+            ManagedSet<Object> copy = new ManagedSet<Object>(set.size());
+            copy.setElementTypeName(set.getElementTypeName());
+            copy.setMergeEnabled(set.isMergeEnabled());
+            copy.setSource(set.getSource());
+            for (Object element : set) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        } else if (value instanceof ManagedMap) {
+            ManagedMap<?, ?> map = (ManagedMap<?, ?>) value;
+            ManagedMap<Object, Object> copy = new ManagedMap<Object, Object>(map.size());
+            copy.setKeyTypeName(map.getKeyTypeName());
+            copy.setValueTypeName(map.getValueTypeName());
+            copy.setMergeEnabled(map.isMergeEnabled());
+            copy.setSource(map.getSource());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(copyValue(entry.getKey()), copyValue(entry.getValue()));
+            }
+            return copy;
+        } else if (value instanceof ManagedProperties) {
+            ManagedProperties properties = (ManagedProperties) value;
+            ManagedProperties copy = new ManagedProperties();
+            copy.setMergeEnabled(properties.isMergeEnabled());
+            copy.setSource(properties.getSource());
+            for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+                copy.put(copyValue(entry.getKey()), copyValue(entry.getValue()));
+            }
+            return copy;
+        }
+        // references and plain values aren't modified by post-processors
+        return value;
+    }
+}
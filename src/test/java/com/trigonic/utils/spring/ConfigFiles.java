@@ -0,0 +1,57 @@
+package com.trigonic.utils.spring;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes the config files that tests change while they run or generate, which can't be checked-in fixtures.
+ */
+public class ConfigFiles {
+    private static final String BEANS_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<beans xmlns=\"http://www.springframework.org/schema/beans\"\n"
+            + "    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n"
+            + "    xmlns:xutils=\"http://trigonic.com/schema/spring/xutils\"\n"
+            + "    xsi:schemaLocation=\"\n"
+            + "       http://www.springframework.org/schema/beans"
+            + " http://www.springframework.org/schema/beans/spring-beans-3.0.xsd\n"
+            + "       http://trigonic.com/schema/spring/xutils http://trigonic.com/schema/spring/xutils.xsd\"";
+
+    /**
+     * Returns a beans document containing the elements, with the beans and xutils namespaces declared.
+     */
+    public static String beans(String elements) {
+        return beans("", elements);
+    }
+
+    /**
+     * Returns a beans document containing the elements, with the attributes added to its root element.
+     */
+    public static String beans(String rootAttributes, String elements) {
+        return BEANS_HEADER + (rootAttributes.length() == 0 ? "" : " " + rootAttributes) + ">\n" + elements
+                + "\n</beans>\n";
+    }
+
+    public static void writeBeans(File file, String elements) throws IOException {
+        write(file, beans(elements));
+    }
+
+    public static void writeBeans(File file, String rootAttributes, String elements) throws IOException {
+        write(file, beans(rootAttributes, elements));
+    }
+
+    /**
+     * Writes the content to the file in UTF-8, creating its directory if needed.
+     */
+    public static void write(File file, String content) throws IOException {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
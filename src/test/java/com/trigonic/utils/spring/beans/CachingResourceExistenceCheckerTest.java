@@ -0,0 +1,57 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.easymock.EasyMock.createControl;
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.IMocksControl;
+import org.junit.Test;
+import org.springframework.core.io.Resource;
+
+public class CachingResourceExistenceCheckerTest {
+    @Test
+    public void remembersMissing() {
+        IMocksControl mockControl = createControl();
+        Resource mockResource = mockControl.createMock(Resource.class);
+        expect(mockResource.exists()).andReturn(false).once();
+        mockControl.replay();
+
+        CachingResourceExistenceChecker checker = new CachingResourceExistenceChecker();
+        assertFalse(checker.exists(mockResource));
+        assertFalse(checker.exists(mockResource));
+        mockControl.verify();
+    }
+
+    @Test
+    public void invalidate() {
+        IMocksControl mockControl = createControl();
+        Resource mockResource = mockControl.createMock(Resource.class);
+        expect(mockResource.exists()).andReturn(false).once();
+        expect(mockResource.exists()).andReturn(true).once();
+        mockControl.replay();
+
+        CachingResourceExistenceChecker checker = new CachingResourceExistenceChecker();
+        assertFalse(checker.exists(mockResource));
+        checker.invalidate(mockResource);
+        assertTrue(checker.exists(mockResource));
+        assertTrue(checker.exists(mockResource));
+        mockControl.verify();
+    }
+
+    @Test
+    public void expires() throws InterruptedException {
+        IMocksControl mockControl = createControl();
+        Resource mockResource = mockControl.createMock(Resource.class);
+        expect(mockResource.exists()).andReturn(true).times(2);
+        mockControl.replay();
+
+        CachingResourceExistenceChecker checker = new CachingResourceExistenceChecker(1, TimeUnit.MILLISECONDS);
+        assertTrue(checker.exists(mockResource));
+        Thread.sleep(5);
+        assertTrue(checker.exists(mockResource));
+        mockControl.verify();
+    }
+}
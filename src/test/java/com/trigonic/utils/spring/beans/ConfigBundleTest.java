@@ -0,0 +1,140 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import com.trigonic.utils.spring.ConfigFiles;
+import com.trigonic.utils.spring.context.BeanDefinitionSnapshotCompiler;
+import com.trigonic.utils.spring.context.XmlResourceApplicationContext;
+
+public class ConfigBundleTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File configDir;
+    private File bundleFile;
+
+    @Before
+    public void setUp() throws IOException {
+        configDir = tempFolder.newFolder("config");
+        bundleFile = new File(tempFolder.getRoot(), "config.bundle");
+    }
+
+    @After
+    public void tearDown() {
+        ImportHelper.setDeduplicated(false);
+    }
+
+    @Test
+    public void loadsContextFromBundle() throws IOException {
+        ConfigFiles.writeBeans(new File(configDir, "app.xml"), "<xutils:import resource=\"modules/first.xml\" />\n"
+                + "<xutils:import resource=\"bundle:modules/*-pattern.xml\" />\n"
+                + "<xutils:import resource=\"modules/missing.xml\" optional=\"true\" />\n"
+                + "<bean id=\"holder\" class=\"java.util.ArrayList\"><constructor-arg><list><ref bean=\"first\" />"
+                + "<ref bean=\"second\" /><ref bean=\"third\" /></list></constructor-arg></bean>");
+        ConfigFiles.writeBeans(new File(configDir, "modules/first.xml"),
+                "<xutils:string id=\"first\">first</xutils:string>");
+        ConfigFiles.writeBeans(new File(configDir, "modules/second-pattern.xml"),
+                "<xutils:string id=\"second\">second</xutils:string>");
+        ConfigFiles.writeBeans(new File(configDir, "modules/third-pattern.xml"),
+                "<xutils:string id=\"third\">third</xutils:string>");
+        assertEquals(4, ConfigBundle.write(configDir, bundleFile));
+        // the bundle is all that's read from now on
+        FileSystemUtils.deleteRecursively(configDir);
+
+        ConfigBundleResourceLoader resourceLoader = new ConfigBundleResourceLoader(bundleFile);
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(resourceLoader,
+                new Object[] { "app.xml" }, true, null);
+        assertEquals(Arrays.asList("first", "second", "third"), appContext.getBean("holder", List.class));
+        assertTrue(appContext.getResource("modules/first.xml") instanceof ConfigBundleResource);
+        appContext.close();
+    }
+
+    @Test
+    public void resolvesResources() throws IOException {
+        ConfigFiles.write(new File(configDir, "app.xml"), "app");
+        ConfigFiles.write(new File(configDir, "modules/first.xml"), "first");
+        ConfigFiles.write(new File(configDir, "modules/second.xml"), "second");
+        ConfigBundle.write(configDir, bundleFile);
+        ConfigBundleResourceLoader resourceLoader = new ConfigBundleResourceLoader(bundleFile);
+
+        Resource app = resourceLoader.getResource("/app.xml");
+        assertEquals("app", read(app));
+        assertEquals(3, app.contentLength());
+        Resource first = app.createRelative("modules/first.xml");
+        assertEquals(resourceLoader.getResource("bundle:modules/first.xml"), first);
+        assertEquals("second", read(first.createRelative("../modules/second.xml")));
+        assertFalse(first.createRelative("missing.xml").exists());
+
+        Resource[] modules = resourceLoader.getResources("modules/*.xml");
+        assertEquals(2, modules.length);
+        assertEquals("first.xml", modules[0].getFilename());
+        assertEquals("second.xml", modules[1].getFilename());
+        assertEquals(new ClassPathResource("com/trigonic/utils/spring/xutils.xsd"), resourceLoader
+                .getResource("classpath:com/trigonic/utils/spring/xutils.xsd"));
+
+        String url = first.getURL().toExternalForm();
+        assertEquals("bundle:" + bundleFile.getAbsoluteFile().toURI().getRawPath() + "!/modules/first.xml", url);
+        assertEquals("first", read(first.getURL().openStream()));
+        assertEquals(first, resourceLoader.getResource(url));
+        assertEquals(first, new ConfigBundleResourceLoader(bundleFile).getResource("modules/first.xml"));
+    }
+
+    @Test
+    public void deduplicatesAndSnapshotsBundleImports() throws IOException {
+        ConfigFiles.writeBeans(new File(configDir, "app.xml"), "<xutils:import resource=\"modules/first.xml\" />\n"
+                + "<xutils:import resource=\"bundle:modules/*.xml\" />");
+        ConfigFiles.writeBeans(new File(configDir, "modules/first.xml"),
+                "<xutils:string id=\"first\">first</xutils:string>");
+        ConfigFiles.writeBeans(new File(configDir, "modules/second.xml"),
+                "<xutils:string id=\"second\">second</xutils:string>");
+        ConfigBundle.write(configDir, bundleFile);
+        ConfigBundleResourceLoader resourceLoader = new ConfigBundleResourceLoader(bundleFile);
+
+        ImportHelper.setDeduplicated(true);
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(resourceLoader,
+                new Object[] { "app.xml" }, true, null);
+        assertEquals(1, ImportHelper.getDuplicateImportCount((BeanDefinitionRegistry) appContext.getBeanFactory()));
+        appContext.close();
+
+        BeanDefinitionSnapshot snapshot = BeanDefinitionSnapshotCompiler.compile(resourceLoader, "app.xml");
+        assertFalse(snapshot.isStale(resourceLoader, new Resource[] { resourceLoader.getResource("app.xml") },
+                new StandardEnvironment()));
+        ByteArrayOutputStream snapshotBytes = new ByteArrayOutputStream();
+        snapshot.writeTo(snapshotBytes);
+        appContext = XmlResourceApplicationContext.fromSnapshot(new ByteArrayResource(snapshotBytes.toByteArray()),
+                new ConfigBundleResourceLoader(bundleFile), null, "app.xml");
+        assertEquals("first", appContext.getBean("first"));
+        assertEquals("second", appContext.getBean("second"));
+        appContext.close();
+    }
+
+    private static String read(Resource resource) throws IOException {
+        return read(resource.getInputStream());
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        return new String(FileCopyUtils.copyToByteArray(inputStream), "UTF-8");
+    }
+}
@@ -0,0 +1,116 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+import org.springframework.beans.factory.xml.DefaultDocumentLoader;
+import org.springframework.beans.factory.xml.DocumentLoader;
+import org.springframework.beans.factory.xml.PluggableSchemaResolver;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.xml.SimpleSaxErrorHandler;
+import org.springframework.util.xml.XmlValidationModeDetector;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+public class GrammarCachingDocumentLoaderTest {
+    private static final String XUTILS_SCHEMA = "http://trigonic.com/schema/spring/xutils.xsd";
+
+    @Test
+    public void compilesSchemaOnce() throws Exception {
+        GrammarCachingDocumentLoader documentLoader = new GrammarCachingDocumentLoader();
+        assertTrue(documentLoader.isCaching());
+        assertEquals(1, countSchemaReads(documentLoader));
+    }
+
+    @Test
+    public void defaultCompilesSchemaPerDocument() throws Exception {
+        assertEquals(2, countSchemaReads(new DefaultDocumentLoader()));
+    }
+
+    @Test
+    public void validatesAgainstReferencedSchemaVersion() throws Exception {
+        GrammarCachingDocumentLoader documentLoader = new GrammarCachingDocumentLoader();
+        loadProfileDocument(documentLoader, "3.1");
+        assertInvalid(documentLoader, "3.0");
+
+        documentLoader = new GrammarCachingDocumentLoader();
+        assertInvalid(documentLoader, "3.0");
+        loadProfileDocument(documentLoader, "3.1");
+    }
+
+    private static void assertInvalid(DocumentLoader documentLoader, String version) throws Exception {
+        try {
+            loadProfileDocument(documentLoader, version);
+            fail();
+        } catch (SAXParseException e) {
+            // nested profile beans only exist since 3.1
+        }
+    }
+
+    private static void loadProfileDocument(DocumentLoader documentLoader, String version) throws Exception {
+        String document = "<beans xmlns=\"http://www.springframework.org/schema/beans\""
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " xsi:schemaLocation=\"http://www.springframework.org/schema/beans"
+                + " http://www.springframework.org/schema/beans/spring-beans-" + version + ".xsd\">"
+                + "<bean id=\"a\" class=\"java.lang.Object\" />"
+                + "<beans profile=\"test\"><bean id=\"b\" class=\"java.lang.Object\" /></beans></beans>";
+        documentLoader.loadDocument(new InputSource(new ByteArrayInputStream(document.getBytes("UTF-8"))),
+                new PluggableSchemaResolver(GrammarCachingDocumentLoaderTest.class.getClassLoader()),
+                new SimpleSaxErrorHandler(LogFactory.getLog(GrammarCachingDocumentLoaderTest.class)),
+                XmlValidationModeDetector.VALIDATION_XSD, true);
+    }
+
+    /**
+     * Counts how many times the schema is read. Xerces still resolves the schema of a cached grammar before looking it
+     * up by its location, but doesn't read it.
+     */
+    private static int countSchemaReads(DocumentLoader documentLoader) throws Exception {
+        final AtomicInteger reads = new AtomicInteger();
+        final EntityResolver schemaResolver = new PluggableSchemaResolver(GrammarCachingDocumentLoaderTest.class
+                .getClassLoader());
+        EntityResolver entityResolver = new EntityResolver() {
+            public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
+                InputSource inputSource = schemaResolver.resolveEntity(publicId, systemId);
+                if (XUTILS_SCHEMA.equals(systemId)) {
+                    inputSource.setByteStream(new FilterInputStream(inputSource.getByteStream()) {
+                        private boolean read;
+
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            if (!read) {
+                                read = true;
+                                reads.incrementAndGet();
+                            }
+                            return super.read(b, off, len);
+                        }
+                    });
+                }
+                return inputSource;
+            }
+        };
+
+        for (String name : new String[] { "primary.xml", "alternate.xml" }) {
+            InputStream inputStream = new ClassPathResource("integ/testcase/" + name,
+                    GrammarCachingDocumentLoaderTest.class).getInputStream();
+            try {
+                documentLoader.loadDocument(new InputSource(inputStream), entityResolver, new SimpleSaxErrorHandler(
+                        LogFactory.getLog(GrammarCachingDocumentLoaderTest.class)),
+                        XmlValidationModeDetector.VALIDATION_XSD, true);
+            } finally {
+                inputStream.close();
+            }
+        }
+        return reads.get();
+    }
+}
@@ -0,0 +1,90 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.core.io.ClassPathResource;
+
+import com.trigonic.utils.spring.context.XmlResourceApplicationContext;
+
+public class ImportDeduplicationTest {
+    private static final String DEDUP_PATH = "com/trigonic/utils/spring/beans/integ/dedup/";
+
+    @Test
+    public void skipsRepeatedImports() {
+        final List<ImportEvent> events = new ArrayList<ImportEvent>();
+        ImportListener listener = new ImportListener() {
+            public void importCompleted(ImportEvent event) {
+                events.add(event);
+            }
+        };
+        ImportHelper.addImportListener(listener);
+        XmlResourceApplicationContext appContext = createDeduplicatingContext("main.xml");
+        appContext.setImportStatisticsEnabled(true);
+        try {
+            appContext.refresh();
+        } finally {
+            ImportHelper.removeImportListener(listener);
+        }
+
+        assertEquals("shared", appContext.getBean("shared"));
+        assertEquals("module", appContext.getBean("module"));
+        assertEquals(2, ImportHelper.getDuplicateImportCount((BeanDefinitionRegistry) appContext.getBeanFactory()));
+        assertEquals(2, appContext.getImportStatistics().getDuplicateCount());
+
+        int duplicateCount = 0;
+        for (ImportEvent event : events) {
+            // skipped resources still count as imported
+            assertEquals(1, event.getResources().size());
+            duplicateCount += event.getDuplicateCount();
+        }
+        assertEquals(2, duplicateCount);
+    }
+
+    @Test
+    public void repeatsImportsByDefault() {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new ClassPathResource(
+                DEDUP_PATH + "main.xml"));
+        assertEquals("shared", appContext.getBean("shared"));
+        assertEquals(0, ImportHelper.getDuplicateImportCount((BeanDefinitionRegistry) appContext.getBeanFactory()));
+        assertEquals(0, appContext.getImportStatistics().getDuplicateCount());
+    }
+
+    @Test
+    public void detectsCycles() {
+        try {
+            createDeduplicatingContext("cycleA.xml").refresh();
+            fail("expected exception");
+        } catch (BeanDefinitionStoreException e) {
+            String message = getRootMessage(e);
+            assertTrue(message, message.contains("cycleA.xml -> "));
+            assertTrue(message, message.contains("cycleB.xml"));
+        }
+    }
+
+    private static XmlResourceApplicationContext createDeduplicatingContext(String path) {
+        ImportOptions importOptions = new ImportOptions();
+        importOptions.setDeduplicated(true);
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] {
+                new ClassPathResource(DEDUP_PATH + path) }, false, null);
+        appContext.setImportOptions(importOptions);
+        return appContext;
+    }
+
+    private static String getRootMessage(Throwable e) {
+        String message = e.getMessage();
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("cyclic")) {
+                message = cause.getMessage();
+            }
+        }
+        return message;
+    }
+}
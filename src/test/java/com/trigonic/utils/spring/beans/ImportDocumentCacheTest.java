@@ -0,0 +1,104 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.xml.DelegatingEntityResolver;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import com.trigonic.utils.spring.context.XmlResourceApplicationContext;
+
+public class ImportDocumentCacheTest {
+    private static final String TESTCASE_PATH = "com/trigonic/utils/spring/beans/integ/testcase/";
+
+    private ImportDocumentCache documentCache = ImportDocumentCache.getSharedInstance();
+
+    @Before
+    public void enableCache() {
+        documentCache.clear();
+        documentCache.setMaxSize(10);
+    }
+
+    @After
+    public void disableCache() {
+        documentCache.setMaxSize(0);
+        documentCache.clear();
+    }
+
+    @Test
+    public void reusedAcrossContexts() {
+        Resource resource = new ClassPathResource(TESTCASE_PATH + "primaryNotAlternate.xml");
+
+        long missesBefore = documentCache.getMissCount();
+        long hitsBefore = documentCache.getHitCount();
+        assertEquals("primary", new XmlResourceApplicationContext(resource).getBean("which", String.class));
+        assertEquals(2, documentCache.getMissCount() - missesBefore);
+        assertEquals(0, documentCache.getHitCount() - hitsBefore);
+
+        ApplicationContext appContext = new XmlResourceApplicationContext(resource);
+        assertEquals("primary", appContext.getBean("which", String.class));
+        assertEquals("primary", appContext.getBean("expected", String.class));
+        assertEquals(2, documentCache.getMissCount() - missesBefore);
+        assertEquals(2, documentCache.getHitCount() - hitsBefore);
+    }
+
+    @Test
+    public void keyedByReaderConfiguration() {
+        Resource resource = new ClassPathResource(TESTCASE_PATH + "primaryNotAlternate.xml");
+        long missesBefore = documentCache.getMissCount();
+
+        documentCache.getDocument(resource, new ImportDocumentLoader(newReader()));
+        documentCache.getDocument(resource, new ImportDocumentLoader(newReader()));
+        assertEquals(1, documentCache.getMissCount() - missesBefore);
+
+        XmlBeanDefinitionReader namespaceAwareReader = newReader();
+        namespaceAwareReader.setNamespaceAware(true);
+        documentCache.getDocument(resource, new ImportDocumentLoader(namespaceAwareReader));
+        assertEquals(2, documentCache.getMissCount() - missesBefore);
+
+        XmlBeanDefinitionReader nonValidatingReader = newReader();
+        nonValidatingReader.setValidationMode(XmlBeanDefinitionReader.VALIDATION_NONE);
+        documentCache.getDocument(resource, new ImportDocumentLoader(nonValidatingReader));
+        assertEquals(3, documentCache.getMissCount() - missesBefore);
+
+        final AtomicInteger resolved = new AtomicInteger();
+        final EntityResolver delegate = new DelegatingEntityResolver(getClass().getClassLoader());
+        XmlBeanDefinitionReader customResolverReader = newReader();
+        customResolverReader.setEntityResolver(new EntityResolver() {
+            public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
+                resolved.incrementAndGet();
+                return delegate.resolveEntity(publicId, systemId);
+            }
+        });
+        documentCache.getDocument(resource, new ImportDocumentLoader(customResolverReader));
+        assertEquals(4, documentCache.getMissCount() - missesBefore);
+        assertTrue(resolved.get() > 0);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        documentCache.setMaxSize(1);
+        long evictionsBefore = documentCache.getEvictionCount();
+
+        new XmlResourceApplicationContext(new ClassPathResource(TESTCASE_PATH + "primaryNotAlternate.xml"));
+        assertEquals(1, documentCache.getSize());
+        assertTrue(documentCache.getEvictionCount() - evictionsBefore >= 1);
+    }
+
+    private static XmlBeanDefinitionReader newReader() {
+        return new XmlBeanDefinitionReader(new DefaultListableBeanFactory());
+    }
+}
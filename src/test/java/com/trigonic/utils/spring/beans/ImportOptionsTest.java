@@ -0,0 +1,67 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import com.trigonic.utils.spring.context.XmlResourceApplicationContext;
+
+public class ImportOptionsTest {
+    private static final String TESTCASE_PATH = "com/trigonic/utils/spring/beans/integ/testcase/";
+
+    @Test
+    public void existenceCheckerPerContext() {
+        ImportOptions importOptions = new ImportOptions();
+        importOptions.setExistenceChecker(new ResourceExistenceChecker() {
+            public boolean exists(Resource resource) {
+                return !resource.getFilename().equals("primary.xml") && resource.exists();
+            }
+        });
+        XmlResourceApplicationContext appContext = createContext("primaryNotAlternate.xml", importOptions);
+        assertEquals("alternate", appContext.getBean("which"));
+        assertSame(importOptions, ImportHelper.getImportOptions((BeanDefinitionRegistry) appContext
+                .getBeanFactory()));
+
+        XmlResourceApplicationContext defaultContext = createContext("primaryNotAlternate.xml", null);
+        assertEquals("primary", defaultContext.getBean("which"));
+        assertSame(ImportHelper.getDefaultOptions(), ImportHelper.getImportOptions(
+                (BeanDefinitionRegistry) defaultContext.getBeanFactory()));
+    }
+
+    @Test
+    public void copiesEveryOption() {
+        ResourceExistenceChecker existenceChecker = new CachingResourceExistenceChecker();
+        ImportOptions options = new ImportOptions();
+        options.setParallel(true);
+        options.setExistenceChecker(existenceChecker);
+        options.setAllocationMeasured(true);
+        options.setClassPathIndexUsed(true);
+        options.setGrammarCached(true);
+        options.setDeduplicated(true);
+        options.setSpeculativeProbing(true);
+        options.setProbeTimeoutMillis(200);
+
+        ImportOptions copy = new ImportOptions(options);
+        assertTrue(copy.isParallel());
+        assertSame(existenceChecker, copy.getExistenceChecker());
+        assertTrue(copy.isAllocationMeasured());
+        assertTrue(copy.isClassPathIndexUsed());
+        assertTrue(copy.isGrammarCached());
+        assertTrue(copy.isDeduplicated());
+        assertTrue(copy.isSpeculativeProbing());
+        assertEquals(200, copy.getProbeTimeoutMillis());
+    }
+
+    private static XmlResourceApplicationContext createContext(String testcase, ImportOptions importOptions) {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] {
+                new ClassPathResource(TESTCASE_PATH + testcase) }, false, null);
+        appContext.setImportOptions(importOptions);
+        appContext.refresh();
+        return appContext;
+    }
+}
@@ -0,0 +1,66 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import com.trigonic.utils.spring.ConfigFiles;
+
+public class IndexedResourcePatternResolverTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void indexedAndUnindexedRoots() throws IOException {
+        File indexedRoot = new File(tempFolder.getRoot(), "indexed");
+        ConfigFiles.write(new File(indexedRoot, "modules/indexed.xml"), "");
+        ConfigFiles.write(new File(indexedRoot, "modules/notIndexed.xml"), "");
+        ConfigFiles.write(new File(indexedRoot, ClassPathIndex.INDEX_LOCATION),
+                "# comment\nmodules/indexed.xml\nother/a.xml\n");
+        File unindexedRoot = new File(tempFolder.getRoot(), "unindexed");
+        ConfigFiles.write(new File(unindexedRoot, "modules/unindexed.xml"), "");
+
+        ClassLoader classLoader = new URLClassLoader(new URL[] { indexedRoot.toURI().toURL(),
+                unindexedRoot.toURI().toURL() }, null);
+        IndexedResourcePatternResolver resolver = new IndexedResourcePatternResolver(new DefaultResourceLoader(
+                classLoader));
+        assertTrue(resolver.isIndexed());
+
+        Set<String> filenames = new HashSet<String>();
+        for (Resource resource : resolver.getResources("classpath*:modules/*.xml")) {
+            assertTrue(resource.exists());
+            filenames.add(resource.getFilename());
+        }
+        assertEquals(2, filenames.size());
+        assertTrue(filenames.contains("indexed.xml"));
+        assertTrue(filenames.contains("unindexed.xml"));
+    }
+
+    @Test
+    public void scansIndexedRootWithoutMatch() throws IOException {
+        File staleRoot = new File(tempFolder.getRoot(), "stale");
+        ConfigFiles.write(new File(staleRoot, "modules/added.xml"), "");
+        ConfigFiles.write(new File(staleRoot, ClassPathIndex.INDEX_LOCATION), "other/a.xml\n");
+
+        ClassLoader classLoader = new URLClassLoader(new URL[] { staleRoot.toURI().toURL() }, null);
+        IndexedResourcePatternResolver resolver = new IndexedResourcePatternResolver(new DefaultResourceLoader(
+                classLoader));
+        assertTrue(resolver.isIndexed());
+
+        Resource[] resources = resolver.getResources("classpath*:modules/*.xml");
+        assertEquals(1, resources.length);
+        assertEquals("added.xml", resources[0].getFilename());
+    }
+}
@@ -0,0 +1,117 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.core.io.ClassPathResource;
+
+import com.trigonic.utils.spring.context.XmlResourceApplicationContext;
+
+public class LazyProxyTest {
+    private static final String LAZY_PATH = "com/trigonic/utils/spring/beans/integ/lazy/";
+    private static final AtomicInteger created = new AtomicInteger();
+
+    @Before
+    public void resetCreated() {
+        created.set(0);
+    }
+
+    @Test
+    public void interfaceProxy() throws Exception {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new ClassPathResource(
+                LAZY_PATH + "interfaceProxy.xml"));
+        Object proxy = appContext.getBean("holder", List.class).get(0);
+        assertSame(appContext.getBean("expensive"), proxy);
+        assertFalse(proxy instanceof ExpensiveCallable);
+        assertEquals(0, created.get());
+        assertFalse(appContext.getBean("&expensive", LazyProxyFactoryBean.class).isTargetCreated());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Callable<?> callable = (Callable<?>) proxy;
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            for (int i = 0; i < 8; ++i) {
+                results.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        start.await();
+                        return callable.call();
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                assertEquals("called", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, created.get());
+        assertTrue(appContext.getBean("&expensive", LazyProxyFactoryBean.class).isTargetCreated());
+        appContext.close();
+    }
+
+    @Test
+    public void classProxy() {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new ClassPathResource(
+                LAZY_PATH + "classProxy.xml"));
+        ExpensiveBean proxy = appContext.getBean("expensive", ExpensiveBean.class);
+        // the proxy's own construction doesn't count, since it has no name
+        assertEquals(0, created.get());
+        assertNotSame(appContext.getBean("target"), proxy);
+        assertEquals(1, created.get());
+        assertEquals("target", proxy.getName());
+        assertEquals(1, created.get());
+        appContext.close();
+    }
+
+    @Test
+    public void rejectsPrototypeTarget() {
+        try {
+            new XmlResourceApplicationContext(new ClassPathResource(LAZY_PATH + "prototypeTarget.xml"));
+            fail("expected exception");
+        } catch (BeanCreationException e) {
+            assertTrue(e.getMostSpecificCause().getMessage().contains("must be a singleton"));
+        }
+    }
+
+    public static class ExpensiveCallable implements Callable<String> {
+        public ExpensiveCallable() throws InterruptedException {
+            Thread.sleep(100);
+            created.incrementAndGet();
+        }
+
+        public String call() {
+            return "called";
+        }
+    }
+
+    public static class ExpensiveBean {
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+            created.incrementAndGet();
+        }
+    }
+}
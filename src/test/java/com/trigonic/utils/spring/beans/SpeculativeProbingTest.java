@@ -0,0 +1,145 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.ApplicationContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.trigonic.utils.spring.ConfigFiles;
+import com.trigonic.utils.spring.context.XmlResourceApplicationContext;
+
+public class SpeculativeProbingTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final Map<String, String> documents = new HashMap<String, String>();
+    private final List<String> gets = new ArrayList<String>();
+    private CountDownLatch probes = new CountDownLatch(2);
+    private volatile boolean probedTogether = true;
+    private volatile String hangingPath;
+    private final ImportOptions importOptions = new ImportOptions();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    respond(exchange);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        importOptions.setSpeculativeProbing(true);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException, InterruptedException {
+        String path = exchange.getRequestURI().getPath();
+        String document = documents.get(path);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            probes.countDown();
+            if (path.equals(hangingPath)) {
+                Thread.sleep(5000);
+            } else if (!probes.await(5, TimeUnit.SECONDS)) {
+                // the other location wasn't probed while this one was
+                probedTogether = false;
+            }
+            exchange.sendResponseHeaders(document == null ? 404 : 200, -1);
+            return;
+        }
+
+        synchronized (gets) {
+            gets.add(path);
+        }
+        if (document == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        byte[] body = ConfigFiles.beans(document).getBytes("UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(body);
+        outputStream.close();
+    }
+
+    @Test
+    public void probesTogether() throws IOException {
+        documents.put("/alternate.xml", "<xutils:string id=\"which\">alternate</xutils:string>");
+        ApplicationContext appContext = load("missing.xml", "alternate.xml");
+
+        assertEquals("alternate", appContext.getBean("which"));
+        assertTrue(probedTogether);
+        assertFalse(gets.contains("/missing.xml"));
+    }
+
+    @Test
+    public void parsesOnlyPrimary() throws IOException {
+        documents.put("/primary.xml", "<xutils:string id=\"which\">primary</xutils:string>");
+        documents.put("/alternate.xml", "<xutils:string id=\"which\">alternate</xutils:string>");
+        ApplicationContext appContext = load("primary.xml", "alternate.xml");
+
+        assertEquals("primary", appContext.getBean("which"));
+        assertTrue(probedTogether);
+        assertFalse(gets.contains("/alternate.xml"));
+    }
+
+    @Test
+    public void timesOut() throws IOException {
+        documents.put("/slow.xml", "<xutils:string id=\"which\">slow</xutils:string>");
+        documents.put("/alternate.xml", "<xutils:string id=\"which\">alternate</xutils:string>");
+        hangingPath = "/slow.xml";
+        importOptions.setProbeTimeoutMillis(200);
+        ApplicationContext appContext = load("slow.xml", "alternate.xml");
+
+        assertEquals("alternate", appContext.getBean("which"));
+        assertFalse(gets.contains("/slow.xml"));
+    }
+
+    private ApplicationContext load(String primary, String alternate) throws IOException {
+        String baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        File configFile = new File(tempFolder.getRoot(), "speculative.xml");
+        ConfigFiles.writeBeans(configFile, "<xutils:import resource=\"" + baseUrl + primary + "\" alternate=\""
+                + baseUrl + alternate + "\" />");
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] { configFile },
+                false, null);
+        appContext.setImportOptions(importOptions);
+        appContext.refresh();
+        return appContext;
+    }
+}
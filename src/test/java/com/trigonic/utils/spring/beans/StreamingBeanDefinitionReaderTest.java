@@ -0,0 +1,74 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+
+import com.trigonic.utils.spring.ConfigFiles;
+import com.trigonic.utils.spring.context.XmlResourceApplicationContext;
+
+public class StreamingBeanDefinitionReaderTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void registersLikeDocumentReader() throws IOException {
+        StringBuilder beans = new StringBuilder("<!-- generated -->\n<xutils:import resource=\"imported.xml\" />\n"
+                + "<xutils:null id=\"nothing\" class=\"java.lang.String\" />\n"
+                + "<bean id=\"holder\" class=\"java.util.ArrayList\"><constructor-arg><list>"
+                + "<value><![CDATA[<cdata>]]></value><ref bean=\"imported\" /><ref bean=\"list249\" /></list>"
+                + "</constructor-arg></bean>\n<alias name=\"holder\" alias=\"aliased\" />\n");
+        for (int i = 0; i < 250; ++i) {
+            beans.append("<bean id=\"list").append(i).append("\" class=\"java.util.ArrayList\">"
+                    + "<constructor-arg><list><value>").append(i).append("</value></list></constructor-arg></bean>\n");
+        }
+        File configFile = new File(tempFolder.getRoot(), "streaming.xml");
+        ConfigFiles.writeBeans(configFile, "default-lazy-init=\"true\"", beans.toString());
+        ConfigFiles.writeBeans(new File(tempFolder.getRoot(), "imported.xml"),
+                "<xutils:string id=\"imported\">imported</xutils:string>");
+
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] { configFile },
+                false, null);
+        appContext.setStreaming(true);
+        appContext.setImportStatisticsEnabled(true);
+        appContext.refresh();
+
+        assertEquals(253, appContext.getBeanDefinitionCount());
+        assertEquals(Arrays.asList("<cdata>", "imported", Arrays.asList("249")), appContext.getBean("aliased",
+                List.class));
+        assertNull(appContext.getBean("nothing"));
+        assertTrue(appContext.getBeanFactory().getBeanDefinition("list0").isLazyInit());
+        assertFalse(appContext.getBeanFactory().getBeanDefinition("imported").isLazyInit());
+        assertEquals(1, appContext.getImportStatistics().getImportCount());
+        appContext.close();
+    }
+
+    @Test
+    public void registersInBatches() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        StreamingBeanDefinitionReader reader = new StreamingBeanDefinitionReader(beanFactory);
+        reader.setBatchSize(1);
+        try {
+            reader.loadBeanDefinitions(new ClassPathResource(
+                    "com/trigonic/utils/spring/beans/integ/streaming/unclosed.xml"));
+            fail("expected exception");
+        } catch (BeanDefinitionStoreException e) {
+            // the element read before the invalid one has already been registered
+            assertTrue(beanFactory.containsBeanDefinition("first"));
+        }
+    }
+}
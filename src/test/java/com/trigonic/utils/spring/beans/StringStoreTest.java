@@ -0,0 +1,63 @@
+package com.trigonic.utils.spring.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.core.io.ClassPathResource;
+
+import com.trigonic.utils.spring.ConfigFiles;
+import com.trigonic.utils.spring.context.XmlResourceApplicationContext;
+
+public class StringStoreTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void singleDefinition() throws IOException {
+        StringBuilder properties = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            properties.append("value").append(i).append('=').append(i).append('\n');
+        }
+        File propertiesFile = new File(tempFolder.getRoot(), "strings.properties");
+        ConfigFiles.write(propertiesFile, properties.toString());
+        File configFile = new File(tempFolder.getRoot(), "strings.xml");
+        ConfigFiles.writeBeans(configFile, "<xutils:strings id=\"constants\" prefix=\"const.\" location=\""
+                + propertiesFile.toURI() + "\">\n<xutils:entry key=\"inline\">${placeholder}</xutils:entry>\n"
+                + "</xutils:strings>\n"
+                + "<bean class=\"org.springframework.beans.factory.config.PropertyPlaceholderConfigurer\">"
+                + "<property name=\"properties\" value=\"placeholder=resolved\" /></bean>\n"
+                + "<bean id=\"holder\" class=\"java.util.ArrayList\"><constructor-arg><list>"
+                + "<ref bean=\"const.value999\" /></list></constructor-arg></bean>");
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(configFile);
+
+        assertEquals(3, appContext.getBeanDefinitionCount());
+        assertEquals("42", appContext.getBean("const.value42"));
+        assertEquals("resolved", appContext.getBean("const.inline"));
+        assertEquals("999", appContext.getBean("holder", List.class).get(0));
+        StringStore store = appContext.getBean("constants", StringStore.class);
+        assertEquals(1001, store.size());
+        assertEquals("7", store.get("value7"));
+        assertNull(store.get("const.value7"));
+        appContext.close();
+    }
+
+    @Test
+    public void conflictsWithDefinitions() {
+        try {
+            new XmlResourceApplicationContext(new ClassPathResource(
+                    "com/trigonic/utils/spring/beans/integ/strings/conflict.xml"));
+            fail("expected exception");
+        } catch (BeanDefinitionStoreException e) {
+            assertEquals("which", e.getBeanName());
+        }
+    }
+}
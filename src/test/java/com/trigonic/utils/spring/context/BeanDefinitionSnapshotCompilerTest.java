@@ -0,0 +1,118 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import com.trigonic.utils.spring.ConfigFiles;
+import com.trigonic.utils.spring.beans.BeanDefinitionSnapshot;
+
+public class BeanDefinitionSnapshotCompilerTest {
+    private static final String TESTCASE_PATH = "com/trigonic/utils/spring/beans/integ/testcase/";
+    private static final String SNAPSHOT_PATH = "com/trigonic/utils/spring/beans/integ/snapshot/";
+    private static final String CONDITION_PROPERTY = "snapshot.test.condition";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void loadsFromSnapshot() throws IOException {
+        Resource configResource = new ClassPathResource(TESTCASE_PATH + "falloverAlternate.xml");
+        Resource snapshot = toResource(BeanDefinitionSnapshotCompiler.compile(configResource));
+
+        ApplicationContext appContext = XmlResourceApplicationContext.fromSnapshot(snapshot, null, configResource);
+        assertEquals("alternate", appContext.getBean("which", String.class));
+        assertEquals("alternate", appContext.getBean("expected", String.class));
+    }
+
+    @Test
+    public void differentConfigResources() throws IOException {
+        Resource snapshot = toResource(BeanDefinitionSnapshotCompiler.compile(new ClassPathResource(TESTCASE_PATH
+                + "falloverAlternate.xml")));
+
+        ApplicationContext appContext = XmlResourceApplicationContext.fromSnapshot(snapshot, null,
+                new ClassPathResource(TESTCASE_PATH + "primaryNotAlternate.xml"));
+        assertEquals("primary", appContext.getBean("which", String.class));
+    }
+
+    @Test
+    public void optionalImportAppears() throws IOException {
+        File configFile = new File(tempFolder.getRoot(), "config.xml");
+        ConfigFiles.writeBeans(configFile, "<xutils:import resource=\"optional.xml\" optional=\"true\" />");
+        Resource configResource = new FileSystemResource(configFile);
+
+        BeanDefinitionSnapshot compiled = BeanDefinitionSnapshotCompiler.compile(configResource);
+        assertFalse(compiled.isStale(new DefaultResourceLoader(), new Resource[] { configResource },
+                new StandardEnvironment()));
+
+        ConfigFiles.writeBeans(new File(tempFolder.getRoot(), "optional.xml"),
+                "<xutils:string id=\"which\">optional</xutils:string>");
+        assertTrue(compiled.isStale(new DefaultResourceLoader(), new Resource[] { configResource },
+                new StandardEnvironment()));
+
+        ApplicationContext appContext = XmlResourceApplicationContext.fromSnapshot(toResource(compiled), null,
+                configResource);
+        assertEquals("optional", appContext.getBean("which", String.class));
+    }
+
+    @Test
+    public void conditionalImport() throws IOException {
+        Resource configResource = new ClassPathResource(SNAPSHOT_PATH + "conditionalImport.xml");
+        Resource[] configResources = new Resource[] { configResource };
+
+        BeanDefinitionSnapshot compiled = BeanDefinitionSnapshotCompiler.compile(configResource);
+        assertEquals(0, compiled.getBeanDefinitionCount());
+        assertFalse(compiled.isStale(new DefaultResourceLoader(), configResources, new StandardEnvironment()));
+
+        System.setProperty(CONDITION_PROPERTY, "true");
+        try {
+            assertTrue(compiled.isStale(new DefaultResourceLoader(), configResources, new StandardEnvironment()));
+
+            compiled = BeanDefinitionSnapshotCompiler.compile(configResource);
+            assertEquals(1, compiled.getBeanDefinitionCount());
+            assertFalse(compiled.isStale(new DefaultResourceLoader(), configResources, new StandardEnvironment()));
+            assertTrue(compiled.isStale(new DefaultResourceLoader(new URLClassLoader(new URL[0], null)),
+                    configResources, new StandardEnvironment()));
+        } finally {
+            System.clearProperty(CONDITION_PROPERTY);
+        }
+    }
+
+    @Test
+    public void largeValues() throws IOException {
+        StringBuilder value = new StringBuilder();
+        while (value.length() < 70000) {
+            value.append("\u00e9t\u00e9 ");
+        }
+        File configFile = new File(tempFolder.getRoot(), "config.xml");
+        ConfigFiles.writeBeans(configFile, "<xutils:string id=\"large\">" + value + "</xutils:string>");
+        Resource configResource = new FileSystemResource(configFile);
+
+        ApplicationContext appContext = XmlResourceApplicationContext.fromSnapshot(toResource(
+                BeanDefinitionSnapshotCompiler.compile(configResource)), null, configResource);
+        assertEquals(value.toString(), appContext.getBean("large", String.class));
+    }
+
+    private static Resource toResource(BeanDefinitionSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        snapshot.writeTo(outputStream);
+        return new ByteArrayResource(outputStream.toByteArray());
+    }
+}
@@ -0,0 +1,145 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.AbstractRefreshableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.context.support.StaticWebApplicationContext;
+
+import com.trigonic.utils.spring.ConfigFiles;
+
+public class CachingApplicationContextTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private GenericApplicationContext parent;
+    private CachingApplicationContext caching;
+
+    @Before
+    public void setUp() {
+        parent = new GenericApplicationContext();
+        parent.registerBeanDefinition("singleton", new RootBeanDefinition(ArrayList.class));
+        RootBeanDefinition prototype = new RootBeanDefinition(LinkedList.class);
+        prototype.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+        parent.registerBeanDefinition("prototype", prototype);
+        parent.refresh();
+        caching = new CachingApplicationContext(parent);
+    }
+
+    @After
+    public void tearDown() {
+        caching.close();
+        parent.close();
+    }
+
+    @Test
+    public void cachesSingletons() {
+        ArrayList<?> singleton = caching.getBean(ArrayList.class);
+        assertSame(singleton, caching.getBean(ArrayList.class));
+        assertSame(singleton, caching.getBeansOfType(ArrayList.class).get("singleton"));
+        assertSame(singleton, caching.getBeansOfType(ArrayList.class).get("singleton"));
+        assertEquals(2, caching.getHitCount());
+        assertEquals(2, caching.getMissCount());
+        assertEquals(0.5, caching.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void passesPrototypesThrough() {
+        assertNotSame(caching.getBean(LinkedList.class), caching.getBean(LinkedList.class));
+        assertNotSame(caching.getBeansOfType(LinkedList.class).get("prototype"),
+                caching.getBeansOfType(LinkedList.class).get("prototype"));
+        assertEquals(0, caching.getHitCount());
+
+        // the names don't change until the parent is refreshed
+        caching.getBeanNamesForType(LinkedList.class);
+        assertEquals("prototype", caching.getBeanNamesForType(LinkedList.class)[0]);
+        assertEquals(1, caching.getHitCount());
+    }
+
+    @Test
+    public void invalidatedOnRefresh() {
+        AbstractRefreshableApplicationContext refreshable = new AbstractRefreshableApplicationContext() {
+            @Override
+            protected void loadBeanDefinitions(DefaultListableBeanFactory beanFactory) {
+                beanFactory.registerBeanDefinition("singleton", new RootBeanDefinition(ArrayList.class));
+            }
+        };
+        refreshable.refresh();
+        CachingApplicationContext wrapper = new CachingApplicationContext(refreshable);
+        ArrayList<?> singleton = wrapper.getBean(ArrayList.class);
+        assertSame(singleton, wrapper.getBean(ArrayList.class));
+
+        refreshable.refresh();
+        ArrayList<?> refreshed = wrapper.getBean(ArrayList.class);
+        assertNotSame(singleton, refreshed);
+        assertSame(refreshable.getBean(ArrayList.class), refreshed);
+        assertEquals(1, wrapper.getHitCount());
+        assertSame(refreshed, wrapper.getBean(ArrayList.class));
+        assertEquals(2, wrapper.getHitCount());
+
+        wrapper.close();
+        refreshable.close();
+    }
+
+    @Test
+    public void invalidatedOnReload() throws IOException {
+        File configFile = new File(tempFolder.getRoot(), "caching.xml");
+        ConfigFiles.writeBeans(configFile, "<bean id=\"before\" class=\"java.util.ArrayList\" />");
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] { configFile },
+                false, null);
+        appContext.setReloadEnabled(true);
+        appContext.refresh();
+        CachingApplicationContext wrapper = new CachingApplicationContext(appContext);
+        assertEquals("before", wrapper.getBeanNamesForType(ArrayList.class)[0]);
+
+        ConfigFiles.writeBeans(configFile, "<bean id=\"after\" class=\"java.util.ArrayList\" />");
+        appContext.reload(Collections.<Resource> singleton(new FileSystemResource(configFile)));
+        assertEquals(1, appContext.getReloadCount());
+        assertEquals("after", wrapper.getBeanNamesForType(ArrayList.class)[0]);
+        assertSame(appContext.getBean("after"), wrapper.getBean(ArrayList.class));
+        assertEquals(0, wrapper.getHitCount());
+
+        wrapper.close();
+        appContext.close();
+    }
+
+    @Test
+    public void ignoresChildEvents() {
+        StaticWebApplicationContext child = new StaticWebApplicationContext();
+        child.setParent(caching);
+        child.refresh();
+        caching.getBean(ArrayList.class);
+        child.publishEvent(new ContextRefreshedEvent(child));
+        assertSame(parent.getBean(ArrayList.class), child.getBean(ArrayList.class));
+        assertEquals(1, caching.getHitCount());
+        child.close();
+    }
+
+    @Test
+    public void invalidatedOnClose() {
+        ArrayList<?> singleton = caching.getBean(ArrayList.class);
+        parent.close();
+        assertNotSame(singleton, caching.getBean(ArrayList.class));
+        caching.getBean(ArrayList.class);
+        assertEquals(0, caching.getHitCount());
+    }
+}
@@ -2,11 +2,14 @@ package com.trigonic.utils.spring.context;
 
 import static org.easymock.EasyMock.createNiceControl;
 import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
 
 import javax.servlet.ServletContext;
@@ -14,7 +17,9 @@ import javax.servlet.ServletContextEvent;
 
 import org.easymock.IMocksControl;
 import org.junit.Test;
+import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.web.context.ContextLoader;
 import org.springframework.web.context.support.StaticWebApplicationContext;
 
@@ -43,6 +48,43 @@ public class EmbeddedWebContextConnectorTest {
         mockControl.verify();
     }
 
+    @Test
+    public void cachingParent() {
+        GenericApplicationContext outerContext = new GenericApplicationContext();
+        outerContext.registerBeanDefinition("shared", new RootBeanDefinition(ArrayList.class));
+        outerContext.refresh();
+
+        IMocksControl mockControl = createNiceControl();
+        ServletContext mockServletContext = mockControl.createMock(ServletContext.class);
+        ServletContextEvent mockServletContextEvent = mockControl.createMock(ServletContextEvent.class);
+        Enumeration<?> mockEnumeration = mockControl.createMock(Enumeration.class);
+
+        expect(mockServletContextEvent.getServletContext()).andReturn(mockServletContext).anyTimes();
+        expect(mockServletContext.getInitParameter("embeddedWebContext")).andReturn("cachingWebContext");
+        expect(mockServletContext.getInitParameter("embeddedWebContextCaching")).andReturn("true");
+        expect(mockServletContext.getInitParameter("contextClass")).andReturn(StaticWebApplicationContext.class.getName());
+        expect(mockServletContext.getInitParameterNames()).andReturn(mockEnumeration).anyTimes();
+        expect(mockServletContext.getAttributeNames()).andReturn(mockEnumeration).anyTimes();
+        mockControl.replay();
+
+        EmbeddedWebContextConnector.registerAppContext("cachingWebContext", outerContext);
+        EmbeddedWebContextConnector connector = new EmbeddedWebContextConnector();
+        connector.contextInitialized(mockServletContextEvent);
+        CachingApplicationContext cachingContext = connector.getCachingParentContext();
+        assertSame(cachingContext, ContextLoader.getCurrentWebApplicationContext().getParent());
+        assertSame(outerContext, cachingContext.getDelegate());
+
+        ApplicationContext webContext = ContextLoader.getCurrentWebApplicationContext();
+        assertSame(webContext.getBean(ArrayList.class), webContext.getBean(ArrayList.class));
+        assertEquals(1, cachingContext.getHitCount());
+
+        connector.contextDestroyed(mockServletContextEvent);
+        assertNull(connector.getCachingParentContext());
+        EmbeddedWebContextConnector.unregisterAppContext("cachingWebContext");
+        outerContext.close();
+        mockControl.verify();
+    }
+
     @Test
     public void missingContextParam() {
         IMocksControl mockControl = createNiceControl();
@@ -85,4 +127,65 @@ public class EmbeddedWebContextConnectorTest {
         }
         mockControl.verify();
     }
+
+    @Test
+    public void awaitsRegistration() throws InterruptedException {
+        IMocksControl mockControl = createNiceControl();
+        final ApplicationContext mockOuterContext = mockControl.createMock(ApplicationContext.class);
+        ServletContext mockServletContext = mockControl.createMock(ServletContext.class);
+        ServletContextEvent mockServletContextEvent = mockControl.createMock(ServletContextEvent.class);
+        Enumeration<?> mockEnumeration = mockControl.createMock(Enumeration.class);
+
+        expect(mockServletContextEvent.getServletContext()).andReturn(mockServletContext).anyTimes();
+        expect(mockServletContext.getInitParameter("embeddedWebContext")).andReturn("lateWebContext");
+        expect(mockServletContext.getInitParameter("embeddedWebContextTimeout")).andReturn("10000");
+        expect(mockServletContext.getInitParameter("contextClass")).andReturn(StaticWebApplicationContext.class.getName());
+        expect(mockServletContext.getInitParameterNames()).andReturn(mockEnumeration).anyTimes();
+        expect(mockServletContext.getAttributeNames()).andReturn(mockEnumeration).anyTimes();
+        mockControl.replay();
+
+        Thread registrar = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                EmbeddedWebContextConnector.registerAppContext("lateWebContext", mockOuterContext);
+            }
+        };
+        registrar.start();
+        EmbeddedWebContextConnector connector = new EmbeddedWebContextConnector();
+        connector.contextInitialized(mockServletContextEvent);
+        assertSame(mockOuterContext, ContextLoader.getCurrentWebApplicationContext().getParent());
+        connector.contextDestroyed(mockServletContextEvent);
+        registrar.join();
+        assertSame(mockOuterContext, EmbeddedWebContextConnector.unregisterAppContext("lateWebContext"));
+        mockControl.verify();
+    }
+
+    @Test
+    public void timesOut() {
+        IMocksControl mockControl = createNiceControl();
+        ServletContext mockServletContext = mockControl.createMock(ServletContext.class);
+        ServletContextEvent mockServletContextEvent = mockControl.createMock(ServletContextEvent.class);
+
+        expect(mockServletContextEvent.getServletContext()).andReturn(mockServletContext).anyTimes();
+        expect(mockServletContext.getInitParameter("embeddedWebContext")).andReturn("neverWebContext");
+        expect(mockServletContext.getInitParameter("embeddedWebContextTimeout")).andReturn("50");
+        mockControl.replay();
+
+        EmbeddedWebContextConnector connector = new EmbeddedWebContextConnector();
+        try {
+            connector.contextInitialized(mockServletContextEvent);
+            fail("expected exception");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("not registered"));
+            assertTrue(e.getMessage().contains("within 50ms"));
+        }
+        // the pending registration isn't left behind
+        assertFalse(EmbeddedWebContextConnector.isRegistered("neverWebContext"));
+        mockControl.verify();
+    }
 }
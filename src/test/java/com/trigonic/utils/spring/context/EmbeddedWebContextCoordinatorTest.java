@@ -0,0 +1,79 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
+
+public class EmbeddedWebContextCoordinatorTest {
+    @Test
+    public void startsAndStopsConcurrently() throws Exception {
+        CountDownLatch starting = new CountDownLatch(2);
+        CountDownLatch stopping = new CountDownLatch(2);
+        FakeWebContext first = new FakeWebContext(starting, stopping);
+        FakeWebContext second = new FakeWebContext(starting, stopping);
+
+        GenericApplicationContext appContext = new GenericApplicationContext();
+        ConfigurableListableBeanFactory beanFactory = appContext.getBeanFactory();
+        beanFactory.registerSingleton("first", createRegistrar(appContext, "first", first));
+        beanFactory.registerSingleton("second", createRegistrar(appContext, "second", second));
+        EmbeddedWebContextCoordinator coordinator = new EmbeddedWebContextCoordinator();
+        coordinator.setApplicationContext(appContext);
+        coordinator.setParallelism(2);
+        beanFactory.registerSingleton("coordinator", coordinator);
+        appContext.refresh();
+
+        assertTrue(coordinator.isRunning());
+        assertTrue(first.started && second.started);
+        assertEquals(2, coordinator.getStartupMillis().size());
+        assertSame(appContext, EmbeddedWebContextConnector.unregisterAppContext("first"));
+        assertSame(appContext, EmbeddedWebContextConnector.unregisterAppContext("second"));
+
+        appContext.close();
+        assertFalse(coordinator.isRunning());
+        assertFalse(first.started || second.started);
+    }
+
+    private static EmbeddedWebContextRegistrar createRegistrar(GenericApplicationContext appContext, String name,
+            Object webContext) {
+        EmbeddedWebContextRegistrar registrar = new EmbeddedWebContextRegistrar();
+        registrar.setApplicationContext(appContext);
+        registrar.setEmbeddedWebContext(name);
+        registrar.setRegisterOnRefresh(true);
+        registrar.setWebContext(webContext);
+        return registrar;
+    }
+
+    /**
+     * Only starts (or stops) once another one is starting (or stopping) at the same time.
+     */
+    public static class FakeWebContext {
+        private final CountDownLatch starting;
+        private final CountDownLatch stopping;
+        private volatile boolean started;
+
+        FakeWebContext(CountDownLatch starting, CountDownLatch stopping) {
+            this.starting = starting;
+            this.stopping = stopping;
+        }
+
+        public void start() throws InterruptedException {
+            starting.countDown();
+            assertTrue(starting.await(10, TimeUnit.SECONDS));
+            started = true;
+        }
+
+        public void stop() throws InterruptedException {
+            stopping.countDown();
+            assertTrue(stopping.await(10, TimeUnit.SECONDS));
+            started = false;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import com.trigonic.utils.spring.beans.ImportEvent;
+import com.trigonic.utils.spring.beans.ImportHelper;
+import com.trigonic.utils.spring.beans.ImportListener;
+import com.trigonic.utils.spring.beans.ImportOptions;
+
+public class ImportStatisticsTest {
+    private static final String TESTCASE_PATH = "com/trigonic/utils/spring/beans/integ/testcase/";
+
+    @After
+    public void resetExported() {
+        XmlResourceApplicationContext.setImportStatisticsExported(false);
+    }
+
+    @Test
+    public void importEvent() {
+        final List<ImportEvent> events = new ArrayList<ImportEvent>();
+        ImportListener listener = new ImportListener() {
+            public void importCompleted(ImportEvent event) {
+                events.add(event);
+            }
+        };
+        ImportHelper.addImportListener(listener);
+        XmlResourceApplicationContext appContext;
+        try {
+            appContext = new XmlResourceApplicationContext(new ClassPathResource(TESTCASE_PATH
+                    + "falloverAlternate.xml"));
+        } finally {
+            ImportHelper.removeImportListener(listener);
+        }
+
+        assertEquals(1, events.size());
+        ImportEvent event = events.get(0);
+        assertSame(appContext.getBeanFactory(), event.getRegistry());
+        assertEquals("doesNotExist.xml", event.getLocation());
+        assertTrue(event.isAlternateUsed());
+        assertEquals(0, event.getDepth());
+        assertEquals(1, event.getResources().size());
+        assertEquals("alternate.xml", event.getResources().get(0).getFilename());
+        assertEquals(2, event.getBeanCount());
+        assertTrue(event.getParseNanos() > 0);
+        assertEquals(-1, event.getAllocatedBytes());
+    }
+
+    @Test
+    public void statistics() {
+        ImportOptions importOptions = new ImportOptions();
+        importOptions.setAllocationMeasured(true);
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] {
+                new ClassPathResource(TESTCASE_PATH + "falloverAlternate.xml") }, false, null);
+        appContext.setImportOptions(importOptions);
+        appContext.setImportStatisticsEnabled(true);
+        appContext.refresh();
+        ImportStatistics statistics = appContext.getImportStatistics();
+        assertEquals(1, statistics.getImportCount());
+        assertEquals(1, statistics.getAlternateCount());
+        assertEquals(2, statistics.getBeanCount());
+        assertEquals(1, statistics.getImports().length);
+        assertTrue(statistics.getImports()[0].startsWith("[doesNotExist.xml] in class path resource"));
+        assertTrue(statistics.getAllocatedBytes() != 0);
+    }
+
+    @Test
+    public void notCollectedByDefault() {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new ClassPathResource(
+                TESTCASE_PATH + "falloverAlternate.xml"));
+        assertEquals(0, appContext.getImportStatistics().getImportCount());
+    }
+
+    @Test
+    public void exported() throws Exception {
+        XmlResourceApplicationContext.setImportStatisticsExported(true);
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new ClassPathResource(
+                TESTCASE_PATH + "falloverAlternate.xml"));
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.trigonic.utils.spring:type=ImportStatistics,context="
+                + ObjectName.quote(appContext.getId()));
+        assertEquals(1, mbeanServer.getAttribute(name, "AlternateCount"));
+
+        appContext.close();
+        assertFalse(mbeanServer.isRegistered(name));
+    }
+}
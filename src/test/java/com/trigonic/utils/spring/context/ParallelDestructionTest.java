@@ -0,0 +1,81 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+public class ParallelDestructionTest {
+    private static final String PARALLEL_PATH = "com/trigonic/utils/spring/beans/integ/parallel/";
+
+    @Before
+    public void setUp() {
+        RecordingBean.reset();
+    }
+
+    @After
+    public void tearDown() {
+        RecordingBean.release();
+    }
+
+    @Test(timeout = 10000)
+    public void destroysDependentsFirst() {
+        RecordingBean.createBarrier("leaves", 3);
+        XmlResourceApplicationContext appContext = createContext("dependencies.xml");
+        appContext.close();
+
+        List<String> events = RecordingBean.getEvents();
+        int firstEnd = events.indexOf("destroyed:c");
+        for (String beanName : Arrays.asList("c", "d", "e")) {
+            assertTrue(events.indexOf("destroy:" + beanName) < firstEnd);
+            firstEnd = Math.min(firstEnd, events.indexOf("destroyed:" + beanName));
+        }
+        assertTrue(events.indexOf("destroyed:d") < events.indexOf("destroy:a"));
+        assertTrue(events.indexOf("destroyed:e") < events.indexOf("destroy:b"));
+        assertFalse(RecordingBean.getThreads().contains(Thread.currentThread()));
+        assertTrue(appContext.getDestructionMillis().keySet().containsAll(Arrays.asList("a", "b", "c", "d", "e")));
+    }
+
+    @Test
+    public void refusesCreation() {
+        createContext("destroyLookup.xml").close();
+
+        List<String> events = RecordingBean.getEvents();
+        assertTrue(events.contains("refused:lazy"));
+        assertFalse(events.contains("start:lazy"));
+        assertFalse(events.contains("created:lazy"));
+    }
+
+    @Test(timeout = 10000)
+    public void timesOut() {
+        XmlResourceApplicationContext appContext = createContext("hangingDestroy.xml");
+        appContext.setDestructionTimeoutMillis(500);
+        long startMillis = System.currentTimeMillis();
+        appContext.close();
+
+        assertTrue(System.currentTimeMillis() - startMillis < 5000);
+        List<String> events = RecordingBean.getEvents();
+        assertTrue(events.contains("destroyed:b"));
+        assertTrue(events.contains("destroy:hanging"));
+        // the bean the hanging one depends on is removed without being destroyed
+        assertFalse(events.contains("destroy:a"));
+        assertTrue(appContext.getDestructionMillis().containsKey("b"));
+        assertFalse(appContext.getDestructionMillis().containsKey("a"));
+        assertFalse(appContext.getDestructionMillis().containsKey("hanging"));
+    }
+
+    private static XmlResourceApplicationContext createContext(String config) {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] {
+                new ClassPathResource(PARALLEL_PATH + config) }, false, null);
+        appContext.setDestructionParallelism(3);
+        appContext.refresh();
+        RecordingBean.clearEvents();
+        return appContext;
+    }
+}
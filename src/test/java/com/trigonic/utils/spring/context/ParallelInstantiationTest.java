@@ -0,0 +1,91 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.FatalBeanException;
+import org.springframework.core.io.ClassPathResource;
+
+public class ParallelInstantiationTest {
+    private static final String PARALLEL_PATH = "com/trigonic/utils/spring/beans/integ/parallel/";
+
+    @Before
+    public void setUp() {
+        RecordingBean.reset();
+    }
+
+    @After
+    public void tearDown() {
+        RecordingBean.release();
+    }
+
+    @Test(timeout = 10000)
+    public void instantiatesIndependentBeansTogether() {
+        RecordingBean.createBarrier("roots", 3);
+        XmlResourceApplicationContext appContext = createContext("dependencies.xml");
+        appContext.refresh();
+
+        List<String> events = RecordingBean.getEvents();
+        int firstEnd = events.indexOf("end:a");
+        for (String beanName : Arrays.asList("a", "b", "c")) {
+            assertTrue(events.indexOf("start:" + beanName) < firstEnd);
+            firstEnd = Math.min(firstEnd, events.indexOf("end:" + beanName));
+        }
+        assertTrue(events.indexOf("end:a") < events.indexOf("start:d"));
+        assertTrue(events.indexOf("end:b") < events.indexOf("start:e"));
+        assertFalse(RecordingBean.getThreads().contains(Thread.currentThread()));
+        assertSame(appContext.getBean("a"), appContext.getBean("d", RecordingBean.class).getDependency());
+        appContext.close();
+    }
+
+    @Test(timeout = 10000)
+    public void resolvesCircularLookups() {
+        RecordingBean.createBarrier("lookups", 2);
+        XmlResourceApplicationContext appContext = createContext("circularLookups.xml");
+        appContext.refresh();
+
+        List<String> events = RecordingBean.getEvents();
+        assertTrue(events.indexOf("start:y") < events.indexOf("end:x"));
+        assertTrue(events.indexOf("start:x") < events.indexOf("end:y"));
+        assertSame(appContext.getBean("y"), appContext.getBean("x", RecordingBean.class).getDependency());
+        assertSame(appContext.getBean("x"), appContext.getBean("y", RecordingBean.class).getDependency());
+        appContext.close();
+    }
+
+    @Test(timeout = 10000)
+    public void timesOut() {
+        XmlResourceApplicationContext appContext = createContext("hangingInit.xml");
+        appContext.setInstantiationTimeoutMillis(500);
+        long startMillis = System.currentTimeMillis();
+        try {
+            appContext.refresh();
+            fail();
+        } catch (FatalBeanException e) {
+            assertTrue(System.currentTimeMillis() - startMillis < 4000);
+        }
+        assertFalse(RecordingBean.getEvents().contains("end:b"));
+    }
+
+    @Test
+    public void fallsBackWhenAutowired() {
+        createContext("autowired.xml").refresh();
+        assertEquals(Collections.singletonList(Thread.currentThread()), RecordingBean.getThreads());
+    }
+
+    private static XmlResourceApplicationContext createContext(String config) {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] {
+                new ClassPathResource(PARALLEL_PATH + config) }, false, null);
+        appContext.setInstantiationParallelism(3);
+        return appContext;
+    }
+}
@@ -0,0 +1,161 @@
+package com.trigonic.utils.spring.context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.BeanCreationNotAllowedException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Records when it's initialized and destroyed, and on which threads. Beans can wait for each other at a named barrier,
+ * which fails their initialization or destruction unless all of them get there together, or hang until the test
+ * {@link #release() releases} them.
+ */
+public class RecordingBean implements BeanNameAware, BeanFactoryAware, InitializingBean, DisposableBean {
+    private static final long BARRIER_TIMEOUT_SECONDS = 5;
+
+    private static final List<String> events = new ArrayList<String>();
+    private static final List<Thread> threads = new ArrayList<Thread>();
+    private static final Map<String, CyclicBarrier> barriers = new HashMap<String, CyclicBarrier>();
+    private static CountDownLatch released = new CountDownLatch(1);
+
+    private String beanName;
+    private BeanFactory beanFactory;
+    private Object dependency;
+    private String lookup;
+    private String destroyLookup;
+    private String initBarrier;
+    private String destroyBarrier;
+    private boolean hangOnInit;
+    private boolean hangOnDestroy;
+
+    static synchronized void reset() {
+        clearEvents();
+        barriers.clear();
+        released = new CountDownLatch(1);
+    }
+
+    static synchronized void clearEvents() {
+        events.clear();
+        threads.clear();
+    }
+
+    /**
+     * Creates the barrier with the specified name. Beans naming a barrier that hasn't been created don't wait at it.
+     */
+    static synchronized void createBarrier(String name, int parties) {
+        barriers.put(name, new CyclicBarrier(parties));
+    }
+
+    /**
+     * Lets the beans that are hanging, and any that hang from now on, carry on.
+     */
+    static synchronized void release() {
+        released.countDown();
+    }
+
+    static synchronized List<String> getEvents() {
+        return new ArrayList<String>(events);
+    }
+
+    static synchronized List<Thread> getThreads() {
+        return new ArrayList<Thread>(threads);
+    }
+
+    private static synchronized void record(String event) {
+        events.add(event);
+        if (!threads.contains(Thread.currentThread())) {
+            threads.add(Thread.currentThread());
+        }
+    }
+
+    private static synchronized CyclicBarrier getBarrier(String name) {
+        return name == null ? null : barriers.get(name);
+    }
+
+    private static synchronized CountDownLatch getReleased() {
+        return released;
+    }
+
+    private static void await(String barrierName, boolean hang) throws Exception {
+        CyclicBarrier barrier = getBarrier(barrierName);
+        if (barrier != null) {
+            barrier.await(BARRIER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        if (hang) {
+            getReleased().await();
+        }
+    }
+
+    public void setBeanName(String beanName) {
+        this.beanName = beanName;
+    }
+
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    public Object getDependency() {
+        return dependency;
+    }
+
+    public void setDependency(Object dependency) {
+        this.dependency = dependency;
+    }
+
+    public void setLookup(String lookup) {
+        this.lookup = lookup;
+    }
+
+    public void setDestroyLookup(String destroyLookup) {
+        this.destroyLookup = destroyLookup;
+    }
+
+    public void setInitBarrier(String initBarrier) {
+        this.initBarrier = initBarrier;
+    }
+
+    public void setDestroyBarrier(String destroyBarrier) {
+        this.destroyBarrier = destroyBarrier;
+    }
+
+    public void setHangOnInit(boolean hangOnInit) {
+        this.hangOnInit = hangOnInit;
+    }
+
+    public void setHangOnDestroy(boolean hangOnDestroy) {
+        this.hangOnDestroy = hangOnDestroy;
+    }
+
+    public void afterPropertiesSet() throws Exception {
+        record("start:" + beanName);
+        await(initBarrier, hangOnInit);
+        if (lookup != null) {
+            dependency = beanFactory.getBean(lookup);
+        }
+        record("end:" + beanName);
+    }
+
+    public void destroy() throws Exception {
+        record("destroy:" + beanName);
+        if (destroyLookup != null) {
+            try {
+                beanFactory.getBean(destroyLookup);
+                record("created:" + destroyLookup);
+            } catch (BeanCreationNotAllowedException e) {
+                record("refused:" + destroyLookup);
+            }
+        }
+        await(destroyBarrier, hangOnDestroy);
+        record("destroyed:" + beanName);
+    }
+}
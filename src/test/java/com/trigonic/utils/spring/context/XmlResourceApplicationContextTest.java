@@ -0,0 +1,63 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.core.io.ClassPathResource;
+
+public class XmlResourceApplicationContextTest {
+    private static final String TESTCASE_PATH = "com/trigonic/utils/spring/beans/integ/testcase/";
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void refreshAsync() throws Exception {
+        XmlResourceApplicationContext primary = new XmlResourceApplicationContext(new Object[] {
+                new ClassPathResource(TESTCASE_PATH + "primary.xml") }, false, null);
+        XmlResourceApplicationContext alternate = new XmlResourceApplicationContext(new Object[] {
+                new ClassPathResource(TESTCASE_PATH + "falloverAlternate.xml") }, false, null);
+        assertFalse(primary.isActive());
+
+        Future<XmlResourceApplicationContext> primaryFuture = primary.refreshAsync(executor);
+        Future<XmlResourceApplicationContext> alternateFuture = alternate.refreshAsync(executor);
+        assertSame(primary, primaryFuture.get());
+        assertSame(alternate, alternateFuture.get());
+        assertTrue(primary.isActive());
+        assertEquals("primary", primary.getBean("which", String.class));
+        assertEquals("alternate", alternate.getBean("which", String.class));
+    }
+
+    @Test
+    public void refreshAsyncFailure() throws Exception {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] {
+                new ClassPathResource(TESTCASE_PATH + "doesNotExist.xml") }, false, null);
+        try {
+            appContext.refreshAsync(executor).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BeanDefinitionStoreException);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import com.trigonic.utils.spring.ConfigFiles;
+
+public class XmlResourceContextCompactTest {
+    private static final String HOLDER = "<bean id=\"holder\" class=\"java.util.ArrayList\">"
+            + "<constructor-arg><list><ref bean=\"which\" /></list></constructor-arg></bean>";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File tempDir;
+
+    @Before
+    public void setUp() {
+        tempDir = tempFolder.getRoot();
+    }
+
+    @Test
+    public void compactReleasesMetadata() throws Exception {
+        File configFile = new File(tempDir, "config.xml");
+        ConfigFiles.writeBeans(configFile, "<xutils:import resource=\"module.xml\" />");
+        StringBuilder module = new StringBuilder("<bean id=\"prototype\" class=\"java.util.ArrayList\""
+                + " scope=\"prototype\" />\n");
+        for (int i = 0; i < 100; ++i) {
+            module.append("<bean id=\"list" + i + "\" class=\"java.util.ArrayList\"><constructor-arg><list>"
+                    + "<value>" + i + "</value><ref bean=\"prototype\" /></list></constructor-arg></bean>\n");
+        }
+        ConfigFiles.writeBeans(new File(tempDir, "module.xml"), module.toString());
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] { configFile },
+                false, null);
+        appContext.setImportStatisticsEnabled(true);
+        appContext.refresh();
+        ConfigurableListableBeanFactory beanFactory = appContext.getBeanFactory();
+
+        List<Reference<?>> metadata = new ArrayList<Reference<?>>();
+        metadata.add(new WeakReference<Object>(((AbstractBeanDefinition) beanFactory.getBeanDefinition("list0"))
+                .getResource()));
+        for (int i = 0; i < 100; ++i) {
+            metadata.add(new WeakReference<Object>(beanFactory.getMergedBeanDefinition("list" + i)));
+        }
+        appContext.compact();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!isCleared(metadata) && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(isCleared(metadata));
+        assertNull(beanFactory.getBeanDefinition("list0").getResourceDescription());
+        BeanDefinition prototype = beanFactory.getMergedBeanDefinition("prototype");
+        assertNull(prototype.getResourceDescription());
+        assertSame(prototype, beanFactory.getMergedBeanDefinition("prototype"));
+        assertEquals(0, appContext.getImportStatistics().getImports().length);
+        assertEquals(1, appContext.getImportStatistics().getImportCount());
+
+        // compacted singletons still resolve, but their merged definitions aren't cached again
+        assertEquals(101, appContext.getBeanNamesForType(ArrayList.class).length);
+        assertNotSame(beanFactory.getMergedBeanDefinition("list0"), beanFactory.getMergedBeanDefinition("list0"));
+        assertEquals("0", appContext.getBean("list0", List.class).get(0));
+        appContext.close();
+    }
+
+    @Test
+    public void compactAfterReload() throws IOException {
+        File configFile = new File(tempDir, "config.xml");
+        ConfigFiles.writeBeans(configFile, "<xutils:string id=\"which\">before</xutils:string>\n" + HOLDER);
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] { configFile },
+                false, null);
+        appContext.setReloadEnabled(true);
+        appContext.setCompactAfterRefresh(true);
+        appContext.refresh();
+        assertNotNull(appContext.getBeanFactory().getBeanDefinition("which").getResourceDescription());
+
+        ConfigFiles.writeBeans(configFile, "<xutils:string id=\"which\">after</xutils:string>\n" + HOLDER);
+        appContext.reload(Collections.<Resource> singleton(new FileSystemResource(configFile)));
+        assertEquals(Arrays.asList("after"), appContext.getBean("holder"));
+        appContext.close();
+    }
+
+    private static boolean isCleared(List<Reference<?>> references) {
+        for (Reference<?> reference : references) {
+            if (reference.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
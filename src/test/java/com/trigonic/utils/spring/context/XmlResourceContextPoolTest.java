@@ -0,0 +1,73 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+
+public class XmlResourceContextPoolTest {
+    private static final String TESTCASE_PATH = "com/trigonic/utils/spring/beans/integ/testcase/";
+
+    private final XmlResourceContextPool pool = new XmlResourceContextPool(2);
+
+    @After
+    public void tearDown() {
+        pool.clear();
+    }
+
+    @Test
+    public void reusesContexts() {
+        XmlResourceApplicationContext first = pool.getContext(null, "classpath:" + TESTCASE_PATH + "primary.xml");
+        XmlResourceApplicationContext second = pool.getContext(null, new ClassPathResource(TESTCASE_PATH
+                + "primary.xml"));
+        assertSame(first, second);
+        assertEquals("primary", second.getBean("which"));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+
+        StaticApplicationContext parent = new StaticApplicationContext();
+        parent.refresh();
+        XmlResourceApplicationContext child = pool.getContext(parent, "classpath:" + TESTCASE_PATH + "primary.xml");
+        assertNotSame(first, child);
+        assertSame(parent, child.getParent());
+        pool.clear();
+        parent.close();
+    }
+
+    @Test
+    public void replacesDirtyContexts() {
+        XmlResourceApplicationContext first = pool.getContext(null, "classpath:" + TESTCASE_PATH + "primary.xml");
+        assertTrue(pool.markDirty(first));
+        assertFalse(first.isActive());
+        assertFalse(pool.markDirty(first));
+
+        XmlResourceApplicationContext second = pool.getContext(null, "classpath:" + TESTCASE_PATH + "primary.xml");
+        assertNotSame(first, second);
+        second.close();
+        assertNotSame(second, pool.getContext(null, "classpath:" + TESTCASE_PATH + "primary.xml"));
+    }
+
+    @Test
+    public void closesEvictedContexts() {
+        XmlResourceApplicationContext primary = pool.getContext(null, "classpath:" + TESTCASE_PATH + "primary.xml");
+        XmlResourceApplicationContext alternate = pool.getContext(null, "classpath:" + TESTCASE_PATH
+                + "alternate.xml");
+        assertSame(primary, pool.getContext(null, "classpath:" + TESTCASE_PATH + "primary.xml"));
+        pool.getContext(null, "classpath:" + TESTCASE_PATH + "primaryNotAlternate.xml");
+
+        assertEquals(2, pool.getSize());
+        assertEquals(1, pool.getEvictionCount());
+        assertFalse(alternate.isActive());
+        assertTrue(primary.isActive());
+
+        pool.setMaxSize(0);
+        assertFalse(primary.isActive());
+        assertEquals(0, pool.getSize());
+    }
+}
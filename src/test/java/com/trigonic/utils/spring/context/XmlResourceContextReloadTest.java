@@ -0,0 +1,136 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import com.trigonic.utils.spring.ConfigFiles;
+
+public class XmlResourceContextReloadTest {
+    private static final String HOLDER = "<bean id=\"holder\" class=\"java.util.ArrayList\">"
+            + "<constructor-arg><list><ref bean=\"which\" /></list></constructor-arg></bean>";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File tempDir;
+
+    @Before
+    public void setUp() {
+        tempDir = tempFolder.getRoot();
+    }
+
+    @Test
+    public void reloadChangedDefinitions() throws IOException {
+        File configFile = new File(tempDir, "config.xml");
+        ConfigFiles.writeBeans(configFile, "<xutils:import resource=\"module.xml\" />\n"
+                + "<bean id=\"unrelated\" class=\"java.lang.Object\" />");
+        File moduleFile = new File(tempDir, "module.xml");
+        ConfigFiles.writeBeans(moduleFile, "<xutils:string id=\"which\">before</xutils:string>\n"
+                + "<xutils:string id=\"removed\">removed</xutils:string>\n" + HOLDER);
+        XmlResourceApplicationContext appContext = createReloadingContext(configFile);
+        Object unrelated = appContext.getBean("unrelated");
+
+        ConfigFiles.writeBeans(moduleFile, "<xutils:string id=\"which\">after</xutils:string>\n" + HOLDER);
+        appContext.reload(Collections.<Resource> singleton(new FileSystemResource(moduleFile)));
+
+        assertEquals("after", appContext.getBean("which"));
+        assertEquals(Arrays.asList("after"), appContext.getBean("holder"));
+        assertFalse(appContext.containsBean("removed"));
+        assertSame(unrelated, appContext.getBean("unrelated"));
+        appContext.close();
+    }
+
+    @Test
+    public void reloadKeepsOverrides() throws IOException {
+        File configFile = new File(tempDir, "config.xml");
+        ConfigFiles.writeBeans(configFile, "<xutils:import resource=\"module.xml\" />\n"
+                + "<xutils:import resource=\"override.xml\" />");
+        File moduleFile = new File(tempDir, "module.xml");
+        ConfigFiles.writeBeans(moduleFile, "<xutils:string id=\"which\">module</xutils:string>\n"
+                + "<xutils:string id=\"other\">before</xutils:string>");
+        ConfigFiles.writeBeans(new File(tempDir, "override.xml"),
+                "<xutils:string id=\"which\">override</xutils:string>");
+        XmlResourceApplicationContext appContext = createReloadingContext(configFile);
+        assertEquals("override", appContext.getBean("which"));
+
+        ConfigFiles.writeBeans(moduleFile, "<xutils:string id=\"which\">changed</xutils:string>\n"
+                + "<xutils:string id=\"other\">after</xutils:string>");
+        appContext.reload(Collections.<Resource> singleton(new FileSystemResource(moduleFile)));
+
+        assertEquals("override", appContext.getBean("which"));
+        assertEquals("after", appContext.getBean("other"));
+        appContext.close();
+    }
+
+    @Test
+    public void reloadChangedAliases() throws IOException {
+        File configFile = new File(tempDir, "config.xml");
+        ConfigFiles.writeBeans(configFile, "<bean id=\"aliased\" name=\"old,kept\" class=\"java.util.ArrayList\" />\n"
+                + "<bean id=\"removed\" name=\"removedAlias\" class=\"java.util.ArrayList\" />");
+        XmlResourceApplicationContext appContext = createReloadingContext(configFile);
+        Object aliased = appContext.getBean("aliased");
+
+        ConfigFiles.writeBeans(configFile, "<bean id=\"aliased\" name=\"kept,added\" class=\"java.util.ArrayList\" />");
+        appContext.reload(Collections.<Resource> singleton(new FileSystemResource(configFile)));
+
+        assertFalse(appContext.containsBean("old"));
+        assertFalse(appContext.containsBean("removedAlias"));
+        assertSame(aliased, appContext.getBean("kept"));
+        assertSame(aliased, appContext.getBean("added"));
+        appContext.close();
+    }
+
+    @Test
+    public void reloadChangedImports() throws IOException {
+        File configFile = new File(tempDir, "config.xml");
+        ConfigFiles.writeBeans(configFile, "<bean id=\"unrelated\" class=\"java.lang.Object\" />");
+        ConfigFiles.writeBeans(new File(tempDir, "module.xml"), "<xutils:string id=\"which\">module</xutils:string>");
+        XmlResourceApplicationContext appContext = createReloadingContext(configFile);
+        Object unrelated = appContext.getBean("unrelated");
+
+        ConfigFiles.writeBeans(configFile, "<xutils:import resource=\"module.xml\" />\n"
+                + "<bean id=\"unrelated\" class=\"java.lang.Object\" />");
+        appContext.reload(Collections.<Resource> singleton(new FileSystemResource(configFile)));
+
+        assertEquals("module", appContext.getBean("which"));
+        assertNotSame(unrelated, appContext.getBean("unrelated"));
+        appContext.close();
+    }
+
+    @Test
+    public void reloadWatchedFile() throws Exception {
+        File configFile = new File(tempDir, "config.xml");
+        ConfigFiles.writeBeans(configFile, "<xutils:string id=\"which\">before</xutils:string>");
+        XmlResourceApplicationContext appContext = createReloadingContext(configFile);
+
+        ConfigFiles.writeBeans(configFile, "<xutils:string id=\"which\">after</xutils:string>");
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!"after".equals(appContext.getBean("which")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals("after", appContext.getBean("which"));
+        appContext.close();
+    }
+
+    private static XmlResourceApplicationContext createReloadingContext(File configFile) {
+        XmlResourceApplicationContext appContext = new XmlResourceApplicationContext(new Object[] { configFile },
+                false, null);
+        appContext.setReloadEnabled(true);
+        appContext.refresh();
+        return appContext;
+    }
+}
@@ -0,0 +1,113 @@
+package com.trigonic.utils.spring.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.core.io.ClassPathResource;
+
+import com.trigonic.utils.spring.ConfigFiles;
+
+public class XmlResourceContextTemplateTest {
+    private static final String TEMPLATE_PATH = "com/trigonic/utils/spring/beans/integ/template/";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void sharesDefinitionsWithoutOverrides() throws IOException {
+        File configFile = new File(tempFolder.getRoot(), "template.xml");
+        ConfigFiles.writeBeans(configFile, "<bean id=\"date\" class=\"java.util.Date\" />\n"
+                + "<bean id=\"shared\" class=\"java.util.ArrayList\" />\n"
+                + "<alias name=\"shared\" alias=\"alias\" />");
+        XmlResourceContextTemplate template = new XmlResourceContextTemplate(configFile);
+        // siblings never read the config resources again
+        configFile.delete();
+
+        XmlResourceApplicationContext first = template.createContext(null, overrides("date.time", "1000"));
+        XmlResourceApplicationContext second = template.createContext(null, overrides("date.time", "2000"));
+
+        assertEquals(1000, first.getBean("date", Date.class).getTime());
+        assertEquals(2000, second.getBean("date", Date.class).getTime());
+        assertSame(first.getBeanFactory().getBeanDefinition("shared"),
+                second.getBeanFactory().getBeanDefinition("shared"));
+        assertNotSame(first.getBeanFactory().getBeanDefinition("date"),
+                second.getBeanFactory().getBeanDefinition("date"));
+        assertSame(first.getBean("shared"), first.getBean("alias"));
+        assertNotSame(first.getBean("shared"), second.getBean("shared"));
+
+        // the template itself isn't affected by the overrides
+        XmlResourceApplicationContext third = template.createContext(null, null);
+        assertTrue(third.getBeanFactory().getBeanDefinition("date").getPropertyValues().isEmpty());
+        first.close();
+        second.close();
+        third.close();
+    }
+
+    @Test
+    public void copiesDefinitionsForPostProcessors() {
+        XmlResourceContextTemplate template = new XmlResourceContextTemplate(new ClassPathResource(TEMPLATE_PATH
+                + "placeholders.xml"));
+
+        XmlResourceApplicationContext first = template.createContext(null, overrides("placeholders.properties",
+                "tenant=first"));
+        XmlResourceApplicationContext second = template.createContext(null, overrides("placeholders.properties",
+                "tenant=second"));
+
+        assertEquals("first", first.getBean("tenant"));
+        assertEquals("second", second.getBean("tenant"));
+        assertNotSame(first.getBeanFactory().getBeanDefinition("tenant"),
+                second.getBeanFactory().getBeanDefinition("tenant"));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void compactingKeepsSharedDefinitions() {
+        XmlResourceContextTemplate template = new XmlResourceContextTemplate(new ClassPathResource(TEMPLATE_PATH
+                + "shared.xml"));
+
+        XmlResourceApplicationContext first = template.createContext(null, overrides("date.time", "1000"));
+        first.compact();
+        XmlResourceApplicationContext second = template.createContext(null, overrides("date.time", "2000"));
+
+        for (String beanName : new String[] { "date", "shared" }) {
+            assertNotNull(((AbstractBeanDefinition) second.getBeanFactory().getBeanDefinition(beanName))
+                    .getResource());
+        }
+        assertEquals(2000, second.getBean("date", Date.class).getTime());
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void rejectsUnknownBeans() {
+        XmlResourceContextTemplate template = new XmlResourceContextTemplate(new ClassPathResource(TEMPLATE_PATH
+                + "shared.xml"));
+        try {
+            template.createContext(null, overrides("missing.time", "1000"));
+            fail("expected exception");
+        } catch (BeanInitializationException e) {
+            assertEquals("Invalid key 'missing.time': no bean named 'missing'", e.getMessage());
+        }
+    }
+
+    private static Properties overrides(String key, String value) {
+        Properties overrides = new Properties();
+        overrides.setProperty(key, value);
+        return overrides;
+    }
+}